@@ -2,12 +2,23 @@ package com.simplestructurescanner;
 
 import java.io.File;
 
+import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
 
+import com.simplestructurescanner.command.CommandStructureScanner;
 import com.simplestructurescanner.config.ModConfig;
 import com.simplestructurescanner.network.NetworkHandler;
+import com.simplestructurescanner.network.ServerSearchExecutor;
+import com.simplestructurescanner.structure.BiomeLookupCache;
+import com.simplestructurescanner.structure.LootResolutionCache;
+import com.simplestructurescanner.structure.ParallelRingPlacement;
+import com.simplestructurescanner.structure.StructureIndex;
+import com.simplestructurescanner.structure.ServerSearchCache;
+import com.simplestructurescanner.structure.StructurePositionCache;
 import com.simplestructurescanner.structure.StructureProviderRegistry;
 
 
@@ -16,6 +27,7 @@ public class CommonProxy {
         File configFile = new File(event.getModConfigurationDirectory(), SimpleStructureScanner.MODID + ".cfg");
         ModConfig.loadConfigs(configFile);
         NetworkHandler.init();
+        MinecraftForge.EVENT_BUS.register(new LootResolutionCache.Events());
     }
 
     public void init(FMLInitializationEvent event) {
@@ -24,4 +36,20 @@ public class CommonProxy {
     public void postInit(FMLPostInitializationEvent event) {
         StructureProviderRegistry.discoverProviders();
     }
+
+    public void serverStarting(FMLServerStartingEvent event) {
+        event.registerServerCommand(new CommandStructureScanner());
+    }
+
+    public void serverStopped(FMLServerStoppedEvent event) {
+        ServerSearchExecutor.shutdown();
+        ParallelRingPlacement.shutdown();
+
+        // Another world loaded later may share the seed but not the world type
+        BiomeLookupCache.clear();
+        StructurePositionCache.clear();
+        ServerSearchCache.clear();
+        StructureIndex.closeAll();
+        LootResolutionCache.clear();
+    }
 }
@@ -28,6 +28,7 @@ import com.simplestructurescanner.config.ModConfig;
 import com.simplestructurescanner.structure.StructureInfo;
 import com.simplestructurescanner.structure.StructureLocation;
 import com.simplestructurescanner.structure.StructureProviderRegistry;
+import com.simplestructurescanner.searching.SearchScheduler;
 import com.simplestructurescanner.searching.StructureSearchManager;
 
 
@@ -49,15 +50,21 @@ public class ClientRenderEvents {
     }
 
     public double getDistanceFrom(StructureLocation loc, BlockPos from) {
-        double dx = loc.getPosition().getX() - from.getX();
-        double dz = loc.getPosition().getZ() - from.getZ();
+        return StructureSearchManager.getDistance(loc, from);
+    }
 
-        if (loc.isYAgnostic()) {
-            return Math.sqrt(dx * dx + dz * dz);
-        } else {
-            double dy = loc.getPosition().getY() - from.getY();
-            return Math.sqrt(dx * dx + dy * dy + dz * dz);
-        }
+    @SubscribeEvent
+    public void onDebugText(RenderGameOverlayEvent.Text event) {
+        Minecraft mc = Minecraft.getMinecraft();
+        if (!mc.gameSettings.showDebugInfo || !ModConfig.isSearchEnabled()) return;
+
+        SearchScheduler scheduler = StructureSearchManager.getScheduler();
+        event.getLeft().add("");
+        event.getLeft().add(I18n.format("gui.structurescanner.debug.searches",
+            scheduler.size(), scheduler.getRunCount(), scheduler.getDeferredTicks()));
+        event.getLeft().add(I18n.format("gui.structurescanner.debug.searchTimes",
+            scheduler.getAverageWaitMicros() / 1000, scheduler.getMaxWaitMicros() / 1000,
+            scheduler.getAverageRunMicros() / 1000, scheduler.getMaxRunMicros() / 1000));
     }
 
     @SubscribeEvent
@@ -82,12 +89,10 @@ public class ClientRenderEvents {
         List<Integer> colors = new ArrayList<>();
 
         for (ResourceLocation id : trackedIds) {
-            if (!ModConfig.isStructureAllowed(id.toString())) continue;
+            // Filters by dimension and whitelist/blacklist, the same way searches are prioritized
+            if (!StructureSearchManager.isShownOnHud(id, currentDimension, playerPos)) continue;
 
-            // Filter by current dimension
             StructureInfo info = StructureProviderRegistry.getStructureInfo(id);
-            if (info != null && !info.isValidForDimension(currentDimension)) continue;
-
             StructureLocation loc = locations.get(id);
 
             // Get display name
@@ -99,12 +104,7 @@ public class ClientRenderEvents {
             }
 
             if (loc != null) {
-                double distance = getDistanceFrom(loc, playerPos);
-
-                // Check local whitelist/blacklist
-                if (!ModConfig.isLocallyAllowed(id.toString(), distance)) continue;
-
-                String distanceStr = StructureSearchManager.formatDistance(distance);
+                String distanceStr = StructureSearchManager.formatDistance(getDistanceFrom(loc, playerPos));
                 lines.add(name + ": " + distanceStr);
             } else {
                 // No location found yet - show "Searching..." status
@@ -21,6 +21,7 @@ import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 
 import com.simplestructurescanner.integration.JEIHelper;
+import com.simplestructurescanner.structure.LootSimulation;
 import com.simplestructurescanner.structure.LootTableResolver;
 import com.simplestructurescanner.structure.LootTableResolver.LootItem;
 import com.simplestructurescanner.structure.StructureInfo;
@@ -59,11 +60,13 @@ public class GuiLootWindow {
     private boolean hoveringDropRate = false;
     private int dropRateHoverIndex = -1;
 
-    // Loot data - resolved and aggregated
+    // Loot data - resolved and aggregated, updated while the simulations run
     private List<LootEntry> lootEntries;
     private List<List<LootItem>> resolvedLoot = new ArrayList<>();
+    private List<LootSimulation> simulations = new ArrayList<>();
+    private int[] simulationCounts = new int[0];
+    private boolean[] settled = new boolean[0];
     private boolean lootResolved = false;
-    private int simulationCount = 0;
 
     public GuiLootWindow(GuiScreen parent, ResourceLocation structureId, StructureInfo structureInfo) {
         this.parent = parent;
@@ -81,13 +84,18 @@ public class GuiLootWindow {
     }
 
     /**
-     * Resolve loot table items with proper simulation.
+     * Start resolving loot table items with proper simulation, in the background.
      * Uses server world for proper event firing if available.
      */
     private void resolveLootTables() {
         if (lootResolved) return;
         lootResolved = true;
 
+        resolvedLoot.clear();
+        simulations.clear();
+        simulationCounts = new int[lootEntries.size()];
+        settled = new boolean[lootEntries.size()];
+
         Minecraft mc = Minecraft.getMinecraft();
         if (mc.world == null) return;
 
@@ -98,34 +106,93 @@ public class GuiLootWindow {
             if (serverWorld != null) world = serverWorld;
         }
 
-        simulationCount = LootTableResolver.getSimulationCount();
-
         for (LootEntry entry : lootEntries) {
-            List<LootItem> entryLoot = new ArrayList<>();
-
             // Try to resolve from loot table ID first
+            LootSimulation simulation = null;
             if (entry.lootTableId != null) {
-                entryLoot = LootTableResolver.resolveLootTableWithSimulation(
-                    world, entry.lootTableId, mc.player);
+                simulation = LootTableResolver.simulateLootTable(world, entry.lootTableId, mc.player);
+            }
+
+            // Exactly computed rates are known right away
+            simulations.add(simulation);
+            resolvedLoot.add(simulation != null ? simulation.getItems() : new ArrayList<>());
+        }
+
+        updateResolvedLoot();
+    }
+
+    /**
+     * Copy the simulations' progress into the displayed loot. Called every frame.
+     */
+    private void updateResolvedLoot() {
+        boolean changed = false;
+
+        for (int i = 0; i < simulations.size(); i++) {
+            if (settled[i]) continue;
+
+            // Read before the rolls, so the rolls of a finished simulation are final
+            LootSimulation simulation = simulations.get(i);
+            boolean done = simulation == null || simulation.isDone();
+
+            if (simulation != null) {
+                if (simulation.getRolls() == simulationCounts[i] && !done) continue;
+
+                // Items and rolls from the same lock, a chunk merged in between would skew the rates
+                LootSimulation.Snapshot snapshot = simulation.getSnapshot();
+                resolvedLoot.set(i, snapshot.items);
+                simulationCounts[i] = snapshot.rolls;
+                changed = true;
             }
 
+            if (!done) continue;
+
+            settled[i] = true;
+
             // If loot table resolution failed or wasn't available, use possibleDrops as fallback
-            if (entryLoot.isEmpty() && entry.possibleDrops != null && !entry.possibleDrops.isEmpty()) {
+            LootEntry entry = lootEntries.get(i);
+            if (resolvedLoot.get(i).isEmpty() && entry.possibleDrops != null && !entry.possibleDrops.isEmpty()) {
+                int simulationCount = LootTableResolver.getSimulationCount();
+                List<LootItem> entryLoot = new ArrayList<>();
+
                 for (ItemStack stack : entry.possibleDrops) {
                     int count = stack.getCount();
                     stack = stack.copy();
                     stack.setCount(1);
                     entryLoot.add(new LootItem(stack, count * simulationCount));
                 }
+
+                resolvedLoot.set(i, entryLoot);
+                simulationCounts[i] = simulationCount;
+                changed = true;
             }
+        }
 
-            resolvedLoot.add(entryLoot);
+        if (changed && visible) {
+            calculateLayout();
+            clampScroll();
         }
     }
 
+    private boolean isSimulating(int entryIndex) {
+        LootSimulation simulation = entryIndex < simulations.size() ? simulations.get(entryIndex) : null;
+
+        return simulation != null && !simulation.isDone();
+    }
+
     public void hide() {
         visible = false;
         hiddenForJEI = false;
+
+        // Stop simulations nobody looks at, they start over when the window is shown again
+        boolean cancelled = false;
+        for (LootSimulation simulation : simulations) {
+            if (simulation != null && !simulation.isDone()) {
+                simulation.cancel();
+                cancelled = true;
+            }
+        }
+        if (cancelled) lootResolved = false;
+
         hoveredEntryIndex = -1;
         hoveredItemIndex = -1;
         hoveringTotal = false;
@@ -285,6 +352,8 @@ public class GuiLootWindow {
     public void draw(int mouseX, int mouseY, float partialTicks) {
         if (!visible) return;
 
+        updateResolvedLoot();
+
         Minecraft mc = Minecraft.getMinecraft();
         FontRenderer font = mc.fontRenderer;
 
@@ -430,7 +499,7 @@ public class GuiLootWindow {
                 mc.getRenderItem().renderItemIntoGUI(item.stack, itemX, itemPosY);
 
                 // Draw drop rate below item
-                String rate = item.formatDropRate(simulationCount);
+                String rate = item.formatDropRate(simulationCounts[entryIdx]);
                 int rateW = (int) (font.getStringWidth(rate) * textScale);
                 int rateX = itemX + (16 - rateW) / 2;
                 int rateY = itemPosY + 18;
@@ -454,9 +523,10 @@ public class GuiLootWindow {
             GlStateManager.disableDepth();
             GlStateManager.popMatrix();
 
-            // Draw "no drops" message if empty
+            // Draw "no drops" message if empty, or that the simulation is still running
             if (items.isEmpty() && itemY >= contentTop && itemY <= contentBottom) {
-                String noDrops = I18n.format("gui.structurescanner.loot.unknown");
+                String noDrops = I18n.format(isSimulating(entryIdx)
+                    ? "gui.structurescanner.loot.loading" : "gui.structurescanner.loot.unknown");
                 font.drawString(noDrops, contentX + 4, itemY + 4, 0x888888);
             }
 
@@ -491,8 +561,14 @@ public class GuiLootWindow {
             dropRateHoverIndex >= 0 && dropRateHoverIndex < resolvedLoot.get(hoveredEntryIndex).size()) {
 
             LootItem item = resolvedLoot.get(hoveredEntryIndex).get(dropRateHoverIndex);
-            String tooltip = I18n.format("gui.structurescanner.loot.rateTooltipSimulated",
-                item.dropCount, simulationCount);
+            int simulationCount = simulationCounts[hoveredEntryIndex];
+            String rate = item.formatDropRateWithInterval(simulationCount);
+            String tooltip;
+            if (item.isExact()) {
+                tooltip = I18n.format("gui.structurescanner.loot.rateTooltipExact", rate, LootItem.formatPercent(item.getChance()));
+            } else {
+                tooltip = I18n.format("gui.structurescanner.loot.rateTooltipSimulated", rate, simulationCount);
+            }
 
             GlStateManager.pushMatrix();
             GlStateManager.translate(0, 0, 500);
@@ -148,9 +148,13 @@ public class GuiPreviewWindow {
         Gui.drawRect(previewX, previewY, previewX + previewSize, previewY + previewHeight, 0xFF1A1A1A);
 
         // Draw the structure preview
-        if (previewRenderer != null && previewRenderer.getWorld() != null && !previewRenderer.getWorld().renderedBlocks.isEmpty()) {
+        if (previewRenderer != null && previewRenderer.isBuilding()) {
+            // Still built in the background, render() uploads it once done
+            previewRenderer.render(previewX, previewY, previewSize, previewHeight, true);
+            GuiStructureScanner.drawPreviewPlaceholder(previewX, previewY, previewSize, previewHeight);
+        } else if (previewRenderer != null && !previewRenderer.isEmpty()) {
             previewRenderer.setBackgroundColor(0xFF1A1A1A);
-            previewRenderer.render(previewX, previewY, previewSize, previewHeight);
+            previewRenderer.render(previewX, previewY, previewSize, previewHeight, true);
         } else {
             // No preview available
             String noPreview = I18n.format("gui.structurescanner.preview.unavailable");
@@ -7,6 +7,7 @@ import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 import org.lwjgl.opengl.GL11;
@@ -32,6 +33,7 @@ import net.minecraft.world.biome.Biome;
 
 import com.simplestructurescanner.SimpleStructureScanner;
 import com.simplestructurescanner.client.ClientSettings;
+import com.simplestructurescanner.client.render.DummyWorld;
 import com.simplestructurescanner.client.render.StructurePreviewRenderer;
 import com.simplestructurescanner.config.ModConfig;
 import com.simplestructurescanner.network.NetworkHandler;
@@ -163,6 +165,14 @@ public class GuiStructureScanner extends GuiScreen {
         ModConfig.setClientFilterText(newFilter);
     }
 
+    @Override
+    public void onGuiClosed() {
+        super.onGuiClosed();
+
+        // Free the preview's GL buffers, it is compiled again if the screen comes back
+        if (previewRenderer != null) previewRenderer.dispose();
+    }
+
     @Override
     protected void keyTyped(char typedChar, int keyCode) throws IOException {
         // Handle confirmation dialog first (highest priority)
@@ -284,7 +294,7 @@ public class GuiStructureScanner extends GuiScreen {
 
     private void openPreviewWindow() {
         if (selected == null || selectedInfo == null) return;
-        if (previewRenderer == null || previewRenderer.getWorld().renderedBlocks.isEmpty()) return;
+        if (previewRenderer == null || previewRenderer.isEmpty()) return;
 
         previewWindow = new GuiPreviewWindow(this, selected, selectedInfo, previewRenderer);
         previewWindow.show();
@@ -698,6 +708,7 @@ public class GuiStructureScanner extends GuiScreen {
         // Keep empty preview if no layer data - clear stale renderer
         if (selectedInfo == null || !selectedInfo.hasLayerData()) {
             if (lastRenderedStructure == null || !lastRenderedStructure.equals(selected)) {
+                if (previewRenderer != null) previewRenderer.dispose();
                 previewRenderer = null;
                 lastRenderedStructure = selected;
             }
@@ -708,6 +719,7 @@ public class GuiStructureScanner extends GuiScreen {
         List<StructureLayer> layers = selectedInfo.getLayers();
         if (layers == null || layers.isEmpty()) {
             if (lastRenderedStructure == null || !lastRenderedStructure.equals(selected)) {
+                if (previewRenderer != null) previewRenderer.dispose();
                 previewRenderer = null;
                 lastRenderedStructure = selected;
             }
@@ -725,19 +737,39 @@ public class GuiStructureScanner extends GuiScreen {
             lastRenderedStructure = selected;
         }
 
-        if (previewRenderer == null || previewRenderer.getWorld().renderedBlocks.isEmpty()) return;
+        if (previewRenderer == null || previewRenderer.isEmpty()) return;
 
         // Render the structure (rotation and camera handled internally)
         previewRenderer.setBackgroundColor(0xFF1A1A1A);
         previewRenderer.render(previewX, previewY, previewSize, previewSize);
+
+        // Placeholder until the background build is done
+        if (previewRenderer.isBuilding()) drawPreviewPlaceholder(previewX, previewY, previewSize, previewSize);
     }
 
     /**
-     * Builds the preview renderer with blocks from the structure layers.
+     * Draws a "building" text centered in the preview area.
+     */
+    static void drawPreviewPlaceholder(int x, int y, int width, int height) {
+        FontRenderer font = Minecraft.getMinecraft().fontRenderer;
+        String building = I18n.format("gui.structurescanner.preview.building");
+        font.drawString(building, x + (width - font.getStringWidth(building)) / 2, y + height / 2 - 4, 0x888888);
+    }
+
+    /**
+     * Builds the preview renderer with blocks from the structure layers, in the background.
+     * Disposing the previous renderer cancels its build if the structure changed before it was done.
      */
     private void buildPreviewRenderer(List<StructureLayer> layers) {
+        if (previewRenderer != null) previewRenderer.dispose();
         previewRenderer = new StructurePreviewRenderer();
+        previewRenderer.buildInBackground((world, cancelled) -> fillPreviewWorld(world, layers, cancelled));
+    }
 
+    /**
+     * Adds the blocks of the structure layers to the preview world. Runs on the preview builder thread.
+     */
+    private static void fillPreviewWorld(DummyWorld world, List<StructureLayer> layers, BooleanSupplier cancelled) {
         // Y offset to ensure blocks are above y=0 (some structures have negative Y)
         int minY = Integer.MAX_VALUE;
         for (StructureLayer layer : layers) {
@@ -746,6 +778,8 @@ public class GuiStructureScanner extends GuiScreen {
         int yOffset = minY < 0 ? -minY : 0;
 
         for (StructureLayer layer : layers) {
+            if (cancelled.getAsBoolean()) return;
+
             int y = layer.y + yOffset;
 
             for (int x = 0; x < layer.width; x++) {
@@ -753,7 +787,7 @@ public class GuiStructureScanner extends GuiScreen {
                     IBlockState state = layer.getBlockState(x, z);
                     if (state == null || state.getBlock() == Blocks.AIR || state.getBlock() == Blocks.STRUCTURE_VOID) continue;
 
-                    previewRenderer.getWorld().addBlock(new BlockPos(x + layer.xOffset, y, z + layer.zOffset), state);
+                    world.addBlock(new BlockPos(x + layer.xOffset, y, z + layer.zOffset), state);
                 }
             }
         }
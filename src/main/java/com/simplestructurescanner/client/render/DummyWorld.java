@@ -48,6 +48,13 @@ public class DummyWorld extends World {
     private final Vector3f minPos = new Vector3f(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
     private final Vector3f maxPos = new Vector3f(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
 
+    // Incremented on every change of the blocks, so compiled geometry knows when it's stale
+    private int version = 0;
+
+    // Blocks not enclosed by opaque cubes, for the version they were computed for
+    private Set<BlockPos> visibleBlocks = null;
+    private int visibleBlocksVersion = -1;
+
     public DummyWorld() {
         super(
             new DummySaveHandler(),
@@ -74,6 +81,7 @@ public class DummyWorld extends World {
 
         renderedBlocks.add(pos);
         setBlockState(pos, state, 0);
+        version++;
     }
 
     public void addBlock(BlockPos pos, IBlockState state, TileEntity tileEntity) {
@@ -88,6 +96,7 @@ public class DummyWorld extends World {
 
     public void clear() {
         renderedBlocks.clear();
+        version++;
         minPos.set(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
         maxPos.set(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
     }
@@ -112,6 +121,36 @@ public class DummyWorld extends World {
         return super.getBlockState(pos);
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Blocks with at least one face not covered by an opaque cube, the only ones that can be seen.
+     * Enclosed blocks (most of the inside of strongholds or monuments) are skipped by the preview.
+     */
+    public Set<BlockPos> getVisibleBlocks() {
+        if (visibleBlocks != null && visibleBlocksVersion == version) return visibleBlocks;
+
+        Set<BlockPos> visible = new HashSet<>();
+        BlockPos.MutableBlockPos neighbor = new BlockPos.MutableBlockPos();
+
+        for (BlockPos pos : renderedBlocks) {
+            for (EnumFacing facing : EnumFacing.VALUES) {
+                neighbor.setPos(pos).move(facing);
+                if (!renderedBlocks.contains(neighbor) || !super.getBlockState(neighbor).isOpaqueCube()) {
+                    visible.add(pos);
+                    break;
+                }
+            }
+        }
+
+        visibleBlocks = visible;
+        visibleBlocksVersion = version;
+
+        return visible;
+    }
+
     public Vector3f getSize() {
         Vector3f result = new Vector3f();
         result.setX(maxPos.getX() - minPos.getX() + 1);
@@ -0,0 +1,347 @@
+package com.simplestructurescanner.client.render;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.material.MapColor;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.BlockRendererDispatcher;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.GLAllocation;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.OpenGlHelper;
+import net.minecraft.client.renderer.WorldVertexBufferUploader;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.client.renderer.vertex.VertexBuffer;
+import net.minecraft.client.renderer.vertex.VertexFormat;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.BlockRenderLayer;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.client.ForgeHooksClient;
+import net.minecraftforge.client.MinecraftForgeClient;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+import org.lwjgl.opengl.GL11;
+
+import javax.annotation.Nullable;
+import javax.vecmath.Vector3f;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Compiled geometry of a structure preview, one buffer per block render layer.
+ * Uses VBOs when available, display lists otherwise, like vanilla chunk rendering.
+ * Tessellation and upload are separate steps, so the blocks can be tessellated off the render thread.
+ * Small previews use untextured voxels instead of the block models, see {@link #tessellateVoxels}.
+ */
+@SideOnly(Side.CLIENT)
+class StructureMesh {
+
+    private static final BlockRenderLayer[] LAYERS = BlockRenderLayer.values();
+
+    // Bytes per vertex of DefaultVertexFormats.BLOCK
+    private static final int VERTEX_SIZE = 28;
+
+    // Bytes per vertex of DefaultVertexFormats.POSITION_COLOR
+    private static final int VOXEL_VERTEX_SIZE = 16;
+
+    // Brightness of the voxel faces by EnumFacing index, like vanilla's block shading
+    private static final float[] FACE_SHADES = {0.5f, 1.0f, 0.8f, 0.8f, 0.6f, 0.6f};
+
+    private final VertexBuffer[] vertexBuffers = new VertexBuffer[LAYERS.length];
+    private final boolean[] emptyLayers = new boolean[LAYERS.length];
+    private int displayLists = -1;
+    private int quadCount = 0;
+    private VertexFormat format = DefaultVertexFormats.BLOCK;
+
+    private StructureMesh() {
+    }
+
+    /**
+     * Tessellates the world's visible blocks, one buffer per layer (null if empty). Can run on any thread,
+     * as long as nothing changes the world meanwhile.
+     * @return Null if cancelled
+     */
+    @Nullable
+    static BufferBuilder[] tessellate(DummyWorld world, BooleanSupplier cancelled) {
+        BufferBuilder[] buffers = new BufferBuilder[LAYERS.length];
+        BlockRenderLayer oldLayer = MinecraftForgeClient.getRenderLayer();
+
+        try {
+            for (BlockRenderLayer layer : LAYERS) {
+                BufferBuilder buffer = new BufferBuilder(0x20000);
+                buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.BLOCK);
+                if (!tessellate(world, layer, buffer, cancelled)) return null;
+                buffer.finishDrawing();
+
+                if (buffer.getVertexCount() > 0) buffers[layer.ordinal()] = buffer;
+            }
+        } finally {
+            ForgeHooksClient.setRenderLayer(oldLayer);
+        }
+
+        return buffers;
+    }
+
+    private static boolean tessellate(DummyWorld world, BlockRenderLayer layer, BufferBuilder buffer, BooleanSupplier cancelled) {
+        BlockRendererDispatcher blockRenderer = Minecraft.getMinecraft().getBlockRendererDispatcher();
+        ForgeHooksClient.setRenderLayer(layer);
+
+        // Enclosed blocks have no face to draw
+        for (BlockPos pos : world.getVisibleBlocks()) {
+            if (cancelled.getAsBoolean()) return false;
+
+            IBlockState state = world.getBlockState(pos);
+            Block block = state.getBlock();
+            if (block == Blocks.AIR) continue;
+
+            try {
+                state = state.getActualState(world, pos);
+            } catch (Exception ignored) {
+            }
+
+            if (block.canRenderInLayer(state, layer)) blockRenderer.renderBlock(state, pos, world, buffer);
+        }
+
+        return true;
+    }
+
+    /**
+     * Tessellates the world's blocks downsampled into boxes of scale blocks per side, coloured with the average
+     * map colour of their visible blocks. Can run on any thread, as long as nothing changes the world meanwhile.
+     * @return Null if cancelled, otherwise only the solid layer is set
+     */
+    @Nullable
+    static BufferBuilder[] tessellateVoxels(DummyWorld world, int scale, BooleanSupplier cancelled) {
+        Vector3f min = world.getMinPos();
+        Vector3f max = world.getMaxPos();
+        int minX = (int) min.x;
+        int minY = (int) min.y;
+        int minZ = (int) min.z;
+
+        // Voxel -> summed red, green and blue of its blocks, and their count
+        Map<BlockPos, int[]> voxels = new HashMap<>();
+        for (BlockPos pos : world.getVisibleBlocks()) {
+            if (cancelled.getAsBoolean()) return null;
+
+            MapColor mapColor;
+            try {
+                mapColor = world.getBlockState(pos).getMapColor(world, pos);
+            } catch (Exception e) {
+                continue;
+            }
+
+            // Glass and the like have no map colour, they would only hide what's behind
+            if (mapColor == null || mapColor == MapColor.AIR) continue;
+
+            BlockPos voxel = new BlockPos((pos.getX() - minX) / scale, (pos.getY() - minY) / scale, (pos.getZ() - minZ) / scale);
+            int[] sum = voxels.computeIfAbsent(voxel, k -> new int[4]);
+            sum[0] += mapColor.colorValue >> 16 & 0xFF;
+            sum[1] += mapColor.colorValue >> 8 & 0xFF;
+            sum[2] += mapColor.colorValue & 0xFF;
+            sum[3]++;
+        }
+
+        BufferBuilder buffer = new BufferBuilder(0x20000);
+        buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
+
+        for (Map.Entry<BlockPos, int[]> entry : voxels.entrySet()) {
+            if (cancelled.getAsBoolean()) return null;
+
+            BlockPos voxel = entry.getKey();
+            int[] sum = entry.getValue();
+
+            // Boxes stop at the structure's bounds
+            float x0 = minX + voxel.getX() * scale;
+            float y0 = minY + voxel.getY() * scale;
+            float z0 = minZ + voxel.getZ() * scale;
+            float x1 = Math.min(x0 + scale, max.x + 1);
+            float y1 = Math.min(y0 + scale, max.y + 1);
+            float z1 = Math.min(z0 + scale, max.z + 1);
+
+            for (EnumFacing facing : EnumFacing.VALUES) {
+                if (voxels.containsKey(voxel.offset(facing))) continue;
+
+                float shade = FACE_SHADES[facing.getIndex()];
+                int red = (int) (sum[0] / sum[3] * shade);
+                int green = (int) (sum[1] / sum[3] * shade);
+                int blue = (int) (sum[2] / sum[3] * shade);
+                addFace(buffer, facing, x0, y0, z0, x1, y1, z1, red, green, blue);
+            }
+        }
+
+        buffer.finishDrawing();
+
+        BufferBuilder[] buffers = new BufferBuilder[LAYERS.length];
+        if (buffer.getVertexCount() > 0) buffers[BlockRenderLayer.SOLID.ordinal()] = buffer;
+
+        return buffers;
+    }
+
+    // Counter-clockwise seen from outside, same corner order as vanilla's FaceDirection
+    private static void addFace(BufferBuilder buffer, EnumFacing facing, float x0, float y0, float z0,
+            float x1, float y1, float z1, int red, int green, int blue) {
+        switch (facing) {
+            case DOWN:
+                buffer.pos(x0, y0, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x0, y0, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y0, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y0, z1).color(red, green, blue, 255).endVertex();
+                break;
+            case UP:
+                buffer.pos(x0, y1, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x0, y1, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y1, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y1, z0).color(red, green, blue, 255).endVertex();
+                break;
+            case NORTH:
+                buffer.pos(x1, y1, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y0, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x0, y0, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x0, y1, z0).color(red, green, blue, 255).endVertex();
+                break;
+            case SOUTH:
+                buffer.pos(x0, y1, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x0, y0, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y0, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y1, z1).color(red, green, blue, 255).endVertex();
+                break;
+            case WEST:
+                buffer.pos(x0, y1, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x0, y0, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x0, y0, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x0, y1, z1).color(red, green, blue, 255).endVertex();
+                break;
+            case EAST:
+                buffer.pos(x1, y1, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y0, z1).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y0, z0).color(red, green, blue, 255).endVertex();
+                buffer.pos(x1, y1, z0).color(red, green, blue, 255).endVertex();
+                break;
+        }
+    }
+
+    /**
+     * Uploads tessellated layers. Render thread only.
+     */
+    static StructureMesh upload(BufferBuilder[] buffers) {
+        StructureMesh mesh = new StructureMesh();
+        boolean useVbo = OpenGlHelper.useVbo();
+        if (!useVbo) mesh.displayLists = GLAllocation.generateDisplayLists(LAYERS.length);
+
+        for (int index = 0; index < LAYERS.length; index++) {
+            BufferBuilder buffer = buffers[index];
+            mesh.emptyLayers[index] = buffer == null;
+            if (buffer == null) continue;
+
+            mesh.quadCount += buffer.getVertexCount() / 4;
+            mesh.format = buffer.getVertexFormat();
+
+            if (useVbo) {
+                mesh.vertexBuffers[index] = new VertexBuffer(mesh.format);
+                mesh.vertexBuffers[index].bufferData(buffer.getByteBuffer());
+                buffer.reset();
+            } else {
+                // The uploader resets the buffer
+                GlStateManager.glNewList(mesh.displayLists + index, GL11.GL_COMPILE);
+                new WorldVertexBufferUploader().draw(buffer);
+                GlStateManager.glEndList();
+            }
+        }
+
+        return mesh;
+    }
+
+    /**
+     * Number of quads over all layers.
+     */
+    int getQuadCount() {
+        return quadCount;
+    }
+
+    /**
+     * Whether the mesh has block models, otherwise it has coloured voxels to draw without texture.
+     */
+    boolean isTextured() {
+        return format == DefaultVertexFormats.BLOCK;
+    }
+
+    /**
+     * Draws a layer with the current GL state and transforms.
+     */
+    void draw(BlockRenderLayer layer) {
+        int index = layer.ordinal();
+        if (emptyLayers[index]) return;
+
+        if (displayLists >= 0) {
+            GlStateManager.callList(displayLists + index);
+            return;
+        }
+
+        VertexBuffer vertexBuffer = vertexBuffers[index];
+        if (vertexBuffer == null) return;
+
+        if (!isTextured()) {
+            drawVoxels(vertexBuffer);
+            return;
+        }
+
+        // Same client state as vanilla chunk layers
+        GlStateManager.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        OpenGlHelper.setClientActiveTexture(OpenGlHelper.defaultTexUnit);
+        GlStateManager.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        OpenGlHelper.setClientActiveTexture(OpenGlHelper.lightmapTexUnit);
+        GlStateManager.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        OpenGlHelper.setClientActiveTexture(OpenGlHelper.defaultTexUnit);
+        GlStateManager.glEnableClientState(GL11.GL_COLOR_ARRAY);
+
+        vertexBuffer.bindBuffer();
+        GlStateManager.glVertexPointer(3, GL11.GL_FLOAT, VERTEX_SIZE, 0);
+        GlStateManager.glColorPointer(4, GL11.GL_UNSIGNED_BYTE, VERTEX_SIZE, 12);
+        GlStateManager.glTexCoordPointer(2, GL11.GL_FLOAT, VERTEX_SIZE, 16);
+        OpenGlHelper.setClientActiveTexture(OpenGlHelper.lightmapTexUnit);
+        GlStateManager.glTexCoordPointer(2, GL11.GL_SHORT, VERTEX_SIZE, 24);
+        OpenGlHelper.setClientActiveTexture(OpenGlHelper.defaultTexUnit);
+        vertexBuffer.drawArrays(GL11.GL_QUADS);
+        vertexBuffer.unbindBuffer();
+
+        GlStateManager.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+        GlStateManager.glDisableClientState(GL11.GL_COLOR_ARRAY);
+        GlStateManager.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        OpenGlHelper.setClientActiveTexture(OpenGlHelper.lightmapTexUnit);
+        GlStateManager.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        OpenGlHelper.setClientActiveTexture(OpenGlHelper.defaultTexUnit);
+        GlStateManager.resetColor();
+    }
+
+    private void drawVoxels(VertexBuffer vertexBuffer) {
+        GlStateManager.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        GlStateManager.glEnableClientState(GL11.GL_COLOR_ARRAY);
+
+        vertexBuffer.bindBuffer();
+        GlStateManager.glVertexPointer(3, GL11.GL_FLOAT, VOXEL_VERTEX_SIZE, 0);
+        GlStateManager.glColorPointer(4, GL11.GL_UNSIGNED_BYTE, VOXEL_VERTEX_SIZE, 12);
+        vertexBuffer.drawArrays(GL11.GL_QUADS);
+        vertexBuffer.unbindBuffer();
+
+        GlStateManager.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+        GlStateManager.glDisableClientState(GL11.GL_COLOR_ARRAY);
+        GlStateManager.resetColor();
+    }
+
+    /**
+     * Frees the GL buffers. Render thread only.
+     */
+    void delete() {
+        for (int i = 0; i < vertexBuffers.length; i++) {
+            if (vertexBuffers[i] != null) vertexBuffers[i].deleteGlBuffers();
+            vertexBuffers[i] = null;
+        }
+
+        if (displayLists >= 0) {
+            GLAllocation.deleteDisplayLists(displayLists, LAYERS.length);
+            displayLists = -1;
+        }
+    }
+}
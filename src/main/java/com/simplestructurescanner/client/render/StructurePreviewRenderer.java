@@ -1,22 +1,13 @@
 package com.simplestructurescanner.client.render;
 
-import net.minecraft.block.Block;
-import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.ScaledResolution;
-import net.minecraft.client.renderer.BlockRendererDispatcher;
 import net.minecraft.client.renderer.BufferBuilder;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.OpenGlHelper;
 import net.minecraft.client.renderer.RenderHelper;
-import net.minecraft.client.renderer.Tessellator;
 import net.minecraft.client.renderer.texture.TextureMap;
-import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
-import net.minecraft.init.Blocks;
 import net.minecraft.util.BlockRenderLayer;
-import net.minecraft.util.math.BlockPos;
-import net.minecraftforge.client.ForgeHooksClient;
-import net.minecraftforge.client.MinecraftForgeClient;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 import org.lwjgl.opengl.GL11;
@@ -24,13 +15,26 @@ import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL14;
 import org.lwjgl.BufferUtils;
 
+import com.simplestructurescanner.SimpleStructureScanner;
+
 import javax.vecmath.Vector3f;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
  * Renders a structure preview in a GUI with isometric-style view.
  * Provides time-based auto-rotation similar to entity preview.
+ * The blocks are tessellated once into a {@link StructureMesh}, on a background thread, call {@link #dispose()}
+ * once the renderer isn't used.
+ * Unless full models are asked for, the structure is drawn as coloured voxels of 1 to 8 blocks per side, picked
+ * from the pixels each block takes on screen, as block models are lost at these sizes anyway.
  */
 @SideOnly(Side.CLIENT)
 public class StructurePreviewRenderer {
@@ -53,8 +57,24 @@ public class StructurePreviewRenderer {
     private static final float ISOMETRIC_PITCH = 30f;   // degrees from horizontal
     private static final float ROTATION_SPEED = 20f;    // degrees per second
     private static final float ZOOM_FACTOR = 0.75f;     // higher = smaller structure
+    private static final float MIN_VOXEL_PIXELS = 4f;   // voxels get bigger until they are this wide on screen
+    private static final int MAX_VOXEL_SCALE = 8;       // blocks per voxel side
     private LightingMode lightingMode = LightingMode.STRUCTURE;
 
+    private static ThreadPoolExecutor builders;
+
+    // Geometry compiled once per structure and detail, only the transforms change between frames
+    private StructureMesh mesh = null;
+    private int meshVersion;
+    private LightingMode meshLightingMode;
+    private StructureMesh voxelMesh = null;
+    private int voxelMeshVersion;
+    private int voxelMeshScale;
+
+    // Background build in progress, and the filler of the world until a build of it completes
+    private Build build = null;
+    private WorldFiller pendingFiller = null;
+
     public StructurePreviewRenderer() {
         this.world = new DummyWorld();
     }
@@ -76,11 +96,17 @@ public class StructurePreviewRenderer {
     }
 
     /**
-     * Renders the structure at the given GUI position with automatic rotation.
+     * Renders the structure at the given GUI position with automatic rotation, as voxels.
      */
     public void render(float guiX, float guiY, float guiWidth, float guiHeight) {
-        if (world.renderedBlocks.isEmpty()) return;
+        render(guiX, guiY, guiWidth, guiHeight, false);
+    }
 
+    /**
+     * Renders the structure at the given GUI position with automatic rotation.
+     * @param fullModels Whether to draw the block models, otherwise voxels sized to the preview
+     */
+    public void render(float guiX, float guiY, float guiWidth, float guiHeight, boolean fullModels) {
         Minecraft mc = Minecraft.getMinecraft();
         ScaledResolution res = new ScaledResolution(mc);
         float scaleFactor = (float) res.getScaleFactor();
@@ -91,6 +117,10 @@ public class StructurePreviewRenderer {
         int screenW = (int) (guiWidth * scaleFactor);
         int screenH = (int) (guiHeight * scaleFactor);
 
+        // The world is only read once the first build is done
+        StructureMesh mesh = getMesh(fullModels, screenH);
+        if (mesh == null || world.renderedBlocks.isEmpty()) return;
+
         // Calculate time-based rotation
         float rotation = (System.currentTimeMillis() % 36000L) / 1000f * ROTATION_SPEED;
 
@@ -175,7 +205,7 @@ public class StructurePreviewRenderer {
         GlStateManager.translate(-centerX, -centerY, -centerZ);
 
         // Render the blocks
-        renderBlocks();
+        renderBlocks(mesh);
 
         // === RESTORE STATE ===
         // Disable scissor
@@ -243,9 +273,14 @@ public class StructurePreviewRenderer {
     }
 
     /**
-     * Renders all blocks in the dummy world.
+     * Renders all blocks in the dummy world, from the compiled mesh.
      */
-    private void renderBlocks() {
+    private void renderBlocks(StructureMesh mesh) {
+        if (!mesh.isTextured()) {
+            renderVoxels(mesh);
+            return;
+        }
+
         Minecraft mc = Minecraft.getMinecraft();
 
         // Set up render state for blocks
@@ -269,78 +304,233 @@ public class StructurePreviewRenderer {
 
         mc.renderEngine.bindTexture(TextureMap.LOCATION_BLOCKS_TEXTURE);
 
-        BlockRendererDispatcher blockRenderer = mc.getBlockRendererDispatcher();
-        BlockRenderLayer oldLayer = MinecraftForgeClient.getRenderLayer();
+        // Render opaque layers first
+        GlStateManager.disableBlend();
+        GlStateManager.depthMask(true);
+
+        for (BlockRenderLayer layer : BlockRenderLayer.values()) {
+            if (layer != BlockRenderLayer.TRANSLUCENT) mesh.draw(layer);
+        }
+
+        // Render translucent layer last
+        GlStateManager.enableBlend();
+        GlStateManager.tryBlendFuncSeparate(
+            GlStateManager.SourceFactor.SRC_ALPHA,
+            GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA,
+            GlStateManager.SourceFactor.ONE,
+            GlStateManager.DestFactor.ZERO
+        );
+        GlStateManager.depthMask(false);
+
+        mesh.draw(BlockRenderLayer.TRANSLUCENT);
+    }
+
+    /**
+     * Renders the voxels of the compiled mesh, their shading is baked in the vertex colors.
+     */
+    private void renderVoxels(StructureMesh mesh) {
+        GlStateManager.enableDepth();
+        GlStateManager.depthMask(true);
+        GlStateManager.enableCull();
+        GlStateManager.disableLighting();
+        GlStateManager.disableBlend();
+        GlStateManager.disableTexture2D();
+        GlStateManager.color(1f, 1f, 1f, 1f);
+
+        mesh.draw(BlockRenderLayer.SOLID);
 
-        try {
-            // Render opaque layers first
-            for (BlockRenderLayer layer : BlockRenderLayer.values()) {
-                if (layer == BlockRenderLayer.TRANSLUCENT) continue;
+        GlStateManager.enableTexture2D();
+    }
 
-                ForgeHooksClient.setRenderLayer(layer);
+    /**
+     * Blocks per voxel side for a view of the given height in pixels, so that voxels are at least
+     * {@link #MIN_VOXEL_PIXELS} wide. Only once the world is filled.
+     */
+    private int getVoxelScale(int screenHeight) {
+        Vector3f size = world.getSize();
+        float maxDimension = Math.max(Math.max(size.x, size.y), size.z);
+        float pixelsPerBlock = screenHeight / (2 * maxDimension * ZOOM_FACTOR);
 
-                GlStateManager.disableBlend();
-                GlStateManager.depthMask(true);
+        int scale = 1;
+        while (scale < MAX_VOXEL_SCALE && scale * pixelsPerBlock < MIN_VOXEL_PIXELS) scale *= 2;
 
-                Tessellator tess = Tessellator.getInstance();
-                BufferBuilder buffer = tess.getBuffer();
-                buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.BLOCK);
+        return scale;
+    }
 
-                for (BlockPos pos : world.renderedBlocks) {
-                    IBlockState state = world.getBlockState(pos);
-                    Block block = state.getBlock();
-                    if (block == Blocks.AIR) continue;
+    /**
+     * Fill the world and compile its mesh in the background, replacing its blocks. The build starts on the next
+     * render, with the detail it asks for. Until the mesh is ready nothing is drawn and {@link #isBuilding()} is
+     * true. Building again or disposing cancels it.
+     */
+    public void buildInBackground(WorldFiller filler) {
+        // The old blocks go away, so do their meshes
+        deleteMeshes();
+        if (build != null) build.cancelled.set(true);
+        build = null;
 
-                    try {
-                        state = state.getActualState(world, pos);
-                    } catch (Exception ignored) {
-                    }
+        pendingFiller = filler;
+    }
 
-                    if (block.canRenderInLayer(state, layer)) {
-                        blockRenderer.renderBlock(state, pos, world, buffer);
-                    }
+    /**
+     * Whether the structure is being built and nothing can be drawn yet. A placeholder should be shown instead.
+     */
+    public boolean isBuilding() {
+        return mesh == null && voxelMesh == null && (build != null || pendingFiller != null);
+    }
+
+    /**
+     * Whether the structure is built and has no blocks.
+     */
+    public boolean isEmpty() {
+        return !isBuilding() && world.renderedBlocks.isEmpty();
+    }
+
+    private void startBuild(boolean fullModels, int screenHeight) {
+        if (build != null) build.cancelled.set(true);
+
+        Build next = new Build(lightingMode);
+        WorldFiller filler = pendingFiller;
+        build = next;
+
+        getBuilders().execute(() -> {
+            BufferBuilder[] buffers = null;
+            try {
+                if (filler != null && !next.cancelled.get()) {
+                    world.clear();
+                    filler.fill(world, next.cancelled::get);
                 }
 
-                tess.draw();
-                buffer.setTranslation(0, 0, 0);
+                next.version = world.getVersion();
+                next.voxelScale = fullModels ? 0 : getVoxelScale(screenHeight);
+                if (!next.cancelled.get()) {
+                    buffers = next.voxelScale > 0
+                        ? StructureMesh.tessellateVoxels(world, next.voxelScale, next.cancelled::get)
+                        : StructureMesh.tessellate(world, next.cancelled::get);
+                }
+            } catch (RuntimeException e) {
+                // A mod block that can't render here, nothing to draw rather than retrying every frame
+                SimpleStructureScanner.LOGGER.debug("Failed to build structure preview: {}", e.getMessage());
+                buffers = new BufferBuilder[BlockRenderLayer.values().length];
+            } finally {
+                next.result.complete(buffers);
             }
+        });
+    }
 
-            // Render translucent layer last
-            ForgeHooksClient.setRenderLayer(BlockRenderLayer.TRANSLUCENT);
-
-            GlStateManager.enableBlend();
-            GlStateManager.tryBlendFuncSeparate(
-                GlStateManager.SourceFactor.SRC_ALPHA,
-                GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA,
-                GlStateManager.SourceFactor.ONE,
-                GlStateManager.DestFactor.ZERO
-            );
-            GlStateManager.depthMask(false);
-
-            Tessellator tess = Tessellator.getInstance();
-            BufferBuilder buffer = tess.getBuffer();
-            buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.BLOCK);
-
-            for (BlockPos pos : world.renderedBlocks) {
-                IBlockState state = world.getBlockState(pos);
-                Block block = state.getBlock();
-                if (block == Blocks.AIR) continue;
-
-                try {
-                    state = state.getActualState(world, pos);
-                } catch (Exception ignored) {
+    /**
+     * The compiled mesh of the structure at the wanted detail, uploading finished builds and starting a new one
+     * when the blocks, the lighting mode or the voxel scale changed. The previous mesh, or the one of the other
+     * detail, is drawn while recompiling.
+     * @return Null until the first build is done
+     */
+    private StructureMesh getMesh(boolean fullModels, int screenHeight) {
+        Build done = build;
+        if (done != null && done.result.isDone()) {
+            build = null;
+
+            BufferBuilder[] buffers = done.result.getNow(null);
+            if (buffers != null && !done.cancelled.get()) {
+                StructureMesh uploaded = StructureMesh.upload(buffers);
+                if (done.voxelScale > 0) {
+                    if (voxelMesh != null) voxelMesh.delete();
+                    voxelMesh = uploaded;
+                    voxelMeshVersion = done.version;
+                    voxelMeshScale = done.voxelScale;
+                } else {
+                    if (mesh != null) mesh.delete();
+                    mesh = uploaded;
+                    meshVersion = done.version;
+                    meshLightingMode = done.lightingMode;
                 }
+                pendingFiller = null;
 
-                if (block.canRenderInLayer(state, BlockRenderLayer.TRANSLUCENT)) {
-                    blockRenderer.renderBlock(state, pos, world, buffer);
-                }
+                SimpleStructureScanner.LOGGER.debug("Compiled structure preview: {} blocks, {} visible, {} quads, voxel scale {}",
+                    world.renderedBlocks.size(), world.getVisibleBlocks().size(), uploaded.getQuadCount(), done.voxelScale);
             }
+        }
+
+        if (build == null) {
+            // The world's bounds, giving the voxel scale, are only known once it's filled
+            boolean stale;
+            if (pendingFiller != null) {
+                stale = true;
+            } else if (fullModels) {
+                stale = mesh == null || meshVersion != world.getVersion() || meshLightingMode != lightingMode;
+            } else {
+                stale = voxelMesh == null || voxelMeshVersion != world.getVersion()
+                    || voxelMeshScale != getVoxelScale(screenHeight);
+            }
+
+            if (stale) startBuild(fullModels, screenHeight);
+        }
 
-            tess.draw();
-            buffer.setTranslation(0, 0, 0);
+        StructureMesh wanted = fullModels ? mesh : voxelMesh;
+        if (wanted != null) return wanted;
 
-        } finally {
-            ForgeHooksClient.setRenderLayer(oldLayer);
+        return fullModels ? voxelMesh : mesh;
+    }
+
+    /**
+     * Cancels the build and frees the compiled mesh. The renderer can still be used, the mesh is built again on
+     * the next render.
+     */
+    public void dispose() {
+        if (build != null) build.cancelled.set(true);
+        build = null;
+
+        deleteMeshes();
+    }
+
+    private void deleteMeshes() {
+        if (mesh != null) mesh.delete();
+        mesh = null;
+
+        if (voxelMesh != null) voxelMesh.delete();
+        voxelMesh = null;
+    }
+
+    private static synchronized ThreadPoolExecutor getBuilders() {
+        if (builders == null) {
+            // A single thread: a cancelled build ends at its next block, then the new one starts
+            AtomicInteger threadId = new AtomicInteger();
+            builders = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "Structure Preview Builder #" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+            builders.allowCoreThreadTimeOut(true);
+        }
+
+        return builders;
+    }
+
+    /**
+     * Adds the structure's blocks to the preview world, on the builder thread.
+     */
+    @FunctionalInterface
+    public interface WorldFiller {
+        /**
+         * @param cancelled Becomes true when the preview is not wanted anymore, the filler can then stop early
+         */
+        void fill(DummyWorld world, BooleanSupplier cancelled);
+    }
+
+    /**
+     * A mesh being tessellated in the background.
+     */
+    private static final class Build {
+        final LightingMode lightingMode;
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final CompletableFuture<BufferBuilder[]> result = new CompletableFuture<>();
+
+        // World version the mesh was tessellated from and its blocks per voxel side (0 for block models),
+        // set before the result
+        int version;
+        int voxelScale;
+
+        Build(LightingMode lightingMode) {
+            this.lightingMode = lightingMode;
         }
     }
 }
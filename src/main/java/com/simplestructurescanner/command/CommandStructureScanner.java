@@ -0,0 +1,77 @@
+package com.simplestructurescanner.command;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentTranslation;
+
+import com.simplestructurescanner.network.ServerSearchExecutor;
+import com.simplestructurescanner.structure.BatchedBiomeCheck;
+import com.simplestructurescanner.structure.BiomeLookupCache;
+import com.simplestructurescanner.structure.ServerSearchCache;
+import com.simplestructurescanner.structure.StructurePositionCache;
+
+
+/**
+ * Operator command reporting the server-side search cache statistics.
+ * Usage: /structurescanner stats | clear
+ */
+public class CommandStructureScanner extends CommandBase {
+    @Override
+    public String getName() {
+        return "structurescanner";
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender) {
+        return "commands.structurescanner.usage";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        if (args.length != 1) throw new WrongUsageException(getUsage(sender));
+
+        if (args[0].equals("stats")) {
+            sender.sendMessage(new TextComponentTranslation("commands.structurescanner.stats.searches",
+                ServerSearchCache.getHits(), ServerSearchCache.getMisses(), ServerSearchCache.getJoined(),
+                ServerSearchCache.getEntryCount()));
+            sender.sendMessage(new TextComponentTranslation("commands.structurescanner.stats.pending",
+                ServerSearchExecutor.getPendingCount()));
+            sender.sendMessage(new TextComponentTranslation("commands.structurescanner.stats.cells",
+                StructurePositionCache.getCellHits(), StructurePositionCache.getCellMisses(),
+                StructurePositionCache.getCachedTileCount()));
+            sender.sendMessage(new TextComponentTranslation("commands.structurescanner.stats.biomes",
+                BiomeLookupCache.getTileHits(), BiomeLookupCache.getTileMisses(),
+                BiomeLookupCache.getCachedTileCount()));
+            sender.sendMessage(new TextComponentTranslation("commands.structurescanner.stats.biomeChecks",
+                BatchedBiomeCheck.getTotalPointChecks(), BatchedBiomeCheck.getTotalAreaChecks()));
+        } else if (args[0].equals("clear")) {
+            // Only the in-memory search results, the other caches are exact and reused across searches
+            ServerSearchCache.clear();
+            notifyCommandListener(sender, this, "commands.structurescanner.cleared");
+        } else {
+            throw new WrongUsageException(getUsage(sender));
+        }
+    }
+
+    @Override
+    public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args,
+            @Nullable BlockPos targetPos) {
+        if (args.length == 1) return getListOfStringsMatchingLastWord(args, "stats", "clear");
+
+        return Collections.emptyList();
+    }
+}
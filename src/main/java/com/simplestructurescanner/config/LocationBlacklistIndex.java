@@ -0,0 +1,116 @@
+package com.simplestructurescanner.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+
+/**
+ * Index of the blacklisted locations, so checking a position doesn't format or compare strings.
+ *
+ * <p>Locations are grouped by world, then by structure ID, into sets of packed coordinates: X/Z for
+ * Y-agnostic entries, X/Y/Z for exact ones. Lookups don't allocate. Entries that don't parse, or aren't
+ * written exactly as {@link #format} writes them, are ignored, like the exact string match the index replaces.</p>
+ */
+final class LocationBlacklistIndex {
+    // World -> structure ID -> locations
+    private final Long2ObjectMap<Map<String, Locations>> worlds = new Long2ObjectOpenHashMap<>();
+    private int size = 0;
+
+    void clear() {
+        worlds.clear();
+        size = 0;
+    }
+
+    /**
+     * Index a config entry, see {@link ModConfig#addBlacklistedLocation} for the format.
+     * @return False if the entry is malformed or already indexed
+     */
+    boolean add(String entry) {
+        String[] parts = entry.split("\\|");
+        if (parts.length != 4 && parts.length != 5) return false;
+
+        try {
+            long worldSeed = Long.parseLong(parts[0]);
+            String structureId = parts[1];
+            int x = Integer.parseInt(parts[2]);
+            int z = Integer.parseInt(parts[parts.length - 1]);
+            boolean yAgnostic = parts.length == 4;
+            int y = yAgnostic ? 0 : Integer.parseInt(parts[3]);
+
+            // Only entries exactly as formatted count (no padding, signs or leading zeros), as removing one from the
+            // config matches the formatted string
+            if (!entry.equals(format(worldSeed, structureId, x, y, z, yAgnostic))) return false;
+
+            return add(worldSeed, structureId, x, y, z, yAgnostic);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The config entry of a location, see {@link ModConfig#addBlacklistedLocation}.
+     */
+    static String format(long worldSeed, String structureId, int x, int y, int z, boolean yAgnostic) {
+        return yAgnostic
+            ? String.format("%d|%s|%d|%d", worldSeed, structureId, x, z)
+            : String.format("%d|%s|%d|%d|%d", worldSeed, structureId, x, y, z);
+    }
+
+    /**
+     * @return False if the location was already indexed
+     */
+    boolean add(long worldSeed, String structureId, int x, int y, int z, boolean yAgnostic) {
+        Locations locations = worlds.computeIfAbsent(worldSeed, k -> new HashMap<>())
+            .computeIfAbsent(structureId, k -> new Locations());
+
+        boolean added = yAgnostic ? locations.columns.add(packColumn(x, z)) : locations.exact.add(packExact(x, y, z));
+        if (added) size++;
+
+        return added;
+    }
+
+    void remove(long worldSeed, String structureId, int x, int y, int z, boolean yAgnostic) {
+        Locations locations = get(worldSeed, structureId);
+        if (locations == null) return;
+
+        boolean removed = yAgnostic ? locations.columns.remove(packColumn(x, z)) : locations.exact.remove(packExact(x, y, z));
+        if (removed) size--;
+    }
+
+    /**
+     * Check a position against both the Y-agnostic and the exact entries.
+     */
+    boolean contains(long worldSeed, String structureId, int x, int y, int z) {
+        if (size == 0) return false;
+
+        Locations locations = get(worldSeed, structureId);
+        if (locations == null) return false;
+
+        return locations.columns.contains(packColumn(x, z)) || locations.exact.contains(packExact(x, y, z));
+    }
+
+    private Locations get(long worldSeed, String structureId) {
+        Map<String, Locations> structures = worlds.get(worldSeed);
+
+        return structures == null ? null : structures.get(structureId);
+    }
+
+    private static long packColumn(int x, int z) {
+        return (long) x << 32 | (z & 0xFFFFFFFFL);
+    }
+
+    // Same layout as BlockPos.toLong, without the allocation
+    private static long packExact(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) y & 0xFFFL) << 26 | ((long) z & 0x3FFFFFFL);
+    }
+
+    private static final class Locations {
+        final LongSet columns = new LongOpenHashSet();
+        final LongSet exact = new LongOpenHashSet();
+    }
+}
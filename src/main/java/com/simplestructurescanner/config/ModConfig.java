@@ -29,6 +29,7 @@ public class ModConfig {
     public static List<String> clientStructureWhitelist = new ArrayList<>();
     public static List<String> clientStructureBlacklist = new ArrayList<>();
     public static List<String> clientBlacklistedLocations = new ArrayList<>();
+    private static final LocationBlacklistIndex blacklistedLocationIndex = new LocationBlacklistIndex();
     public static boolean clientShowBlocks = true;
     public static boolean clientShowEntities = true;
     public static boolean clientShowLootTables = true;
@@ -37,9 +38,15 @@ public class ModConfig {
     public static int clientHudPaddingExternal = 4;
     public static int clientHudPaddingInternal = 2;
     public static int clientHudLineSpacing = 2;
+    public static int clientSearchBudgetMicros = 2000;
+    public static boolean clientCacheLootOnDisk = true;
+    public static int clientLootSimulationTolerance = 5;
+    public static int clientLootSimulationMaxRolls = 20000;
 
     // Server settings
     public static boolean serverEnableSearch = true;
+    public static int serverSearchThreads = 0;
+    public static int serverSearchWorkers = 2;
 
     private static final List<String> hiddenConfigs = Arrays.asList(
         "i18nNames",
@@ -105,6 +112,22 @@ public class ModConfig {
         prop.setLanguageKey("config.structurescanner.client.hudLineSpacing");
         clientHudLineSpacing = prop.getInt();
 
+        prop = config.get("client", "searchBudgetMicros", clientSearchBudgetMicros, "", 100, 50000);
+        prop.setLanguageKey("config.structurescanner.client.searchBudgetMicros");
+        clientSearchBudgetMicros = prop.getInt();
+
+        prop = config.get("client", "cacheLootOnDisk", clientCacheLootOnDisk);
+        prop.setLanguageKey("config.structurescanner.client.cacheLootOnDisk");
+        clientCacheLootOnDisk = prop.getBoolean();
+
+        prop = config.get("client", "lootSimulationTolerance", clientLootSimulationTolerance, "", 1, 50);
+        prop.setLanguageKey("config.structurescanner.client.lootSimulationTolerance");
+        clientLootSimulationTolerance = prop.getInt();
+
+        prop = config.get("client", "lootSimulationMaxRolls", clientLootSimulationMaxRolls, "", 1000, 1000000);
+        prop.setLanguageKey("config.structurescanner.client.lootSimulationMaxRolls");
+        clientLootSimulationMaxRolls = prop.getInt();
+
         // Whitelist/blacklist
         prop = config.get("client", "structureWhitelist", new String[0]);
         prop.setLanguageKey("config.structurescanner.client.structureWhitelist");
@@ -143,8 +166,12 @@ public class ModConfig {
         prop = config.get("client", "blacklistedLocations", new String[0]);
         prop.setLanguageKey("config.structurescanner.client.blacklistedLocations");
         clientBlacklistedLocations = new ArrayList<>();
+        blacklistedLocationIndex.clear();
         for (String s : prop.getStringList()) {
-            if (!s.isEmpty()) clientBlacklistedLocations.add(s);
+            if (s.isEmpty()) continue;
+
+            clientBlacklistedLocations.add(s);
+            blacklistedLocationIndex.add(s);
         }
 
         // Server settings
@@ -152,6 +179,14 @@ public class ModConfig {
         prop.setLanguageKey("config.structurescanner.server.enableSearch");
         serverEnableSearch = prop.getBoolean();
 
+        prop = config.get("server", "searchThreads", serverSearchThreads, "", 0, 64);
+        prop.setLanguageKey("config.structurescanner.server.searchThreads");
+        serverSearchThreads = prop.getInt();
+
+        prop = config.get("server", "searchWorkers", serverSearchWorkers, "", 0, 16);
+        prop.setLanguageKey("config.structurescanner.server.searchWorkers");
+        serverSearchWorkers = prop.getInt();
+
         if (config.hasChanged()) config.save();
     }
 
@@ -367,6 +402,22 @@ public class ModConfig {
         return clientHudEnabled;
     }
 
+    public static int getClientSearchBudgetMicros() {
+        return clientSearchBudgetMicros;
+    }
+
+    public static boolean isClientLootDiskCacheEnabled() {
+        return clientCacheLootOnDisk;
+    }
+
+    public static int getClientLootSimulationTolerance() {
+        return clientLootSimulationTolerance;
+    }
+
+    public static int getClientLootSimulationMaxRolls() {
+        return clientLootSimulationMaxRolls;
+    }
+
     public static boolean isSearchEnabled() {
         return clientEnableSearch && serverEnableSearch;
     }
@@ -378,35 +429,31 @@ public class ModConfig {
      * or "worldSeed|structureId|x|y|z" for exact locations.
      */
     public static void addBlacklistedLocation(long worldSeed, String structureId, int x, int y, int z, boolean yAgnostic) {
-        String entry = yAgnostic
-            ? String.format("%d|%s|%d|%d", worldSeed, structureId, x, z)
-            : String.format("%d|%s|%d|%d|%d", worldSeed, structureId, x, y, z);
+        String entry = LocationBlacklistIndex.format(worldSeed, structureId, x, y, z, yAgnostic);
 
-        if (!clientBlacklistedLocations.contains(entry)) {
+        if (blacklistedLocationIndex.add(worldSeed, structureId, x, y, z, yAgnostic)) {
             clientBlacklistedLocations.add(entry);
             saveBlacklistedLocations();
         }
     }
 
     public static void removeBlacklistedLocation(long worldSeed, String structureId, int x, int y, int z, boolean yAgnostic) {
-        String entry = yAgnostic
-            ? String.format("%d|%s|%d|%d", worldSeed, structureId, x, z)
-            : String.format("%d|%s|%d|%d|%d", worldSeed, structureId, x, y, z);
+        String entry = LocationBlacklistIndex.format(worldSeed, structureId, x, y, z, yAgnostic);
 
         if (clientBlacklistedLocations.remove(entry)) {
+            // The config may list an entry more than once
+            if (!clientBlacklistedLocations.contains(entry)) {
+                blacklistedLocationIndex.remove(worldSeed, structureId, x, y, z, yAgnostic);
+            }
             saveBlacklistedLocations();
         }
     }
 
+    /**
+     * Check a location against the blacklist. Called for every search result, the lookup doesn't allocate.
+     */
     public static boolean isLocationBlacklisted(long worldSeed, String structureId, int x, int y, int z) {
-        // Check y-agnostic format first
-        String yAgnosticEntry = String.format("%d|%s|%d|%d", worldSeed, structureId, x, z);
-        if (clientBlacklistedLocations.contains(yAgnosticEntry)) return true;
-
-        // Check exact format
-        String exactEntry = String.format("%d|%s|%d|%d|%d", worldSeed, structureId, x, y, z);
-
-        return clientBlacklistedLocations.contains(exactEntry);
+        return blacklistedLocationIndex.contains(worldSeed, structureId, x, y, z);
     }
 
     private static void saveBlacklistedLocations() {
@@ -0,0 +1,25 @@
+package com.simplestructurescanner.network;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.network.FMLNetworkEvent;
+
+
+/**
+ * Connection events of the search protocol: sends the structure ID table on login, and forgets it on disconnect.
+ */
+public class NetworkEvents {
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (!(event.player instanceof EntityPlayerMP)) return;
+
+        NetworkHandler.INSTANCE.sendTo(new PacketStructureIdTable(StructureIdTable.server()), (EntityPlayerMP) event.player);
+    }
+
+    @SubscribeEvent
+    public void onClientDisconnected(FMLNetworkEvent.ClientDisconnectionFromServerEvent event) {
+        StructureIdTable.resetClientTable();
+    }
+}
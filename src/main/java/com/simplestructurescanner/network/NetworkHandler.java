@@ -1,5 +1,6 @@
 package com.simplestructurescanner.network;
 
+import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
 import net.minecraftforge.fml.relauncher.Side;
@@ -8,6 +9,7 @@ import net.minecraftforge.fml.relauncher.Side;
 /**
  * Handles network communication between client and server.
  * Structure searches are always performed server-side where the seed is available.
+ * Search packets use the compact encodings of {@link WireFormat}.
  */
 public class NetworkHandler {
     // Network channel name must be <= 20 characters (Forge limitation)
@@ -42,5 +44,31 @@ public class NetworkHandler {
             packetId++,
             Side.SERVER
         );
+
+        // Client -> Server: Request searches for several structures
+        INSTANCE.registerMessage(
+            PacketRequestStructureSearchBatch.Handler.class,
+            PacketRequestStructureSearchBatch.class,
+            packetId++,
+            Side.SERVER
+        );
+
+        // Server -> Client: Return the results of several searches
+        INSTANCE.registerMessage(
+            PacketStructureSearchBatchResult.Handler.class,
+            PacketStructureSearchBatchResult.class,
+            packetId++,
+            Side.CLIENT
+        );
+
+        // Server -> Client: Structure ID table, sent on login
+        INSTANCE.registerMessage(
+            PacketStructureIdTable.Handler.class,
+            PacketStructureIdTable.class,
+            packetId++,
+            Side.CLIENT
+        );
+
+        MinecraftForge.EVENT_BUS.register(new NetworkEvents());
     }
 }
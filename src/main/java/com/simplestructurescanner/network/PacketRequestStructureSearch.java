@@ -1,60 +1,63 @@
 package com.simplestructurescanner.network;
 
-import java.util.List;
-
 import io.netty.buffer.ByteBuf;
 
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.minecraftforge.fml.common.network.ByteBufUtils;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
-import com.simplestructurescanner.structure.StructureLocation;
-import com.simplestructurescanner.structure.StructureProviderRegistry;
-
 
 /**
  * Packet sent from client to server requesting a structure search.
- * The server performs the search and returns either batch results (if supported)
- * or a single result with the given skip count.
+ * The server performs the search and returns either batch results (if supported), in pages nearest first,
+ * or a single result with the given skip count. Batch searches can continue an earlier one from the same position,
+ * the server then sends the results after the ones the client already has.
  */
 public class PacketRequestStructureSearch implements IMessage {
     private ResourceLocation structureId;
     private BlockPos playerPos;
     private int skipCount;
-
-    private static final int MAX_CACHE_RESULTS = 100;
+    private int resultOffset;
 
     public PacketRequestStructureSearch() {
     }
 
     public PacketRequestStructureSearch(ResourceLocation structureId, BlockPos playerPos, int skipCount) {
+        this(structureId, playerPos, skipCount, 0);
+    }
+
+    /**
+     * @param resultOffset Batch results the client already received from a search from this position, 0 for a new
+     *                     search
+     */
+    public PacketRequestStructureSearch(ResourceLocation structureId, BlockPos playerPos, int skipCount,
+            int resultOffset) {
         this.structureId = structureId;
         this.playerPos = playerPos;
         this.skipCount = skipCount;
+        this.resultOffset = resultOffset;
     }
 
     @Override
     public void fromBytes(ByteBuf buf) {
-        structureId = new ResourceLocation(ByteBufUtils.readUTF8String(buf));
-        int x = buf.readInt();
-        int y = buf.readInt();
-        int z = buf.readInt();
-        playerPos = new BlockPos(x, y, z);
-        skipCount = buf.readInt();
+        WireFormat.readVersion(buf);
+        structureId = WireFormat.readStructureId(buf, StructureIdTable.server());
+        playerPos = WireFormat.readBlockPos(buf);
+        skipCount = WireFormat.readVarInt(buf);
+        resultOffset = WireFormat.readVarInt(buf);
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
-        ByteBufUtils.writeUTF8String(buf, structureId.toString());
-        buf.writeInt(playerPos.getX());
-        buf.writeInt(playerPos.getY());
-        buf.writeInt(playerPos.getZ());
-        buf.writeInt(skipCount);
+        WireFormat.writeVersion(buf);
+        WireFormat.writeStructureId(buf, structureId, StructureIdTable.client());
+        WireFormat.writeBlockPos(buf, playerPos);
+        WireFormat.writeVarInt(buf, skipCount);
+        WireFormat.writeVarInt(buf, resultOffset);
     }
 
     public static class Handler implements IMessageHandler<PacketRequestStructureSearch, IMessage> {
@@ -62,33 +65,21 @@ public class PacketRequestStructureSearch implements IMessage {
         public IMessage onMessage(PacketRequestStructureSearch message, MessageContext ctx) {
             EntityPlayerMP player = ctx.getServerHandler().player;
             player.getServerWorld().addScheduledTask(() -> {
+                // Captured on the server thread, the search itself may run on a worker
                 World world = player.world;
-                ResourceLocation structureId = message.structureId;
-                BlockPos playerPos = message.playerPos;
-                int skipCount = message.skipCount;
-
-                // Try batch search first
-                List<BlockPos> positions = StructureProviderRegistry.findAllNearby(
-                    world, structureId, playerPos, MAX_CACHE_RESULTS
-                );
-
-                if (positions != null) {
-                    // Batch supported, return all positions
-                    NetworkHandler.INSTANCE.sendTo(
-                        new PacketStructureSearchResult(structureId, positions, playerPos),
-                        player
-                    );
-                } else {
-                    // Batch not supported, return single location
-                    StructureLocation location = StructureProviderRegistry.findNearest(
-                        world, structureId, playerPos, skipCount
-                    );
-
-                    NetworkHandler.INSTANCE.sendTo(
-                        new PacketStructureSearchResult(structureId, location, skipCount),
-                        player
-                    );
-                }
+                PagedStructureSearch search = new PagedStructureSearch(
+                    world, message.structureId, message.playerPos, message.skipCount, message.resultOffset);
+
+                // Nearest results first, then pages of more distant ones as the search widens
+                ServerSearchExecutor.submit(player, message.structureId, partialResults -> {
+                    PacketStructureSearchResult page = search.nextPage();
+                    while (!search.isFinished()) {
+                        partialResults.accept(page);
+                        page = search.nextPage();
+                    }
+
+                    return page;
+                });
             });
 
             return null;
@@ -0,0 +1,131 @@
+package com.simplestructurescanner.network;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+import com.simplestructurescanner.structure.StructureProviderRegistry;
+
+
+/**
+ * Packet sent from client to server requesting searches for several structures at once (e.g. every tracked
+ * structure on login). The server answers with {@link PacketStructureSearchBatchResult}s holding a page of every
+ * structure's results at a time, nearest first.
+ */
+public class PacketRequestStructureSearchBatch implements IMessage {
+    // Bounds the work a single packet can request
+    private static final int MAX_STRUCTURES = 64;
+
+    // Structure ID -> skip count
+    private Map<ResourceLocation, Integer> requests;
+    private BlockPos playerPos;
+
+    public PacketRequestStructureSearchBatch() {
+    }
+
+    public PacketRequestStructureSearchBatch(Map<ResourceLocation, Integer> requests, BlockPos playerPos) {
+        this.requests = requests;
+        this.playerPos = playerPos;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        WireFormat.readVersion(buf);
+        playerPos = WireFormat.readBlockPos(buf);
+
+        int count = WireFormat.readVarInt(buf);
+        requests = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            ResourceLocation structureId = WireFormat.readStructureId(buf, StructureIdTable.server());
+            int skipCount = WireFormat.readVarInt(buf);
+            if (requests.size() < MAX_STRUCTURES) requests.put(structureId, skipCount);
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        WireFormat.writeVersion(buf);
+        WireFormat.writeBlockPos(buf, playerPos);
+
+        WireFormat.writeVarInt(buf, requests.size());
+        for (Map.Entry<ResourceLocation, Integer> request : requests.entrySet()) {
+            WireFormat.writeStructureId(buf, request.getKey(), StructureIdTable.client());
+            WireFormat.writeVarInt(buf, request.getValue());
+        }
+    }
+
+    public static class Handler implements IMessageHandler<PacketRequestStructureSearchBatch, IMessage> {
+        @Override
+        public IMessage onMessage(PacketRequestStructureSearchBatch message, MessageContext ctx) {
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            player.getServerWorld().addScheduledTask(() -> {
+                World world = player.world;
+                List<PagedStructureSearch> worldSearches = new ArrayList<>();
+                List<PagedStructureSearch> seedOnlySearches = new ArrayList<>();
+                Set<ResourceLocation> worldIds = new TreeSet<>();
+                Set<ResourceLocation> seedOnlyIds = new TreeSet<>();
+
+                for (Map.Entry<ResourceLocation, Integer> request : message.requests.entrySet()) {
+                    ResourceLocation structureId = request.getKey();
+                    PagedStructureSearch search = new PagedStructureSearch(
+                        world, structureId, message.playerPos, request.getValue(), 0);
+
+                    if (StructureProviderRegistry.isSeedOnlySearch(structureId)) {
+                        seedOnlySearches.add(search);
+                        seedOnlyIds.add(structureId);
+                    } else {
+                        worldSearches.add(search);
+                        worldIds.add(structureId);
+                    }
+                }
+
+                // Searches reading biomes run on the server thread, back to back so they share warm biome tiles.
+                // Seed-only searches run together on a worker.
+                if (!worldSearches.isEmpty()) {
+                    ServerSearchExecutor.submit(player, worldIds, false, partialResults -> searchPages(worldSearches, partialResults));
+                }
+
+                if (!seedOnlySearches.isEmpty()) {
+                    ServerSearchExecutor.submit(player, seedOnlyIds, true, partialResults -> searchPages(seedOnlySearches, partialResults));
+                }
+            });
+
+            return null;
+        }
+
+        /**
+         * Advance the searches together, one reply per page.
+         * @return The reply with the last pages
+         */
+        private static IMessage searchPages(List<PagedStructureSearch> searches, Consumer<IMessage> partialResults) {
+            while (true) {
+                List<PacketStructureSearchResult> pages = new ArrayList<>();
+                boolean finished = true;
+
+                for (PagedStructureSearch search : searches) {
+                    PacketStructureSearchResult page = search.nextPage();
+                    if (page != null) pages.add(page);
+                    if (!search.isFinished()) finished = false;
+                }
+
+                if (finished) return new PacketStructureSearchBatchResult(pages);
+
+                partialResults.accept(new PacketStructureSearchBatchResult(pages));
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.simplestructurescanner.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+
+/**
+ * Packet sent from server to client on login with the server's {@link StructureIdTable},
+ * so the search packets can refer to structures by index.
+ */
+public class PacketStructureIdTable implements IMessage {
+    private List<ResourceLocation> ids;
+
+    public PacketStructureIdTable() {
+    }
+
+    public PacketStructureIdTable(StructureIdTable table) {
+        this.ids = table.getIds();
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        WireFormat.readVersion(buf);
+
+        int count = WireFormat.readVarInt(buf);
+        ids = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) ids.add(new ResourceLocation(ByteBufUtils.readUTF8String(buf)));
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        WireFormat.writeVersion(buf);
+
+        WireFormat.writeVarInt(buf, ids.size());
+        for (ResourceLocation id : ids) ByteBufUtils.writeUTF8String(buf, id.toString());
+    }
+
+    public static class Handler implements IMessageHandler<PacketStructureIdTable, IMessage> {
+        @Override
+        public IMessage onMessage(PacketStructureIdTable message, MessageContext ctx) {
+            // Set right away on the network thread, which decodes the result packets that follow with it
+            StructureIdTable.setClientTable(new StructureIdTable(message.ids));
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.simplestructurescanner.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+
+/**
+ * Packet sent from server to client with the results of a {@link PacketRequestStructureSearchBatch},
+ * one {@link PacketStructureSearchResult} per structure.
+ */
+public class PacketStructureSearchBatchResult implements IMessage {
+    private List<PacketStructureSearchResult> results;
+
+    public PacketStructureSearchBatchResult() {
+    }
+
+    public PacketStructureSearchBatchResult(List<PacketStructureSearchResult> results) {
+        this.results = results;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        WireFormat.readVersion(buf);
+
+        int count = WireFormat.readVarInt(buf);
+        results = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++) {
+            PacketStructureSearchResult result = new PacketStructureSearchResult();
+            result.readEntry(buf);
+            results.add(result);
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        WireFormat.writeVersion(buf);
+
+        WireFormat.writeVarInt(buf, results.size());
+        for (PacketStructureSearchResult result : results) result.writeEntry(buf);
+    }
+
+    public static class Handler implements IMessageHandler<PacketStructureSearchBatchResult, IMessage> {
+        @Override
+        public IMessage onMessage(PacketStructureSearchBatchResult message, MessageContext ctx) {
+            Minecraft.getMinecraft().addScheduledTask(() -> {
+                for (PacketStructureSearchResult result : message.results) result.apply();
+            });
+
+            return null;
+        }
+    }
+}
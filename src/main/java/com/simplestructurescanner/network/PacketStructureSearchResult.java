@@ -1,6 +1,5 @@
 package com.simplestructurescanner.network;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import io.netty.buffer.ByteBuf;
@@ -8,7 +7,6 @@ import io.netty.buffer.ByteBuf;
 import net.minecraft.client.Minecraft;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
-import net.minecraftforge.fml.common.network.ByteBufUtils;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
@@ -20,22 +18,28 @@ import com.simplestructurescanner.structure.StructureLocation;
 /**
  * Packet sent from server to client with the result of a structure search.
  * Contains either batch results (if provider supports it) or a single location.
- * Client handles caching and sorting.
+ * Client handles caching and sorting. Encoded with {@link WireFormat}, batch positions arrive in no particular order.
+ * Results carry the dimension they were searched in, so they reach that dimension's cache even if the player has
+ * changed dimension since.
  */
 public class PacketStructureSearchResult implements IMessage {
     private ResourceLocation structureId;
+    private int dimension;
     private boolean isBatchResponse;
 
     // Single location response
     private boolean found;
     private BlockPos position;
     private int skipCount;
+    // Results known up to this one, see StructureLocation#getTotalFound
     private int total;
     private boolean yAgnostic;
 
     // Batch response
     private List<BlockPos> positions;
     private BlockPos playerPos;
+    private boolean append;
+    private boolean more;
 
     public PacketStructureSearchResult() {
     }
@@ -43,8 +47,10 @@ public class PacketStructureSearchResult implements IMessage {
     /**
      * Single location response (provider doesn't support batch).
      */
-    public PacketStructureSearchResult(ResourceLocation structureId, StructureLocation location, int skipCount) {
+    public PacketStructureSearchResult(ResourceLocation structureId, int dimension, StructureLocation location,
+            int skipCount) {
         this.structureId = structureId;
+        this.dimension = dimension;
         this.isBatchResponse = false;
         this.found = location != null;
         this.skipCount = skipCount;
@@ -63,97 +69,106 @@ public class PacketStructureSearchResult implements IMessage {
     /**
      * Batch response with all locations for caching.
      */
-    public PacketStructureSearchResult(ResourceLocation structureId, List<BlockPos> positions, BlockPos playerPos) {
+    public PacketStructureSearchResult(ResourceLocation structureId, int dimension, List<BlockPos> positions,
+            BlockPos playerPos) {
+        this(structureId, dimension, positions, playerPos, false, false);
+    }
+
+    /**
+     * Batch response page.
+     * @param append False for the first page, true for the next ones (adding to the previous pages' positions)
+     * @param more Whether the search may have more results after this page, that a continuation request reads
+     */
+    public PacketStructureSearchResult(ResourceLocation structureId, int dimension, List<BlockPos> positions,
+            BlockPos playerPos, boolean append, boolean more) {
         this.structureId = structureId;
+        this.dimension = dimension;
         this.isBatchResponse = true;
         this.positions = positions;
         this.playerPos = playerPos;
+        this.append = append;
+        this.more = more;
         this.found = !positions.isEmpty();
     }
 
     @Override
     public void fromBytes(ByteBuf buf) {
-        structureId = new ResourceLocation(ByteBufUtils.readUTF8String(buf));
+        WireFormat.readVersion(buf);
+        readEntry(buf);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        WireFormat.writeVersion(buf);
+        writeEntry(buf);
+    }
+
+    /**
+     * Read the result without the format version, which {@link PacketStructureSearchBatchResult} only sends once.
+     */
+    void readEntry(ByteBuf buf) {
+        structureId = WireFormat.readStructureId(buf, StructureIdTable.client());
+        dimension = WireFormat.readSignedVarInt(buf);
         isBatchResponse = buf.readBoolean();
 
         if (isBatchResponse) {
-            int count = buf.readInt();
-            positions = new ArrayList<>(count);
-            for (int i = 0; i < count; i++) {
-                int x = buf.readInt();
-                int y = buf.readInt();
-                int z = buf.readInt();
-                positions.add(new BlockPos(x, y, z));
-            }
-            int px = buf.readInt();
-            int py = buf.readInt();
-            int pz = buf.readInt();
-            playerPos = new BlockPos(px, py, pz);
+            append = buf.readBoolean();
+            more = buf.readBoolean();
+            positions = WireFormat.readPositions(buf);
+            playerPos = WireFormat.readBlockPos(buf);
             found = !positions.isEmpty();
         } else {
             found = buf.readBoolean();
-            skipCount = buf.readInt();
+            skipCount = WireFormat.readVarInt(buf);
             if (found) {
-                int x = buf.readInt();
-                int y = buf.readInt();
-                int z = buf.readInt();
-                position = new BlockPos(x, y, z);
-                total = buf.readInt();
+                position = WireFormat.readBlockPos(buf);
+                total = WireFormat.readVarInt(buf);
                 yAgnostic = buf.readBoolean();
             }
         }
     }
 
-    @Override
-    public void toBytes(ByteBuf buf) {
-        ByteBufUtils.writeUTF8String(buf, structureId.toString());
+    void writeEntry(ByteBuf buf) {
+        WireFormat.writeStructureId(buf, structureId, StructureIdTable.server());
+        WireFormat.writeSignedVarInt(buf, dimension);
         buf.writeBoolean(isBatchResponse);
 
         if (isBatchResponse) {
-            buf.writeInt(positions.size());
-            for (BlockPos pos : positions) {
-                buf.writeInt(pos.getX());
-                buf.writeInt(pos.getY());
-                buf.writeInt(pos.getZ());
-            }
-            buf.writeInt(playerPos.getX());
-            buf.writeInt(playerPos.getY());
-            buf.writeInt(playerPos.getZ());
+            buf.writeBoolean(append);
+            buf.writeBoolean(more);
+            WireFormat.writePositions(buf, positions);
+            WireFormat.writeBlockPos(buf, playerPos);
         } else {
             buf.writeBoolean(found);
-            buf.writeInt(skipCount);
+            WireFormat.writeVarInt(buf, skipCount);
             if (found) {
-                buf.writeInt(position.getX());
-                buf.writeInt(position.getY());
-                buf.writeInt(position.getZ());
-                buf.writeInt(total);
+                WireFormat.writeBlockPos(buf, position);
+                WireFormat.writeVarInt(buf, total);
                 buf.writeBoolean(yAgnostic);
             }
         }
     }
 
+    /**
+     * Hand the result to the client's search manager. Must run on the client thread.
+     */
+    void apply() {
+        if (isBatchResponse) {
+            // Batch response: update cache
+            StructureSearchManager.handleBatchResponse(structureId, dimension, positions, playerPos, append, more);
+        } else {
+            // Single response: provider doesn't support batch
+            StructureLocation location = null;
+            if (found) location = new StructureLocation(position, skipCount, total, yAgnostic);
+
+            StructureSearchManager.handleSingleResponse(structureId, dimension, location, skipCount);
+        }
+    }
+
     public static class Handler implements IMessageHandler<PacketStructureSearchResult, IMessage> {
         @Override
         public IMessage onMessage(PacketStructureSearchResult message, MessageContext ctx) {
-            Minecraft.getMinecraft().addScheduledTask(() -> {
-                if (message.isBatchResponse) {
-                    // Batch response: update cache
-                    StructureSearchManager.handleBatchResponse(
-                        message.structureId,
-                        message.positions,
-                        message.playerPos
-                    );
-                } else {
-                    // Single response: provider doesn't support batch
-                    StructureLocation location = null;
-                    if (message.found) {
-                        location = new StructureLocation(
-                            message.position, message.skipCount, message.total, message.yAgnostic
-                        );
-                    }
-                    StructureSearchManager.handleSingleResponse(message.structureId, location, message.skipCount);
-                }
-            });
+            Minecraft.getMinecraft().addScheduledTask(message::apply);
 
             return null;
         }
@@ -0,0 +1,89 @@
+package com.simplestructurescanner.network;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import com.simplestructurescanner.structure.NearestStructureCursor;
+import com.simplestructurescanner.structure.StructureLocation;
+import com.simplestructurescanner.structure.StructureProviderRegistry;
+
+
+/**
+ * A search whose results are sent as pages of growing size, nearest structures first.
+ *
+ * <p>Each page reads the structures the earlier ones didn't from a {@link NearestStructureCursor}, so the first
+ * page is sent as soon as its nearest rings are evaluated, and the later pages only search the rings further out.
+ * Work is shared with other searches through the position cache, not by caching the result. Providers without
+ * batch search answer with a single result.</p>
+ *
+ * <p>A request sends at most {@link #MAX_RESULTS} results. The last page tells whether there may be more, and the
+ * client asks for them with a new request continuing from the results it has (the result offset).</p>
+ */
+final class PagedStructureSearch {
+    static final int MAX_RESULTS = 100;
+
+    // Results sent once each page is sent, after the result offset
+    private static final int[] PAGE_SIZES = {8, 32, MAX_RESULTS};
+
+    private final World world;
+    private final ResourceLocation structureId;
+    private final BlockPos playerPos;
+    private final int skipCount;
+    private final int resultOffset;
+
+    // Created by the first page
+    private NearestStructureCursor cursor;
+    private int page = 0;
+    private boolean finished = false;
+
+    /**
+     * @param skipCount Results to skip, for providers without batch search
+     * @param resultOffset Results of a search from this position the client already has, for the others
+     */
+    PagedStructureSearch(World world, ResourceLocation structureId, BlockPos playerPos, int skipCount,
+            int resultOffset) {
+        this.world = world;
+        this.structureId = structureId;
+        this.playerPos = playerPos;
+        this.skipCount = skipCount;
+        this.resultOffset = resultOffset;
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Search the next page.
+     * @return The page's result packet, or null if the search is finished
+     */
+    @Nullable
+    PacketStructureSearchResult nextPage() {
+        if (finished) return null;
+
+        int dimension = world.provider.getDimension();
+        if (cursor == null) {
+            cursor = new NearestStructureCursor(world, structureId, playerPos);
+            cursor.skip(resultOffset);
+        }
+
+        List<BlockPos> positions = cursor.next(resultOffset + PAGE_SIZES[page] - cursor.getRead());
+        if (positions == null) {
+            // Batch not supported, return single location
+            finished = true;
+            StructureLocation location = StructureProviderRegistry.findNearest(world, structureId, playerPos, skipCount);
+
+            return new PacketStructureSearchResult(structureId, dimension, location, skipCount);
+        }
+
+        boolean append = page > 0 || resultOffset > 0;
+        finished = ++page == PAGE_SIZES.length || cursor.isExhausted();
+
+        return new PacketStructureSearchResult(structureId, dimension, positions, playerPos, append, !cursor.isExhausted());
+    }
+}
@@ -0,0 +1,209 @@
+package com.simplestructurescanner.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+
+import com.simplestructurescanner.SimpleStructureScanner;
+import com.simplestructurescanner.config.ModConfig;
+import com.simplestructurescanner.structure.StructureProviderRegistry;
+
+
+/**
+ * Runs players' structure search requests, keeping seed-only searches off the server tick.
+ *
+ * <p>Searches whose provider reports {@link StructureProviderRegistry#isSeedOnlySearch} run on a small bounded
+ * worker pool; the others read biomes, whose GenLayers are not thread-safe, so they still run on the server thread.
+ * Results are always sent from the server thread.</p>
+ *
+ * <p>A new request for a structure (or set of structures) supersedes the same player's pending request for it: the old
+ * one is dropped if not started yet, and its result is discarded otherwise. Each player has a cap on pending requests.
+ * Must be called from the server thread.</p>
+ */
+public final class ServerSearchExecutor {
+    private static final int MAX_PENDING_PER_PLAYER = 16;
+
+    // Request key (structure ID, or set of IDs for batch requests) -> pending task, per player
+    private static final Map<UUID, Map<Object, SearchTask>> PENDING = new HashMap<>();
+
+    private static ThreadPoolExecutor workers;
+    private static int workerCount;
+
+    /**
+     * A search producing result packets.
+     */
+    @FunctionalInterface
+    public interface SearchJob {
+        /**
+         * @param partialResults Sends results known before the search ends (e.g. the nearest ones)
+         * @return The last result packet to send, or null to send nothing more
+         */
+        @Nullable
+        IMessage run(Consumer<IMessage> partialResults);
+    }
+
+    private ServerSearchExecutor() {
+    }
+
+    /**
+     * Queue a search for a player.
+     * @return False if the player already has too many pending searches
+     */
+    public static boolean submit(EntityPlayerMP player, ResourceLocation structureId, SearchJob search) {
+        return submit(player, structureId, StructureProviderRegistry.isSeedOnlySearch(structureId), search);
+    }
+
+    /**
+     * Queue a search for a player.
+     * @param requestKey Identifies the request, a pending request with an equal key is superseded
+     * @param seedOnly True if the search only runs seed-only searches, and can run on a worker
+     * @return False if the player already has too many pending searches
+     */
+    public static boolean submit(EntityPlayerMP player, Object requestKey, boolean seedOnly, SearchJob search) {
+        MinecraftServer server = player.getServer();
+        if (server == null) return false;
+
+        SearchTask task = new SearchTask(server, player, requestKey, search);
+
+        synchronized (PENDING) {
+            Map<Object, SearchTask> playerTasks = PENDING.computeIfAbsent(player.getUniqueID(), k -> new HashMap<>());
+
+            SearchTask superseded = playerTasks.remove(requestKey);
+            if (superseded != null) superseded.cancelled = true;
+
+            if (playerTasks.size() >= MAX_PENDING_PER_PLAYER) {
+                SimpleStructureScanner.LOGGER.debug("Dropping search for {} from {}: too many pending searches",
+                    requestKey, player.getName());
+                if (playerTasks.isEmpty()) PENDING.remove(player.getUniqueID());
+                return false;
+            }
+
+            playerTasks.put(requestKey, task);
+        }
+
+        ThreadPoolExecutor pool = seedOnly ? getWorkers() : null;
+        if (pool != null) {
+            pool.execute(task);
+        } else {
+            task.run();
+        }
+
+        return true;
+    }
+
+    /**
+     * Drop every pending search and stop the workers (e.g. when the server stops).
+     */
+    public static void shutdown() {
+        synchronized (PENDING) {
+            for (Map<Object, SearchTask> playerTasks : PENDING.values()) {
+                for (SearchTask task : playerTasks.values()) task.cancelled = true;
+            }
+            PENDING.clear();
+        }
+
+        synchronized (ServerSearchExecutor.class) {
+            if (workers != null) workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    /**
+     * Number of searches queued or running, across all players.
+     */
+    public static int getPendingCount() {
+        synchronized (PENDING) {
+            int count = 0;
+            for (Map<Object, SearchTask> playerTasks : PENDING.values()) count += playerTasks.size();
+
+            return count;
+        }
+    }
+
+    /**
+     * Worker pool sized from the config, or null when searches should stay on the server thread.
+     */
+    private static synchronized ThreadPoolExecutor getWorkers() {
+        int threads = ModConfig.serverSearchWorkers;
+        if (threads <= 0) return null;
+
+        if (workers == null || workerCount != threads) {
+            if (workers != null) workers.shutdown();
+
+            AtomicInteger threadId = new AtomicInteger();
+            workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "Structure Search #" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+            workers.allowCoreThreadTimeOut(true);
+            workerCount = threads;
+        }
+
+        return workers;
+    }
+
+    private static void finish(SearchTask task) {
+        synchronized (PENDING) {
+            Map<Object, SearchTask> playerTasks = PENDING.get(task.player.getUniqueID());
+            if (playerTasks == null) return;
+
+            playerTasks.remove(task.requestKey, task);
+            if (playerTasks.isEmpty()) PENDING.remove(task.player.getUniqueID());
+        }
+    }
+
+    private static final class SearchTask implements Runnable {
+        private final MinecraftServer server;
+        private final EntityPlayerMP player;
+        private final Object requestKey;
+        private final SearchJob search;
+
+        volatile boolean cancelled = false;
+
+        SearchTask(MinecraftServer server, EntityPlayerMP player, Object requestKey, SearchJob search) {
+            this.server = server;
+            this.player = player;
+            this.requestKey = requestKey;
+            this.search = search;
+        }
+
+        @Override
+        public void run() {
+            IMessage result = null;
+
+            try {
+                if (!cancelled && !player.hasDisconnected()) result = search.run(this::send);
+            } catch (RuntimeException e) {
+                SimpleStructureScanner.LOGGER.error("Structure search for {} failed", requestKey, e);
+            } finally {
+                finish(this);
+            }
+
+            if (result != null) send(result);
+        }
+
+        private void send(IMessage response) {
+            // Runs right away when already on the server thread
+            server.addScheduledTask(() -> {
+                // Superseded while running, or the player left
+                if (cancelled || player.hasDisconnected()) return;
+
+                NetworkHandler.INSTANCE.sendTo(response, player);
+            });
+        }
+    }
+}
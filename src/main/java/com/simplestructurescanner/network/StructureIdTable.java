@@ -0,0 +1,85 @@
+package com.simplestructurescanner.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.ResourceLocation;
+
+import com.simplestructurescanner.structure.StructureProviderRegistry;
+
+
+/**
+ * Structure IDs numbered for the wire, so packets send a small index instead of the ID string.
+ *
+ * <p>The server numbers the IDs of its registry and sends the table to each player on login
+ * ({@link PacketStructureIdTable}). Until a client has received it, or for IDs missing from it,
+ * packets fall back to the ID string (see {@link WireFormat#writeStructureId}).</p>
+ */
+public final class StructureIdTable {
+    private static final StructureIdTable EMPTY = new StructureIdTable(Collections.emptyList());
+
+    private static StructureIdTable serverTable;
+    private static volatile StructureIdTable clientTable = EMPTY;
+
+    private final List<ResourceLocation> ids;
+    private final Map<ResourceLocation, Integer> indices = new HashMap<>();
+
+    StructureIdTable(List<ResourceLocation> ids) {
+        this.ids = ids;
+        for (int i = 0; i < ids.size(); i++) indices.put(ids.get(i), i);
+    }
+
+    /**
+     * Table of the server's registry, used to write server packets and read client packets.
+     */
+    public static synchronized StructureIdTable server() {
+        if (serverTable == null) {
+            List<ResourceLocation> ids = new ArrayList<>(StructureProviderRegistry.getAllStructureIds());
+            ids.sort(null);
+            serverTable = new StructureIdTable(ids);
+        }
+
+        return serverTable;
+    }
+
+    /**
+     * Table received from the server, used to write client packets and read server packets.
+     */
+    public static StructureIdTable client() {
+        return clientTable;
+    }
+
+    static void setClientTable(StructureIdTable table) {
+        clientTable = table;
+    }
+
+    /**
+     * Forget the server's table (e.g. when disconnecting), another server may number its IDs differently.
+     */
+    public static void resetClientTable() {
+        clientTable = EMPTY;
+    }
+
+    List<ResourceLocation> getIds() {
+        return ids;
+    }
+
+    /**
+     * Index of an ID, or -1 if it is not in the table.
+     */
+    int indexOf(ResourceLocation id) {
+        Integer index = indices.get(id);
+
+        return index != null ? index : -1;
+    }
+
+    @Nullable
+    ResourceLocation get(int index) {
+        return index >= 0 && index < ids.size() ? ids.get(index) : null;
+    }
+}
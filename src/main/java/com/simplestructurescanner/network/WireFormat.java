@@ -0,0 +1,178 @@
+package com.simplestructurescanner.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+
+
+/**
+ * Compact encodings shared by the search packets.
+ *
+ * <p>Integers are varints, zigzag-encoded when they can be negative. Structure IDs are indices of a
+ * {@link StructureIdTable}. Position lists are sorted and delta-encoded as chunk coordinates, since structures
+ * are almost always at a chunk center; the offset in the chunk and the Y coordinate are only sent when needed.</p>
+ *
+ * <p>Packets using it start with {@link #FORMAT_VERSION}, bump it when an encoding changes.</p>
+ */
+public final class WireFormat {
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAX_VARINT_SIZE = 5;
+
+    // Position list flags
+    private static final int FLAG_CHUNK_CENTERS = 1;
+    private static final int FLAG_HAS_Y = 2;
+
+    private WireFormat() {
+    }
+
+    public static void writeVersion(ByteBuf buf) {
+        buf.writeByte(FORMAT_VERSION);
+    }
+
+    /**
+     * Read a packet's format version, failing on formats this side can't read.
+     */
+    public static void readVersion(ByteBuf buf) {
+        int version = buf.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported structure search packet format " + version
+                + " (expected " + FORMAT_VERSION + "), is the mod version the same on both sides?");
+        }
+    }
+
+    // ========== Integers ==========
+
+    public static void writeVarInt(ByteBuf buf, int value) {
+        ByteBufUtils.writeVarInt(buf, value, MAX_VARINT_SIZE);
+    }
+
+    public static int readVarInt(ByteBuf buf) {
+        return ByteBufUtils.readVarInt(buf, MAX_VARINT_SIZE);
+    }
+
+    /**
+     * Write a signed integer, small negative values stay small.
+     */
+    public static void writeSignedVarInt(ByteBuf buf, int value) {
+        writeVarInt(buf, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readSignedVarInt(ByteBuf buf) {
+        int value = readVarInt(buf);
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeBlockPos(ByteBuf buf, BlockPos pos) {
+        writeSignedVarInt(buf, pos.getX());
+        writeSignedVarInt(buf, pos.getY());
+        writeSignedVarInt(buf, pos.getZ());
+    }
+
+    public static BlockPos readBlockPos(ByteBuf buf) {
+        int x = readSignedVarInt(buf);
+        int y = readSignedVarInt(buf);
+        int z = readSignedVarInt(buf);
+
+        return new BlockPos(x, y, z);
+    }
+
+    // ========== Structure IDs ==========
+
+    /**
+     * Write a structure ID as its index in the table, or as a string if the table doesn't have it.
+     */
+    public static void writeStructureId(ByteBuf buf, ResourceLocation id, StructureIdTable table) {
+        int index = table.indexOf(id);
+        writeVarInt(buf, index + 1);
+
+        // 0 = not in the table
+        if (index < 0) ByteBufUtils.writeUTF8String(buf, id.toString());
+    }
+
+    public static ResourceLocation readStructureId(ByteBuf buf, StructureIdTable table) {
+        int index = readVarInt(buf) - 1;
+        if (index < 0) return new ResourceLocation(ByteBufUtils.readUTF8String(buf));
+
+        ResourceLocation id = table.get(index);
+        if (id == null) throw new IllegalStateException("Unknown structure index " + index);
+
+        return id;
+    }
+
+    // ========== Position lists ==========
+
+    /**
+     * Write a list of positions. The order is not kept: positions are sorted to make the deltas small.
+     */
+    public static void writePositions(ByteBuf buf, List<BlockPos> positions) {
+        List<BlockPos> sorted = new ArrayList<>(positions);
+        sorted.sort((a, b) -> a.getX() != b.getX() ? Integer.compare(a.getX(), b.getX()) : Integer.compare(a.getZ(), b.getZ()));
+
+        int flags = FLAG_CHUNK_CENTERS;
+        for (BlockPos pos : sorted) {
+            if ((pos.getX() & 15) != 8 || (pos.getZ() & 15) != 8) flags &= ~FLAG_CHUNK_CENTERS;
+            if (pos.getY() != 0) flags |= FLAG_HAS_Y;
+        }
+
+        writeVarInt(buf, sorted.size());
+        buf.writeByte(flags);
+
+        int lastChunkX = 0;
+        int lastChunkZ = 0;
+        int lastY = 0;
+
+        for (BlockPos pos : sorted) {
+            int chunkX = pos.getX() >> 4;
+            int chunkZ = pos.getZ() >> 4;
+
+            writeSignedVarInt(buf, chunkX - lastChunkX);
+            writeSignedVarInt(buf, chunkZ - lastChunkZ);
+            if ((flags & FLAG_CHUNK_CENTERS) == 0) buf.writeByte((pos.getX() & 15) << 4 | (pos.getZ() & 15));
+
+            // Neighbouring structures are often at similar heights
+            if ((flags & FLAG_HAS_Y) != 0) writeSignedVarInt(buf, pos.getY() - lastY);
+
+            lastChunkX = chunkX;
+            lastChunkZ = chunkZ;
+            lastY = pos.getY();
+        }
+    }
+
+    public static List<BlockPos> readPositions(ByteBuf buf) {
+        int count = readVarInt(buf);
+        int flags = buf.readUnsignedByte();
+
+        // Each position takes at least 2 bytes, don't trust larger counts
+        List<BlockPos> positions = new ArrayList<>(Math.min(count, buf.readableBytes() / 2));
+
+        int chunkX = 0;
+        int chunkZ = 0;
+        int y = 0;
+
+        for (int i = 0; i < count; i++) {
+            chunkX += readSignedVarInt(buf);
+            chunkZ += readSignedVarInt(buf);
+
+            int offsetX = 8;
+            int offsetZ = 8;
+            if ((flags & FLAG_CHUNK_CENTERS) == 0) {
+                int offsets = buf.readUnsignedByte();
+                offsetX = offsets >> 4;
+                offsetZ = offsets & 15;
+            }
+
+            if ((flags & FLAG_HAS_Y) != 0) y += readSignedVarInt(buf);
+
+            positions.add(new BlockPos((chunkX << 4) + offsetX, y, (chunkZ << 4) + offsetZ));
+        }
+
+        return positions;
+    }
+}
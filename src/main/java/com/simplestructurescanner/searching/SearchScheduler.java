@@ -0,0 +1,140 @@
+package com.simplestructurescanner.searching;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import net.minecraft.util.ResourceLocation;
+
+import com.simplestructurescanner.SimpleStructureScanner;
+
+
+/**
+ * Client queue of pending structure searches, run within a time budget each tick.
+ *
+ * <p>Searches are taken by priority, then in the order they were queued. Searches that don't fit in a tick's
+ * budget stay queued for the next tick; the first search of a tick always runs, so the queue can't stall on a
+ * search longer than the budget.</p>
+ *
+ * <p>Records how long searches wait in the queue and how long they take to run. Client thread only.</p>
+ */
+public class SearchScheduler {
+    // Searches running longer than this are logged
+    private static final long SLOW_SEARCH_NANOS = 50_000_000L;
+
+    // Structure ID -> time queued (System.nanoTime)
+    private final Map<ResourceLocation, Long> queued = new LinkedHashMap<>();
+
+    private long runCount = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long totalRunNanos = 0;
+    private long maxRunNanos = 0;
+    private long deferredTicks = 0;
+
+    /**
+     * Queue a search. Searches already queued keep their place and waiting time.
+     */
+    public void add(ResourceLocation id) {
+        queued.putIfAbsent(id, System.nanoTime());
+    }
+
+    public void remove(ResourceLocation id) {
+        queued.remove(id);
+    }
+
+    public void clear() {
+        queued.clear();
+    }
+
+    public boolean isEmpty() {
+        return queued.isEmpty();
+    }
+
+    public int size() {
+        return queued.size();
+    }
+
+    /**
+     * Run queued searches until the budget is spent.
+     * @param budgetNanos Time this tick can spend on searches
+     * @param priority Priority of each search, lower runs first
+     * @param search Runs a search, returns false if it was skipped without real work (it then doesn't count
+     *               towards the budget or the statistics)
+     */
+    public void run(long budgetNanos, ToIntFunction<ResourceLocation> priority, SearchTask search) {
+        if (queued.isEmpty()) return;
+
+        // Stable sort, same priority keeps queue order
+        List<ResourceLocation> order = new ArrayList<>(queued.keySet());
+        order.sort(Comparator.comparingInt(priority));
+
+        long tickStart = System.nanoTime();
+        boolean ranAny = false;
+
+        for (ResourceLocation id : order) {
+            long start = System.nanoTime();
+            if (ranAny && start - tickStart >= budgetNanos) {
+                deferredTicks++;
+                return;
+            }
+
+            long queuedAt = queued.remove(id);
+            if (!search.run(id)) continue;
+
+            long end = System.nanoTime();
+            record(id, start - queuedAt, end - start);
+            ranAny = true;
+        }
+    }
+
+    private void record(ResourceLocation id, long waitNanos, long runNanos) {
+        runCount++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        totalRunNanos += runNanos;
+        maxRunNanos = Math.max(maxRunNanos, runNanos);
+
+        if (runNanos >= SLOW_SEARCH_NANOS) {
+            SimpleStructureScanner.LOGGER.debug("Search for {} took {} ms after waiting {} ms in the queue",
+                id, runNanos / 1_000_000, waitNanos / 1_000_000);
+        }
+    }
+
+    // ========== Statistics ==========
+
+    public long getRunCount() {
+        return runCount;
+    }
+
+    public long getAverageWaitMicros() {
+        return runCount == 0 ? 0 : totalWaitNanos / runCount / 1000;
+    }
+
+    public long getMaxWaitMicros() {
+        return maxWaitNanos / 1000;
+    }
+
+    public long getAverageRunMicros() {
+        return runCount == 0 ? 0 : totalRunNanos / runCount / 1000;
+    }
+
+    public long getMaxRunMicros() {
+        return maxRunNanos / 1000;
+    }
+
+    /**
+     * Ticks that ran out of budget with searches still queued.
+     */
+    public long getDeferredTicks() {
+        return deferredTicks;
+    }
+
+    @FunctionalInterface
+    public interface SearchTask {
+        boolean run(ResourceLocation id);
+    }
+}
@@ -0,0 +1,186 @@
+package com.simplestructurescanner.searching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import net.minecraft.util.math.BlockPos;
+
+
+/**
+ * Grid of structure positions answering nearest-k queries on the X/Z plane.
+ *
+ * <p>Positions are bucketed in cells of 512x512 blocks, about the spacing of common structures. Cells hold
+ * indices into flat coordinate arrays, so queries don't allocate per position. A query visits rings of cells
+ * around the query point and stops once no cell farther out can hold a nearer position, so it only looks at the
+ * cells near the answer.</p>
+ *
+ * <p>Positions are added as result pages arrive and removed when blacklisted, without rebuilding the index.
+ * Removed positions leave an unused slot in the arrays.</p>
+ */
+class SpatialIndex {
+    private static final int CELL_SHIFT = 9;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+    private final Long2ObjectMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+    private BlockPos[] positions = new BlockPos[16];
+    private int[] xs = new int[16];
+    private int[] zs = new int[16];
+
+    // Slots used in the arrays, and positions still in the index
+    private int slots = 0;
+    private int size = 0;
+
+    // Bounds of the cells that held positions, not shrunk by removals
+    private int minCellX = Integer.MAX_VALUE;
+    private int minCellZ = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int maxCellZ = Integer.MIN_VALUE;
+
+    SpatialIndex() {
+    }
+
+    SpatialIndex(List<BlockPos> positions) {
+        addAll(positions);
+    }
+
+    /**
+     * Add a position, unless the index already has one in the same column.
+     * @return True if the position was added
+     */
+    boolean add(BlockPos pos) {
+        int cellX = pos.getX() >> CELL_SHIFT;
+        int cellZ = pos.getZ() >> CELL_SHIFT;
+        IntArrayList cell = cells.computeIfAbsent(cellKey(cellX, cellZ), k -> new IntArrayList(2));
+        if (indexIn(cell, pos.getX(), pos.getZ()) >= 0) return false;
+
+        if (slots == xs.length) {
+            int capacity = slots * 2;
+            positions = Arrays.copyOf(positions, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+        }
+
+        positions[slots] = pos;
+        xs[slots] = pos.getX();
+        zs[slots] = pos.getZ();
+        cell.add(slots++);
+        size++;
+
+        minCellX = Math.min(minCellX, cellX);
+        minCellZ = Math.min(minCellZ, cellZ);
+        maxCellX = Math.max(maxCellX, cellX);
+        maxCellZ = Math.max(maxCellZ, cellZ);
+
+        return true;
+    }
+
+    /**
+     * Add positions, skipping the columns the index already has.
+     */
+    void addAll(List<BlockPos> positions) {
+        for (BlockPos pos : positions) add(pos);
+    }
+
+    /**
+     * Remove the position in a column.
+     * @return True if the index had a position there
+     */
+    boolean remove(int x, int z) {
+        long key = cellKey(x >> CELL_SHIFT, z >> CELL_SHIFT);
+        IntArrayList cell = cells.get(key);
+        if (cell == null) return false;
+
+        int i = indexIn(cell, x, z);
+        if (i < 0) return false;
+
+        positions[cell.removeInt(i)] = null;
+        if (cell.isEmpty()) cells.remove(key);
+        size--;
+
+        return true;
+    }
+
+    // Position of a column in a cell's list, or -1
+    private int indexIn(IntArrayList cell, int x, int z) {
+        for (int i = 0; i < cell.size(); i++) {
+            int slot = cell.getInt(i);
+            if (xs[slot] == x && zs[slot] == z) return i;
+        }
+
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Find the positions nearest to a point, ignoring Y.
+     * @return Up to k positions, nearest first
+     */
+    List<BlockPos> nearest(int x, int z, int k) {
+        k = Math.min(k, size);
+        if (k <= 0) return Collections.emptyList();
+
+        // Best positions so far, sorted by distance
+        int[] bestIndices = new int[k];
+        long[] bestDistances = new long[k];
+        int found = 0;
+
+        int centerX = x >> CELL_SHIFT;
+        int centerZ = z >> CELL_SHIFT;
+        int maxRing = Math.max(Math.max(Math.abs(centerX - minCellX), Math.abs(maxCellX - centerX)),
+            Math.max(Math.abs(centerZ - minCellZ), Math.abs(maxCellZ - centerZ)));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Cells of this ring are at least (ring - 1) cells away
+            if (found == k && ring > 1) {
+                long ringDistance = (long) (ring - 1) * CELL_SIZE;
+                if (ringDistance * ringDistance > bestDistances[k - 1]) break;
+            }
+
+            for (int dx = -ring; dx <= ring; dx++) {
+                // Only the perimeter of the ring, the inside was visited by the previous rings
+                int step = (dx == -ring || dx == ring) ? 1 : 2 * ring;
+                for (int dz = -ring; dz <= ring; dz += step) {
+                    IntArrayList cell = cells.get(cellKey(centerX + dx, centerZ + dz));
+                    if (cell == null) continue;
+
+                    for (int i = 0; i < cell.size(); i++) {
+                        int index = cell.getInt(i);
+                        long ddx = xs[index] - x;
+                        long ddz = zs[index] - z;
+                        long distance = ddx * ddx + ddz * ddz;
+
+                        if (found == k && distance >= bestDistances[k - 1]) continue;
+
+                        // Insert in distance order, dropping the farthest if full
+                        int slot = found < k ? found++ : k - 1;
+                        while (slot > 0 && bestDistances[slot - 1] > distance) {
+                            bestDistances[slot] = bestDistances[slot - 1];
+                            bestIndices[slot] = bestIndices[slot - 1];
+                            slot--;
+                        }
+                        bestDistances[slot] = distance;
+                        bestIndices[slot] = index;
+                    }
+                }
+            }
+        }
+
+        List<BlockPos> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) result.add(positions[bestIndices[i]]);
+
+        return result;
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return (long) cellX << 32 | (cellZ & 0xFFFFFFFFL);
+    }
+}
@@ -11,11 +11,15 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 
 import com.simplestructurescanner.config.ModConfig;
 import com.simplestructurescanner.network.NetworkHandler;
 import com.simplestructurescanner.network.PacketRequestStructureSearch;
+import com.simplestructurescanner.network.PacketRequestStructureSearchBatch;
+import com.simplestructurescanner.structure.NearestStructureCursor;
+import com.simplestructurescanner.structure.StructureInfo;
 import com.simplestructurescanner.structure.StructureLocation;
 import com.simplestructurescanner.structure.StructureProviderRegistry;
 import com.simplestructurescanner.util.WorldUtils;
@@ -26,34 +30,45 @@ import com.simplestructurescanner.util.WorldUtils;
  * Structures can be added to searching list via double-click in the GUI.
  *
  * Caching strategy:
- * - locationCache: Raw structure positions indexed by (worldId, structureId).
+ * - Search state is kept per (world, dimension). Changing dimension switches to that dimension's state, so results
+ *   found there before are shown again without searching, and only searches of structures valid in the dimension run.
+ * - indexes: Spatial index of the structure positions found, by structure id.
  *   These positions are deterministic and don't change for a given world.
  *   Populated via batch read if provider supports it, otherwise via individual reads.
- * - sortedCache: Positions sorted by distance from player's position at time of refresh.
- *   Only updated on manual refresh or world join, NOT automatically based on player movement.
- * - When cycling with arrows, we just change skipOffset and use sortedCache.
- * - For providers that don't support batch reads, we cache individual results as they come in.
+ * - origins: Player position the shown results are ordered from, at the time of refresh. The shown result is the
+ *   (skipOffset + 1)-th nearest indexed position to it. Moved on manual refresh, and when the player's movement
+ *   changes which structure is the nearest, checked each time the player enters a new chunk.
+ * - When cycling with arrows, we just change skipOffset and query the index again.
+ * - The server sends batch results in pages, nearest first. Later pages are added to the index.
+ * - A search sends a bounded number of results, and tells whether there are more. "Next" past the last result
+ *   continues the search: the server sends the results after the ones already received from the same origin.
+ * - For providers that don't support batch reads, we index individual results as they come in.
  */
 public class StructureSearchManager {
     private static final Set<ResourceLocation> searchedStructures = new LinkedHashSet<>();
-    private static final Map<ResourceLocation, StructureLocation> lastKnownLocations = new LinkedHashMap<>();
     private static final Map<ResourceLocation, Integer> structureColors = new LinkedHashMap<>();
     private static final Set<Integer> usedColorIndices = new LinkedHashSet<>();
-    private static final Map<ResourceLocation, Integer> skipOffsets = new LinkedHashMap<>();
 
-    // Cache for raw structure positions by world id
-    // Map<WorldId, Map<StructureId, List<BlockPos>>>
-    private static final Map<Long, Map<ResourceLocation, List<BlockPos>>> locationCache = new LinkedHashMap<>();
+    private static final int MAX_DIMENSION_STATES = 16;
 
-    // Cache for sorted positions (sorted by player position at time of refresh)
-    // Map<StructureId, List<BlockPos>>
-    private static final Map<ResourceLocation, List<BlockPos>> sortedCache = new LinkedHashMap<>();
+    // Search state of each (world, dimension) visited, the least recently used is dropped first
+    private static final Map<DimensionKey, DimensionState> dimensionStates =
+        new LinkedHashMap<DimensionKey, DimensionState>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DimensionKey, DimensionState> eldest) {
+                return size() > MAX_DIMENSION_STATES;
+            }
+        };
+
+    // State of the player's current dimension
+    private static DimensionKey currentKey = null;
+    private static DimensionState current = new DimensionState();
 
-    // Track structures that don't support batch reads (use individual caching instead)
-    private static final Set<ResourceLocation> nonBatchStructures = new LinkedHashSet<>();
+    // Chunk the shown structures were last checked to be the nearest from
+    private static long followedChunk = Long.MIN_VALUE;
 
     // Pending search requests
-    private static final Set<ResourceLocation> pendingSearches = new LinkedHashSet<>();
+    private static final SearchScheduler pendingSearches = new SearchScheduler();
 
     private static final int MAX_CACHE_RESULTS = 100;
 
@@ -82,7 +97,7 @@ public class StructureSearchManager {
             ResourceLocation loc = new ResourceLocation(id);
             searchedStructures.add(loc);
             assignColor(loc);
-            skipOffsets.put(loc, 0);
+            current.skipOffsets.put(loc, 0);
             pendingSearches.add(loc);  // Queue search on load
         }
     }
@@ -117,30 +132,29 @@ public class StructureSearchManager {
     public static void toggleTracking(ResourceLocation id) {
         if (searchedStructures.contains(id)) {
             searchedStructures.remove(id);
-            lastKnownLocations.remove(id);
-            skipOffsets.remove(id);
+            forgetResults(id);
             pendingSearches.remove(id);
-            sortedCache.remove(id);
             freeColor(id);
         } else {
             searchedStructures.add(id);
             assignColor(id);
-            skipOffsets.put(id, 0);
+            current.skipOffsets.put(id, 0);
             pendingSearches.add(id);
         }
 
         saveToConfig();
     }
 
-    // FIXME: we need to handle dimensions to only search structures that are valid in the current dimension
-    //        Currently, if a structure is in a dimension the structure doesn't exist in, such as Nether Fortresses in the Overworld,
-    //        the search might fail silently. Similarly, the search should re-trigger when switching dimensions to find valid structures there.
+    /**
+     * Start tracking a structure. It is searched in the current dimension if it can be found there, otherwise when
+     * the player enters a dimension where it can.
+     */
     public static void startTracking(ResourceLocation id) {
         if (searchedStructures.contains(id)) return;
 
         searchedStructures.add(id);
         assignColor(id);
-        skipOffsets.put(id, 0);
+        current.skipOffsets.put(id, 0);
         pendingSearches.add(id);
         saveToConfig();
     }
@@ -149,14 +163,20 @@ public class StructureSearchManager {
         if (!searchedStructures.contains(id)) return;
 
         searchedStructures.remove(id);
-        lastKnownLocations.remove(id);
-        skipOffsets.remove(id);
+        forgetResults(id);
         pendingSearches.remove(id);
-        sortedCache.remove(id);
         freeColor(id);
         saveToConfig();
     }
 
+    /**
+     * Drop the shown results of a structure in every dimension. Raw positions are kept, they don't change.
+     */
+    private static void forgetResults(ResourceLocation id) {
+        current.forget(id);
+        for (DimensionState state : dimensionStates.values()) state.forget(id);
+    }
+
     /**
      * Requests a search for the given structure.
      * Uses cached data if available, otherwise fetches from world.
@@ -167,12 +187,12 @@ public class StructureSearchManager {
 
     /**
      * Refreshes the search for a structure.
-     * Clears sorted cache to force re-sort based on current player position.
+     * Clears the origin so the results are ordered from the current player position.
      */
     public static void refreshSearch(ResourceLocation id) {
-        skipOffsets.put(id, 0);
-        lastKnownLocations.remove(id);
-        sortedCache.remove(id);  // Force re-sort on next search
+        current.skipOffsets.put(id, 0);
+        current.lastKnownLocations.remove(id);
+        current.origins.remove(id);  // Order from the player on next search
         requestSearch(id);
     }
 
@@ -180,17 +200,14 @@ public class StructureSearchManager {
      * Forces a full cache refresh (invalidates location cache and fetches fresh data).
      */
     public static void forceRefresh(ResourceLocation id) {
-        skipOffsets.put(id, 0);
-        lastKnownLocations.remove(id);
-        sortedCache.remove(id);
-        nonBatchStructures.remove(id);  // Re-check if batch is supported
+        current.skipOffsets.put(id, 0);
+        current.lastKnownLocations.remove(id);
+        current.origins.remove(id);
+        current.nonBatchStructures.remove(id);  // Re-check if batch is supported
 
         // Clear from location cache
-        long worldId = WorldUtils.getWorldIdentifier();
-        Map<ResourceLocation, List<BlockPos>> worldCache = locationCache.get(worldId);
-        if (worldCache != null) {
-            worldCache.remove(id);
-        }
+        current.indexes.remove(id);
+        current.forgetSearch(id);
 
         requestSearch(id);
     }
@@ -200,22 +217,24 @@ public class StructureSearchManager {
      * Uses cached data if available.
      */
     public static void skipCurrent(ResourceLocation id) {
-        List<BlockPos> sorted = sortedCache.get(id);
-        int currentOffset = skipOffsets.getOrDefault(id, 0);
+        SpatialIndex index = current.indexes.get(id);
+        int currentOffset = current.skipOffsets.getOrDefault(id, 0);
 
-        if (sorted != null) {
+        if (index != null && current.origins.containsKey(id)) {
             // Have batch cache, just increment offset
-            if (currentOffset < sorted.size() - 1) {
-                skipOffsets.put(id, currentOffset + 1);
-                updateLocationFromSortedCache(id);
+            if (currentOffset < index.size() - 1) {
+                current.skipOffsets.put(id, currentOffset + 1);
+                updateLocationFromIndex(id);
+            } else {
+                requestContinuation(id);
             }
-        } else if (!nonBatchStructures.contains(id)) {
+        } else if (!current.nonBatchStructures.contains(id)) {
             // No cache yet, trigger a search
-            skipOffsets.put(id, currentOffset + 1);
+            current.skipOffsets.put(id, currentOffset + 1);
             pendingSearches.add(id);
         } else {
             // Non-batch structure, need server request for new skip count
-            skipOffsets.put(id, currentOffset + 1);
+            current.skipOffsets.put(id, currentOffset + 1);
             pendingSearches.add(id);
         }
     }
@@ -225,15 +244,14 @@ public class StructureSearchManager {
      * Uses cached data if available.
      */
     public static void previousResult(ResourceLocation id) {
-        int currentOffset = skipOffsets.getOrDefault(id, 0);
+        int currentOffset = current.skipOffsets.getOrDefault(id, 0);
         if (currentOffset <= 0) return;
 
-        skipOffsets.put(id, currentOffset - 1);
+        current.skipOffsets.put(id, currentOffset - 1);
 
-        List<BlockPos> sorted = sortedCache.get(id);
-        if (sorted != null) {
+        if (current.indexes.containsKey(id) && current.origins.containsKey(id)) {
             // Have batch cache, just update display
-            updateLocationFromSortedCache(id);
+            updateLocationFromIndex(id);
         } else {
             // Need server request
             pendingSearches.add(id);
@@ -245,32 +263,23 @@ public class StructureSearchManager {
      * Returns true if a location was blacklisted.
      */
     public static boolean blacklistCurrentLocation(ResourceLocation id, long worldId) {
-        StructureLocation location = lastKnownLocations.get(id);
+        StructureLocation location = current.lastKnownLocations.get(id);
         if (location == null) return false;
 
         BlockPos pos = location.getPosition();
         ModConfig.addBlacklistedLocation(worldId, id.toString(),
             pos.getX(), pos.getY(), pos.getZ(), location.isYAgnostic());
 
-        // Remove from sorted cache
-        List<BlockPos> sorted = sortedCache.get(id);
-        if (sorted != null) {
-            sorted.removeIf(p -> p.getX() == pos.getX() && p.getZ() == pos.getZ());
-        }
-
         // Remove from location cache
-        Map<ResourceLocation, List<BlockPos>> worldCache = locationCache.get(worldId);
-        if (worldCache != null) {
-            List<BlockPos> cached = worldCache.get(id);
-            if (cached != null) cached.removeIf(p -> p.getX() == pos.getX() && p.getZ() == pos.getZ());
-        }
+        SpatialIndex index = current.indexes.get(id);
+        if (index != null) index.remove(pos.getX(), pos.getZ());
 
         // Remove from display and update from cache or request new
-        lastKnownLocations.remove(id);
+        current.lastKnownLocations.remove(id);
 
-        if (sorted != null && !sorted.isEmpty()) {
-            updateLocationFromSortedCache(id);
-        } else {
+        if (index != null && index.size() > 0 && current.origins.containsKey(id)) {
+            updateLocationFromIndex(id);
+        } else if (!requestContinuation(id)) {
             pendingSearches.add(id);
         }
 
@@ -278,50 +287,218 @@ public class StructureSearchManager {
     }
 
     /**
-     * Processes any pending search requests. Called from client tick.
+     * Continue a structure's batch search past the results received, if the server reported more.
+     * @return True if a continuation was requested (or already is)
      */
-    public static void processPendingSearches(World world, BlockPos playerPos) {
-        if (pendingSearches.isEmpty()) return;
+    private static boolean requestContinuation(ResourceLocation id) {
+        if (!current.moreResults.contains(id)) return false;
 
-        // Process only one search per tick to avoid lag
-        ResourceLocation id = pendingSearches.iterator().next();
-        pendingSearches.remove(id);
+        if (!current.continuations.contains(id) && current.pendingContinuations.add(id)) pendingSearches.add(id);
 
-        if (!ModConfig.isStructureAllowed(id.toString())) return;
-        if (!StructureProviderRegistry.canBeSearched(id)) return;
+        return true;
+    }
 
+    /**
+     * Processes pending search requests within the per-tick search budget. Called from client tick.
+     * Cached results are applied right away. In multiplayer, every search that needs the server is sent in one request.
+     */
+    public static void processPendingSearches(World world, BlockPos playerPos) {
         long worldId = WorldUtils.getWorldIdentifier();
-        int skipOffset = skipOffsets.getOrDefault(id, 0);
-
-        // Check if we have a sorted cache we can use
-        List<BlockPos> sorted = sortedCache.get(id);
-        if (sorted != null && skipOffset < sorted.size()) {
-            updateLocationFromSortedCache(id);
-            return;
-        }
+        int dimension = world.provider.getDimension();
+        updateDimension(worldId, dimension);
+        followNearest(playerPos);
 
-        // Check if we have a location cache that needs sorting
-        Map<ResourceLocation, List<BlockPos>> worldCache = locationCache.get(worldId);
-        if (worldCache != null && worldCache.containsKey(id)) {
-            // Sort and use
-            updateSortedCache(id, playerPos, worldId);
-            updateLocationFromSortedCache(id);
-            return;
-        }
+        if (pendingSearches.isEmpty()) return;
 
-        // No cache available, need to fetch from world
+        long budgetNanos = ModConfig.getClientSearchBudgetMicros() * 1000L;
         Minecraft mc = Minecraft.getMinecraft();
 
         if (mc.isSingleplayer() && mc.getIntegratedServer() != null) {
-            World serverWorld = mc.getIntegratedServer().getWorld(world.provider.getDimension());
+            World serverWorld = mc.getIntegratedServer().getWorld(dimension);
             if (serverWorld != null) {
-                processSingleplayerSearch(serverWorld, id, playerPos, skipOffset, worldId);
+                // Searches run on this thread, the ones over budget wait for the next tick
+                pendingSearches.run(budgetNanos, id -> searchPriority(id, dimension, playerPos), id -> {
+                    if (!isSearchable(id, dimension)) return false;
+
+                    if (current.pendingContinuations.remove(id)) {
+                        current.continuations.add(id);
+                        searchSingleplayerPage(serverWorld, id, current.searchOrigins.get(id),
+                            current.receivedCounts.getOrDefault(id, 0));
+                    } else if (!applyCachedResult(id, playerPos)) {
+                        processSingleplayerSearch(serverWorld, id, playerPos, current.skipOffsets.getOrDefault(id, 0), worldId);
+                    }
+
+                    return true;
+                });
                 return;
             }
         }
 
-        // Multiplayer: send request to server
-        NetworkHandler.INSTANCE.sendToServer(new PacketRequestStructureSearch(id, playerPos, skipOffset));
+        // Multiplayer: one round trip for every structure that needs the server
+        Map<ResourceLocation, Integer> requests = new LinkedHashMap<>();
+        pendingSearches.run(budgetNanos, id -> searchPriority(id, dimension, playerPos), id -> {
+            if (!isSearchable(id, dimension)) return false;
+
+            if (current.pendingContinuations.remove(id)) {
+                // Continued from the origin of the results received, sent on its own
+                current.continuations.add(id);
+                NetworkHandler.INSTANCE.sendToServer(new PacketRequestStructureSearch(
+                    id, current.searchOrigins.get(id), 0, current.receivedCounts.getOrDefault(id, 0)));
+            } else if (!applyCachedResult(id, playerPos)) {
+                requests.put(id, current.skipOffsets.getOrDefault(id, 0));
+            }
+
+            return true;
+        });
+
+        if (requests.isEmpty()) return;
+
+        if (requests.size() == 1) {
+            Map.Entry<ResourceLocation, Integer> request = requests.entrySet().iterator().next();
+            NetworkHandler.INSTANCE.sendToServer(
+                new PacketRequestStructureSearch(request.getKey(), playerPos, request.getValue()));
+        } else {
+            NetworkHandler.INSTANCE.sendToServer(new PacketRequestStructureSearchBatch(requests, playerPos));
+        }
+    }
+
+    /**
+     * Order of pending searches: structures the HUD lists as still searching first, then the ones it lists with a
+     * distance, then the ones it doesn't show (HUD disabled or hidden by the debug screen, filtered out).
+     * Structures of other dimensions are never searched (see {@link #isSearchable}).
+     */
+    private static int searchPriority(ResourceLocation id, int dimension, BlockPos playerPos) {
+        if (!isShownOnHud(id, dimension, playerPos)) return 2;
+
+        return current.lastKnownLocations.containsKey(id) ? 1 : 0;
+    }
+
+    /**
+     * Whether the HUD lists a structure: tracked, allowed, valid in the dimension, and once found within its local
+     * whitelist/blacklist radius. False for all while the HUD is disabled or hidden by the debug screen.
+     */
+    public static boolean isShownOnHud(ResourceLocation id, int dimension, BlockPos playerPos) {
+        if (!ModConfig.isClientHudEnabled() || !ModConfig.isSearchEnabled()) return false;
+        if (Minecraft.getMinecraft().gameSettings.showDebugInfo) return false;
+        if (!searchedStructures.contains(id) || !ModConfig.isStructureAllowed(id.toString())) return false;
+
+        StructureInfo info = StructureProviderRegistry.getStructureInfo(id);
+        if (info != null && !info.isValidForDimension(dimension)) return false;
+
+        StructureLocation loc = current.lastKnownLocations.get(id);
+
+        return loc == null || ModConfig.isLocallyAllowed(id.toString(), getDistance(loc, playerPos));
+    }
+
+    /**
+     * Distance from a position to a structure, horizontal only for structures without a known Y.
+     */
+    public static double getDistance(StructureLocation loc, BlockPos from) {
+        double dx = loc.getPosition().getX() - from.getX();
+        double dz = loc.getPosition().getZ() - from.getZ();
+        if (loc.isYAgnostic()) return Math.sqrt(dx * dx + dz * dz);
+
+        double dy = loc.getPosition().getY() - from.getY();
+
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Switch to the search state of the player's dimension, restoring what was found there before.
+     * Searches that didn't finish in the previous dimension are dropped, and run again when the player comes back.
+     */
+    private static void updateDimension(long worldId, int dimension) {
+        DimensionKey key = new DimensionKey(worldId, dimension);
+        if (key.equals(currentKey)) return;
+
+        if (currentKey == null) {
+            // First dimension since the game started, keep what was queued before joining
+            dimensionStates.put(key, current);
+        } else {
+            current = dimensionStates.computeIfAbsent(key, k -> new DimensionState());
+        }
+        currentKey = key;
+        followedChunk = Long.MIN_VALUE;
+
+        pendingSearches.clear();
+        for (ResourceLocation id : searchedStructures) {
+            if (!current.lastKnownLocations.containsKey(id)) pendingSearches.add(id);
+        }
+    }
+
+    /**
+     * Keep showing the nearest structures as the player moves, checked when the player enters a new chunk.
+     * Each check is a lookup in the structure's spatial index, and the results are only ordered from the player's
+     * new position when the nearest one changed. Structures the player skipped past the nearest one stay as they are.
+     */
+    private static void followNearest(BlockPos playerPos) {
+        long chunk = ChunkPos.asLong(playerPos.getX() >> 4, playerPos.getZ() >> 4);
+        if (chunk == followedChunk) return;
+
+        followedChunk = chunk;
+
+        for (ResourceLocation id : searchedStructures) {
+            if (current.skipOffsets.getOrDefault(id, 0) != 0 || current.nonBatchStructures.contains(id)) continue;
+
+            // Still searching
+            StructureLocation shown = current.lastKnownLocations.get(id);
+            if (shown == null) continue;
+
+            SpatialIndex index = current.indexes.get(id);
+            if (index == null) continue;
+
+            List<BlockPos> nearest = index.nearest(playerPos.getX(), playerPos.getZ(), 1);
+            if (nearest.isEmpty() || isSameColumn(nearest.get(0), shown.getPosition())) continue;
+
+            current.origins.put(id, playerPos);
+            updateLocationFromIndex(id);
+        }
+    }
+
+    private static boolean isSameColumn(BlockPos a, BlockPos b) {
+        return a.getX() == b.getX() && a.getZ() == b.getZ();
+    }
+
+    /**
+     * State results searched in the given dimension belong to. The player may have left it since the search started.
+     */
+    private static DimensionState stateOf(int dimension) {
+        if (currentKey == null || currentKey.dimension == dimension) return current;
+
+        return dimensionStates.computeIfAbsent(new DimensionKey(currentKey.worldId, dimension), k -> new DimensionState());
+    }
+
+    /**
+     * Scheduler of the pending searches, for its queue and timing statistics (shown on the debug screen).
+     */
+    public static SearchScheduler getScheduler() {
+        return pendingSearches;
+    }
+
+    private static boolean isSearchable(ResourceLocation id, int dimension) {
+        if (!ModConfig.isStructureAllowed(id.toString()) || !StructureProviderRegistry.canBeSearched(id)) return false;
+
+        // e.g. no Nether Fortresses in the Overworld
+        StructureInfo info = StructureProviderRegistry.getStructureInfo(id);
+
+        return info == null || info.isValidForDimension(dimension);
+    }
+
+    /**
+     * Update a structure's location from the caches, if they can answer it.
+     * @return True if the location was updated, false if it needs a search
+     */
+    private static boolean applyCachedResult(ResourceLocation id, BlockPos playerPos) {
+        int skipOffset = current.skipOffsets.getOrDefault(id, 0);
+
+        SpatialIndex index = current.indexes.get(id);
+        if (index == null) return false;
+
+        // Results not shown since a refresh, or skipped past the ones found: order them from the player
+        if (!current.origins.containsKey(id) || skipOffset >= index.size()) current.origins.put(id, playerPos);
+        updateLocationFromIndex(id);
+
+        return true;
     }
 
     /**
@@ -329,132 +506,173 @@ public class StructureSearchManager {
      */
     private static void processSingleplayerSearch(World serverWorld, ResourceLocation id,
             BlockPos playerPos, int skipOffset, long worldId) {
+        String structureId = id.toString();
 
         // Try batch search first
-        List<BlockPos> positions = StructureProviderRegistry.findAllNearby(
-            serverWorld, id, playerPos, MAX_CACHE_RESULTS
-        );
-
-        if (positions != null) {
-            // Batch supported, cache and sort
-            positions.removeIf(pos ->
-                ModConfig.isLocationBlacklisted(worldId, id.toString(), pos.getX(), pos.getY(), pos.getZ())
-            );
-
-            locationCache.computeIfAbsent(worldId, k -> new LinkedHashMap<>()).put(id, positions);
-            updateSortedCache(id, playerPos, worldId);
-            updateLocationFromSortedCache(id);
-        } else {
+        if (!searchSingleplayerPage(serverWorld, id, playerPos, 0)) {
             // Batch not supported, use individual read
-            nonBatchStructures.add(id);
+            current.nonBatchStructures.add(id);
 
             StructureLocation location = StructureProviderRegistry.findNearest(
                 serverWorld, id, playerPos, skipOffset,
-                pos -> !ModConfig.isLocationBlacklisted(worldId, id.toString(), pos.getX(), pos.getY(), pos.getZ())
+                pos -> !ModConfig.isLocationBlacklisted(worldId, structureId, pos.getX(), pos.getY(), pos.getZ())
             );
 
             // Cache the individual result
-            if (location != null) addToLocationCache(worldId, id, location.getPosition());
+            if (location != null) addToLocationCache(id, location.getPosition());
 
             updateLocation(id, location);
         }
     }
 
     /**
-     * Adds a position to the location cache (for non-batch providers).
+     * Reads a page of batch results in singleplayer, handled as a page sent by the server.
+     * @param resultOffset Results already received from a search from this origin, 0 for a new search
+     * @return False if the provider doesn't support batch search
      */
-    private static void addToLocationCache(long worldId, ResourceLocation id, BlockPos pos) {
-        Map<ResourceLocation, List<BlockPos>> worldCache =
-            locationCache.computeIfAbsent(worldId, k -> new LinkedHashMap<>());
-        List<BlockPos> positions = worldCache.computeIfAbsent(id, k -> new ArrayList<>());
-
-        // Avoid duplicates
-        for (BlockPos existing : positions) {
-            if (existing.getX() == pos.getX() && existing.getZ() == pos.getZ()) return;
-        }
+    private static boolean searchSingleplayerPage(World serverWorld, ResourceLocation id, BlockPos origin,
+            int resultOffset) {
+        NearestStructureCursor cursor = new NearestStructureCursor(serverWorld, id, origin);
+        cursor.skip(resultOffset);
 
-        positions.add(pos);
+        List<BlockPos> positions = cursor.next(MAX_CACHE_RESULTS);
+        if (positions == null) return false;
+
+        handleBatchResponse(id, serverWorld.provider.getDimension(), positions, origin, resultOffset > 0,
+            !cursor.isExhausted());
+
+        return true;
     }
 
     /**
-     * Updates the sorted cache for a structure based on player position.
+     * Adds a position to the location cache (for non-batch providers).
      */
-    private static void updateSortedCache(ResourceLocation id, BlockPos playerPos, long worldId) {
-        Map<ResourceLocation, List<BlockPos>> worldCache = locationCache.get(worldId);
-        if (worldCache == null) return;
-
-        List<BlockPos> rawPositions = worldCache.get(id);
-        if (rawPositions == null) return;
-
-        // Create a sorted copy
-        List<BlockPos> sorted = new ArrayList<>(rawPositions);
-        final int px = playerPos.getX();
-        final int pz = playerPos.getZ();
-
-        sorted.sort((a, b) -> {
-            // Cast to long to avoid integer overflow for large distances
-            long dxA = a.getX() - px;
-            long dzA = a.getZ() - pz;
-            long dxB = b.getX() - px;
-            long dzB = b.getZ() - pz;
-            long distA = dxA * dxA + dzA * dzA;
-            long distB = dxB * dxB + dzB * dzB;
-            return Long.compare(distA, distB);
-        });
+    private static void addToLocationCache(ResourceLocation id, BlockPos pos) {
+        // The index ignores duplicates
+        current.indexes.computeIfAbsent(id, k -> new SpatialIndex()).add(pos);
+    }
 
-        sortedCache.put(id, sorted);
+    private static long distanceSq(BlockPos pos, BlockPos origin) {
+        // Cast to long to avoid integer overflow for large distances
+        long dx = pos.getX() - origin.getX();
+        long dz = pos.getZ() - origin.getZ();
+
+        return dx * dx + dz * dz;
     }
 
     /**
-     * Updates the display location from the sorted cache.
+     * Updates the display location to the (skipOffset + 1)-th nearest indexed position to the origin.
      */
-    private static void updateLocationFromSortedCache(ResourceLocation id) {
-        List<BlockPos> sorted = sortedCache.get(id);
-        if (sorted == null || sorted.isEmpty()) {
-            lastKnownLocations.remove(id);
+    private static void updateLocationFromIndex(ResourceLocation id) {
+        SpatialIndex index = current.indexes.get(id);
+        BlockPos origin = current.origins.get(id);
+        if (index == null || index.size() == 0 || origin == null) {
+            current.lastKnownLocations.remove(id);
             return;
         }
 
-        int skipOffset = skipOffsets.getOrDefault(id, 0);
+        int skipOffset = current.skipOffsets.getOrDefault(id, 0);
 
         // Clamp skip offset to valid range
-        if (skipOffset >= sorted.size()) {
-            skipOffset = sorted.size() - 1;
-            skipOffsets.put(id, skipOffset);
+        if (skipOffset >= index.size()) {
+            skipOffset = index.size() - 1;
+            current.skipOffsets.put(id, skipOffset);
         }
 
-        BlockPos targetPos = sorted.get(skipOffset);
+        List<BlockPos> nearest = index.nearest(origin.getX(), origin.getZ(), skipOffset + 1);
+        BlockPos targetPos = nearest.get(nearest.size() - 1);
+
+        // Results known up to this one, plus the next one if there is one (see StructureLocation#getTotalFound)
+        boolean hasNext = skipOffset < index.size() - 1 || current.moreResults.contains(id);
+        int total = skipOffset + (hasNext ? 2 : 1);
 
         // Y-agnostic if provider returned Y=0 (provider handles terrain height calculation internally)
         boolean yAgnostic = targetPos.getY() == 0;
-        StructureLocation location = new StructureLocation(targetPos, skipOffset, sorted.size(), yAgnostic);
-        lastKnownLocations.put(id, location);
+        StructureLocation location = new StructureLocation(targetPos, skipOffset, total, yAgnostic);
+        current.lastKnownLocations.put(id, location);
     }
 
     /**
      * Called when server sends batch results (provider supports batch reads).
+     * @param dimension Dimension the search ran in
+     * @param playerPos Origin of the search
+     * @param append False for the first page of results (replacing the cached ones), true for the next pages
+     * @param more Whether the search may have more results, read by continuing it
      */
-    public static void handleBatchResponse(ResourceLocation id, List<BlockPos> positions, BlockPos playerPos) {
+    public static void handleBatchResponse(ResourceLocation id, int dimension, List<BlockPos> positions,
+            BlockPos playerPos, boolean append, boolean more) {
         long worldId = WorldUtils.getWorldIdentifier();
+        String structureId = id.toString();
+        DimensionState state = stateOf(dimension);
+
+        // Continuations start after the results received, blacklisted or not
+        state.receivePage(id, playerPos, positions.size(), append, more);
 
         // Filter out blacklisted positions
         positions.removeIf(pos ->
-            ModConfig.isLocationBlacklisted(worldId, id.toString(), pos.getX(), pos.getY(), pos.getZ())
+            ModConfig.isLocationBlacklisted(worldId, structureId, pos.getX(), pos.getY(), pos.getZ())
         );
 
-        // Store in location cache
-        locationCache.computeIfAbsent(worldId, k -> new LinkedHashMap<>()).put(id, positions);
+        if (state != current) {
+            // Searched before the player left that dimension: keep the positions, ordered on return
+            SpatialIndex index = state.indexes.get(id);
+            if (!append || index == null) {
+                state.indexes.put(id, new SpatialIndex(positions));
+            } else {
+                index.addAll(positions);
+            }
+            state.forget(id);
+            return;
+        }
+
+        SpatialIndex index = current.indexes.get(id);
+
+        if (!append || index == null) {
+            // Index the positions and update display
+            current.indexes.put(id, new SpatialIndex(positions));
+            current.origins.put(id, playerPos);
+            updateLocationFromIndex(id);
+            return;
+        }
+
+        boolean continuing = current.continuations.remove(id);
+        if (positions.isEmpty()) return;
 
-        // Sort and update display
-        updateSortedCache(id, playerPos, worldId);
-        updateLocationFromSortedCache(id);
+        BlockPos origin = current.origins.get(id);
+        if (origin == null) {
+            origin = playerPos;
+            current.origins.put(id, origin);
+        }
+
+        // Keep showing the structure the player skipped to: it moves down by the new positions nearer than it
+        StructureLocation shown = current.lastKnownLocations.get(id);
+        int skipOffset = current.skipOffsets.getOrDefault(id, 0);
+        long shownDistance = shown != null && skipOffset > 0 ? distanceSq(shown.getPosition(), origin) : -1;
+
+        int added = 0;
+        for (BlockPos pos : positions) {
+            if (!index.add(pos)) continue;
+
+            added++;
+            if (distanceSq(pos, origin) < shownDistance) skipOffset++;
+        }
+
+        // "Next" asked for these results: show the one after the structure shown
+        if (continuing && shown != null && added > 0) skipOffset++;
+        if (shownDistance >= 0 || continuing) current.skipOffsets.put(id, skipOffset);
+
+        updateLocationFromIndex(id);
     }
 
     /**
      * Called when server sends single result (provider doesn't support batch reads).
      */
-    public static void handleSingleResponse(ResourceLocation id, StructureLocation location, int skipCount) {
-        nonBatchStructures.add(id);
+    public static void handleSingleResponse(ResourceLocation id, int dimension, StructureLocation location,
+            int skipCount) {
+        // Depends on the skip count of the dimension the player left, it searches again on return
+        if (stateOf(dimension) != current) return;
+
+        current.nonBatchStructures.add(id);
 
         if (location != null) {
             long worldId = WorldUtils.getWorldIdentifier();
@@ -463,19 +681,19 @@ public class StructureSearchManager {
             // Filter out blacklisted positions (blacklist is client-side config)
             if (ModConfig.isLocationBlacklisted(worldId, id.toString(), pos.getX(), pos.getY(), pos.getZ())) {
                 // Request next result with incremented skip count
-                skipOffsets.put(id, skipCount + 1);
+                current.skipOffsets.put(id, skipCount + 1);
                 pendingSearches.add(id);
                 return;
             }
 
-            addToLocationCache(worldId, id, pos);
+            addToLocationCache(id, pos);
         }
 
         updateLocation(id, location);
     }
 
     public static int getSkipOffset(ResourceLocation id) {
-        return skipOffsets.getOrDefault(id, 0);
+        return current.skipOffsets.getOrDefault(id, 0);
     }
 
     public static Set<ResourceLocation> getTrackedIds() {
@@ -488,52 +706,40 @@ public class StructureSearchManager {
 
     public static void updateLocation(ResourceLocation id, StructureLocation location) {
         if (location != null) {
-            lastKnownLocations.put(id, location);
+            current.lastKnownLocations.put(id, location);
         } else {
-            lastKnownLocations.remove(id);
+            current.lastKnownLocations.remove(id);
         }
     }
 
     public static StructureLocation getLastKnownLocation(ResourceLocation id) {
-        return lastKnownLocations.get(id);
+        return current.lastKnownLocations.get(id);
     }
 
     public static Map<ResourceLocation, StructureLocation> getAllLocations() {
-        return new LinkedHashMap<>(lastKnownLocations);
+        return new LinkedHashMap<>(current.lastKnownLocations);
     }
 
     public static void clearAll() {
         searchedStructures.clear();
-        lastKnownLocations.clear();
+        current.lastKnownLocations.clear();
         structureColors.clear();
         structureColorIndices.clear();
         usedColorIndices.clear();
         pendingSearches.clear();
-        sortedCache.clear();
-        nonBatchStructures.clear();
+        current.clearResults();
+        for (DimensionState state : dimensionStates.values()) state.clearResults();
         saveToConfig();
     }
 
     /**
-     * Clears all caches. Called when changing worlds.
+     * Clears the results shown in the current dimension and searches them again.
      */
     public static void clearCaches() {
-        sortedCache.clear();
-        lastKnownLocations.clear();
-        nonBatchStructures.clear();
+        current.clearResults();
 
         // Re-queue searches for all tracked structures
-        for (ResourceLocation id : searchedStructures) {
-            skipOffsets.put(id, 0);
-            pendingSearches.add(id);
-        }
-    }
-
-    /**
-     * Clears the location cache for a specific world.
-     */
-    public static void clearWorldCache(long worldId) {
-        locationCache.remove(worldId);
+        for (ResourceLocation id : searchedStructures) pendingSearches.add(id);
     }
 
     /**
@@ -556,4 +762,107 @@ public class StructureSearchManager {
 
         return (float) (Math.atan2(dz, dx) * 180.0 / Math.PI) - 90.0f;
     }
+
+    private static final class DimensionKey {
+        private final long worldId;
+        private final int dimension;
+
+        DimensionKey(long worldId, int dimension) {
+            this.worldId = worldId;
+            this.dimension = dimension;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DimensionKey)) return false;
+
+            DimensionKey other = (DimensionKey) o;
+
+            return worldId == other.worldId && dimension == other.dimension;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(worldId) + dimension;
+        }
+    }
+
+    /**
+     * Search results and caches of one dimension of one world.
+     */
+    private static final class DimensionState {
+        final Map<ResourceLocation, StructureLocation> lastKnownLocations = new LinkedHashMap<>();
+        final Map<ResourceLocation, Integer> skipOffsets = new LinkedHashMap<>();
+
+        // Positions found, indexed as they arrive, Map<StructureId, SpatialIndex>
+        final Map<ResourceLocation, SpatialIndex> indexes = new LinkedHashMap<>();
+
+        // Player position the shown results are ordered from, set when they are refreshed
+        final Map<ResourceLocation, BlockPos> origins = new LinkedHashMap<>();
+
+        // Track structures that don't support batch reads (use individual caching instead)
+        final Set<ResourceLocation> nonBatchStructures = new LinkedHashSet<>();
+
+        // Origin of the batch search the indexed positions come from, and results it sent (before blacklisting)
+        final Map<ResourceLocation, BlockPos> searchOrigins = new LinkedHashMap<>();
+        final Map<ResourceLocation, Integer> receivedCounts = new LinkedHashMap<>();
+
+        // Batch searches that may have more results than sent
+        final Set<ResourceLocation> moreResults = new LinkedHashSet<>();
+
+        // Continuations asked by "next", to send, and sent but without a page yet
+        final Set<ResourceLocation> pendingContinuations = new LinkedHashSet<>();
+        final Set<ResourceLocation> continuations = new LinkedHashSet<>();
+
+        /**
+         * Count a page of batch results, before blacklisted positions are removed.
+         */
+        void receivePage(ResourceLocation id, BlockPos searchOrigin, int received, boolean append, boolean more) {
+            if (!append || !searchOrigins.containsKey(id)) {
+                searchOrigins.put(id, searchOrigin);
+                receivedCounts.put(id, received);
+                continuations.remove(id);
+            } else {
+                receivedCounts.merge(id, received, Integer::sum);
+            }
+
+            if (more) {
+                moreResults.add(id);
+            } else {
+                moreResults.remove(id);
+            }
+        }
+
+        /**
+         * Drop what a structure's batch search sent, to search again.
+         */
+        void forgetSearch(ResourceLocation id) {
+            searchOrigins.remove(id);
+            receivedCounts.remove(id);
+            moreResults.remove(id);
+            pendingContinuations.remove(id);
+            continuations.remove(id);
+        }
+
+        /**
+         * Drop a structure's shown result and its ordering, keeping its indexed positions.
+         */
+        void forget(ResourceLocation id) {
+            lastKnownLocations.remove(id);
+            skipOffsets.remove(id);
+            origins.remove(id);
+            pendingContinuations.remove(id);
+            continuations.remove(id);
+        }
+
+        void clearResults() {
+            lastKnownLocations.clear();
+            skipOffsets.clear();
+            origins.clear();
+            pendingContinuations.clear();
+            continuations.clear();
+            nonBatchStructures.clear();
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package com.simplestructurescanner.structure;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.minecraft.world.biome.Biome;
+
+
+/**
+ * Validates the candidates of a whole search ring against biome rules, with reused arrays.
+ *
+ * <p>Point checks read a single full-resolution sample, instead of {@code getBiome(pos)} which generates
+ * (and caches) the full 16x16 block of the candidate's chunk. Area checks match {@code areBiomesViable} like
+ * MC's structure generators, and should only run on candidates that already passed the cheaper point check.
+ * Both go through the shared {@link BiomeLookupCache}.</p>
+ *
+ * <p>Candidates are packed chunk coordinates (see {@link RegionSeedEngine#packChunk}), checked at the chunk center.
+ * Filtering compacts the array in place. One instance per search, not thread-safe.</p>
+ */
+public class BatchedBiomeCheck {
+    // Totals across all searches, for diagnostics
+    private static final AtomicLong TOTAL_POINT_CHECKS = new AtomicLong();
+    private static final AtomicLong TOTAL_AREA_CHECKS = new AtomicLong();
+
+    private final BiomeLookupCache biomes;
+
+    private int pointChecks = 0;
+    private int areaChecks = 0;
+    private int rejected = 0;
+
+    public BatchedBiomeCheck(BiomeLookupCache biomes) {
+        this.biomes = biomes;
+    }
+
+    /**
+     * Keep only the candidates whose chunk center biome is in the given set.
+     * @return Number of candidates kept, at the start of the array
+     */
+    public int filterByPoint(long[] chunks, int count, Set<Biome> validBiomes) {
+        int kept = 0;
+
+        for (int i = 0; i < count; i++) {
+            int blockX = RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkX(chunks[i]));
+            int blockZ = RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkZ(chunks[i]));
+
+            if (validBiomes.contains(biomes.getBiome(blockX, blockZ))) chunks[kept++] = chunks[i];
+        }
+
+        pointChecks += count;
+        rejected += count - kept;
+        TOTAL_POINT_CHECKS.addAndGet(count);
+
+        return kept;
+    }
+
+    /**
+     * Keep only the candidates whose surroundings (radius in blocks around the chunk center) are all allowed biomes.
+     * @return Number of candidates kept, at the start of the array
+     */
+    public int filterByArea(long[] chunks, int count, int radius, List<Biome> allowedBiomes) {
+        int kept = 0;
+
+        for (int i = 0; i < count; i++) {
+            int blockX = RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkX(chunks[i]));
+            int blockZ = RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkZ(chunks[i]));
+
+            if (biomes.areBiomesViable(blockX, blockZ, radius, allowedBiomes)) chunks[kept++] = chunks[i];
+        }
+
+        areaChecks += count;
+        rejected += count - kept;
+        TOTAL_AREA_CHECKS.addAndGet(count);
+
+        return kept;
+    }
+
+    /**
+     * Number of single-sample biome lookups done by this search.
+     */
+    public int getPointChecks() {
+        return pointChecks;
+    }
+
+    /**
+     * Number of area biome lookups (areBiomesViable) done by this search.
+     */
+    public int getAreaChecks() {
+        return areaChecks;
+    }
+
+    /**
+     * Number of candidates rejected by this search's biome checks.
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Point biome lookups done by every search since the game started.
+     */
+    public static long getTotalPointChecks() {
+        return TOTAL_POINT_CHECKS.get();
+    }
+
+    /**
+     * Area biome lookups done by every search since the game started.
+     */
+    public static long getTotalAreaChecks() {
+        return TOTAL_AREA_CHECKS.get();
+    }
+}
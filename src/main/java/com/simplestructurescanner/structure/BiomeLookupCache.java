@@ -0,0 +1,265 @@
+package com.simplestructurescanner.structure;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.BiomeProvider;
+
+
+/**
+ * Biome lookups backed by a bounded cache shared by all searches, so repeated searches of the same area
+ * (by many players, or by several structure types) don't run the GenLayer stack again.
+ *
+ * <p>The shared storage holds quarter-resolution biome ids (one per 4x4 "quart" cell, the resolution of
+ * {@code getBiomesForGeneration}), grouped in fixed-size tiles keyed by (seed, dimension, tile) and evicted
+ * least recently used first. From those ids, {@link #areBiomesViable} and {@link #findBiomePosition} give exactly
+ * the same answers as BiomeProvider. {@link #getBiome} is exact too: a block's full-resolution biome is picked
+ * among its 2x2 nearest quart cells, so the full-resolution layer is only asked near biome edges.</p>
+ *
+ * <p>Only the vanilla BiomeProvider is cached. Other providers (single biome, modded dimensions) may not follow
+ * the quart/voronoi layering, so their lookups are passed through unchanged.</p>
+ *
+ * <p>Instances are cheap views meant for one search (not thread-safe); the shared storage is thread-safe.</p>
+ */
+public final class BiomeLookupCache {
+    // 8x8 quart cells (32x32 blocks) per tile
+    private static final int TILE_SHIFT = 3;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int MAX_TILES = 16384;  // 256 bytes each, ~4MB
+
+    private static final Map<TileKey, int[]> TILES = new LinkedHashMap<TileKey, int[]>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileKey, int[]> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+
+    private static final AtomicLong TILE_HITS = new AtomicLong();
+    private static final AtomicLong TILE_MISSES = new AtomicLong();
+
+    private final long seed;
+    private final int dimension;
+    private final BiomeProvider biomeProvider;
+    private final boolean cacheable;
+
+    private Biome[] pointBuffer = new Biome[1];
+    private Biome[] tileBuffer;
+
+    // Most lookups of a check hit the same tile as the previous one
+    private int[] lastTile;
+    private int lastTileX;
+    private int lastTileZ;
+
+    public BiomeLookupCache(long seed, int dimension, BiomeProvider biomeProvider) {
+        this.seed = seed;
+        this.dimension = dimension;
+        this.biomeProvider = biomeProvider;
+        this.cacheable = biomeProvider.getClass() == BiomeProvider.class;
+    }
+
+    /**
+     * Lookup view for a world's current seed, dimension and biome provider.
+     */
+    public static BiomeLookupCache forWorld(World world) {
+        return new BiomeLookupCache(world.getSeed(), world.provider.getDimension(), world.getBiomeProvider());
+    }
+
+    public BiomeProvider getBiomeProvider() {
+        return biomeProvider;
+    }
+
+    // ========== Lookups ==========
+
+    /**
+     * Full-resolution biome at a block, same as {@code BiomeProvider.getBiome}.
+     */
+    public Biome getBiome(int blockX, int blockZ) {
+        if (cacheable) {
+            // GenLayerVoronoiZoom picks each block's biome among these 4 quart cells
+            int quartX = (blockX - 2) >> 2;
+            int quartZ = (blockZ - 2) >> 2;
+            int id = getQuartBiomeId(quartX, quartZ);
+
+            if (id == getQuartBiomeId(quartX + 1, quartZ)
+                && id == getQuartBiomeId(quartX, quartZ + 1)
+                && id == getQuartBiomeId(quartX + 1, quartZ + 1)) {
+                Biome biome = Biome.getBiome(id);
+                if (biome != null) return biome;
+            }
+        }
+
+        pointBuffer = biomeProvider.getBiomes(pointBuffer, blockX, blockZ, 1, 1, false);
+
+        return pointBuffer[0];
+    }
+
+    /**
+     * Same as {@code BiomeProvider.areBiomesViable}: true if every quart cell within radius blocks is allowed.
+     */
+    public boolean areBiomesViable(int x, int z, int radius, List<Biome> allowedBiomes) {
+        if (!cacheable) return biomeProvider.areBiomesViable(x, z, radius, allowedBiomes);
+
+        int minX = (x - radius) >> 2;
+        int minZ = (z - radius) >> 2;
+        int maxX = (x + radius) >> 2;
+        int maxZ = (z + radius) >> 2;
+
+        for (int quartZ = minZ; quartZ <= maxZ; quartZ++) {
+            for (int quartX = minX; quartX <= maxX; quartX++) {
+                if (!allowedBiomes.contains(Biome.getBiome(getQuartBiomeId(quartX, quartZ)))) return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Same as {@code BiomeProvider.findBiomePosition}, including the calls made on the given random.
+     */
+    @Nullable
+    public BlockPos findBiomePosition(int x, int z, int range, List<Biome> biomes, Random random) {
+        if (!cacheable) return biomeProvider.findBiomePosition(x, z, range, biomes, random);
+
+        int minX = (x - range) >> 2;
+        int minZ = (z - range) >> 2;
+        int maxX = (x + range) >> 2;
+        int maxZ = (z + range) >> 2;
+
+        BlockPos found = null;
+        int matches = 0;
+
+        for (int quartZ = minZ; quartZ <= maxZ; quartZ++) {
+            for (int quartX = minX; quartX <= maxX; quartX++) {
+                Biome biome = Biome.getBiome(getQuartBiomeId(quartX, quartZ));
+
+                // Reservoir sampling, in the same order as vanilla
+                if (biomes.contains(biome) && (found == null || random.nextInt(matches + 1) == 0)) {
+                    found = new BlockPos(quartX << 2, 0, quartZ << 2);
+                    matches++;
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Quarter-resolution biome id of a quart cell (blocks [quartX * 4, quartX * 4 + 4)).
+     */
+    public int getQuartBiomeId(int quartX, int quartZ) {
+        if (!cacheable) {
+            tileBuffer = biomeProvider.getBiomesForGeneration(tileBuffer, quartX, quartZ, 1, 1);
+
+            return Biome.getIdForBiome(tileBuffer[0]);
+        }
+
+        int[] tile = getTile(quartX >> TILE_SHIFT, quartZ >> TILE_SHIFT);
+
+        return tile[(quartX & TILE_MASK) | (quartZ & TILE_MASK) << TILE_SHIFT];
+    }
+
+    // ========== Tile storage ==========
+
+    private int[] getTile(int tileX, int tileZ) {
+        if (lastTile != null && tileX == lastTileX && tileZ == lastTileZ) return lastTile;
+
+        TileKey key = new TileKey(seed, dimension, tileX, tileZ);
+        int[] tile;
+        synchronized (TILES) {
+            tile = TILES.get(key);
+        }
+
+        if (tile != null) {
+            TILE_HITS.incrementAndGet();
+        } else {
+            TILE_MISSES.incrementAndGet();
+
+            // Generated outside the lock, two searches may rarely compute the same tile
+            tile = generateTile(tileX, tileZ);
+            synchronized (TILES) {
+                TILES.put(key, tile);
+            }
+        }
+
+        lastTile = tile;
+        lastTileX = tileX;
+        lastTileZ = tileZ;
+
+        return tile;
+    }
+
+    private int[] generateTile(int tileX, int tileZ) {
+        tileBuffer = biomeProvider.getBiomesForGeneration(tileBuffer, tileX << TILE_SHIFT, tileZ << TILE_SHIFT, TILE_SIZE, TILE_SIZE);
+
+        int[] ids = new int[TILE_SIZE * TILE_SIZE];
+        for (int i = 0; i < ids.length; i++) ids[i] = Biome.getIdForBiome(tileBuffer[i]);
+
+        return ids;
+    }
+
+    /**
+     * Drop every cached tile (e.g. when the server stops, as another world may reuse the same seed).
+     */
+    public static void clear() {
+        synchronized (TILES) {
+            TILES.clear();
+        }
+    }
+
+    public static long getTileHits() {
+        return TILE_HITS.get();
+    }
+
+    public static long getTileMisses() {
+        return TILE_MISSES.get();
+    }
+
+    public static int getCachedTileCount() {
+        synchronized (TILES) {
+            return TILES.size();
+        }
+    }
+
+    private static final class TileKey {
+        private final long seed;
+        private final int dimension;
+        private final int tileX;
+        private final int tileZ;
+
+        TileKey(long seed, int dimension, int tileX, int tileZ) {
+            this.seed = seed;
+            this.dimension = dimension;
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TileKey)) return false;
+
+            TileKey other = (TileKey) o;
+
+            return seed == other.seed && dimension == other.dimension && tileX == other.tileX && tileZ == other.tileZ;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Long.hashCode(seed);
+            result = 31 * result + dimension;
+            result = 31 * result + tileX;
+            result = 31 * result + tileZ;
+
+            return result;
+        }
+    }
+}
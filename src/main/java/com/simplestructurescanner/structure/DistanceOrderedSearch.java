@@ -0,0 +1,185 @@
+package com.simplestructurescanner.structure;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.math.BlockPos;
+
+
+/**
+ * Lazy search over a square grid of cells (structure regions, chunks, dungeon grids...),
+ * yielding structure positions in exact horizontal distance order from the search origin.
+ *
+ * <p>Rings of cells are expanded on demand (see {@link RingIterator}) and their candidates are kept
+ * in a priority queue. A candidate is only handed out once every ring that could still hold a closer
+ * one has been expanded, so callers only pay for the rings needed by the results they consume.</p>
+ *
+ * <p>Each cell may hold at most one structure, and that structure must lie inside the cell.
+ * This is how MC's structure grids work. Not thread-safe.</p>
+ */
+public class DistanceOrderedSearch implements Iterator<BlockPos> {
+
+    /**
+     * Evaluates a single grid cell.
+     */
+    @FunctionalInterface
+    public interface CellEvaluator {
+        /**
+         * @param cellX Cell X index (cell covers blocks [cellX * cellSize, (cellX + 1) * cellSize))
+         * @param cellZ Cell Z index
+         * @return The structure position in this cell, or null if the cell has none
+         */
+        @Nullable
+        BlockPos evaluate(int cellX, int cellZ);
+    }
+
+    /**
+     * Evaluates all cells of a ring at once, e.g. to batch biome checks.
+     */
+    @FunctionalInterface
+    public interface RingEvaluator {
+        /**
+         * @param cells Cell coordinates of the ring, packed as in {@link RegionSeedEngine#packChunk}.
+         *              Only the first {@code count} entries are valid, and the array is reused between rings.
+         * @param count Number of cells in the ring
+         * @param results Receives the structure positions found in the ring
+         */
+        void evaluate(long[] cells, int count, Consumer<BlockPos> results);
+    }
+
+    private final RingEvaluator evaluator;
+    private final long cellSize;
+    private final int originX;
+    private final int originZ;
+    private final int centerCellX;
+    private final int centerCellZ;
+    private final long maxDistanceSq;
+    private final int maxRadius;
+
+    private final RingIterator ring;
+    private final PriorityQueue<BlockPos> pending;
+    private final Consumer<BlockPos> sink;
+    private long[] ringCells = new long[8];
+    private int nextRadius = 0;
+    private int cellsEvaluated = 0;
+
+    /**
+     * @param origin Search origin (only X and Z are used)
+     * @param cellSize Size of a grid cell in blocks (e.g. spacing * 16 for region grids)
+     * @param maxDistance Horizontal distance limit in blocks. Positions further away are never returned,
+     *                    and no cell entirely beyond it is evaluated.
+     * @param evaluator Cell evaluator
+     */
+    public DistanceOrderedSearch(BlockPos origin, int cellSize, int maxDistance, CellEvaluator evaluator) {
+        this(origin, cellSize, maxDistance, perCell(evaluator));
+    }
+
+    /**
+     * @param origin Search origin (only X and Z are used)
+     * @param cellSize Size of a grid cell in blocks (e.g. spacing * 16 for region grids)
+     * @param maxDistance Horizontal distance limit in blocks. Positions further away are never returned,
+     *                    and no cell entirely beyond it is evaluated.
+     * @param evaluator Ring evaluator, called once per ring with all of its cells
+     */
+    public DistanceOrderedSearch(BlockPos origin, int cellSize, int maxDistance, RingEvaluator evaluator) {
+        if (cellSize <= 0) throw new IllegalArgumentException("cellSize must be positive");
+
+        this.evaluator = evaluator;
+        this.cellSize = cellSize;
+        this.originX = origin.getX();
+        this.originZ = origin.getZ();
+        this.centerCellX = Math.floorDiv(originX, cellSize);
+        this.centerCellZ = Math.floorDiv(originZ, cellSize);
+        this.maxDistanceSq = (long) Math.max(0, maxDistance) * Math.max(0, maxDistance);
+        this.maxRadius = Math.max(0, maxDistance) / cellSize + 1;
+
+        this.ring = new RingIterator(centerCellX, centerCellZ);
+        this.pending = new PriorityQueue<>((a, b) -> Long.compare(distanceSq(a), distanceSq(b)));
+        this.sink = candidate -> {
+            if (distanceSq(candidate) <= maxDistanceSq) pending.add(candidate);
+        };
+    }
+
+    /**
+     * Ring evaluator calling a cell evaluator on each cell of the ring.
+     */
+    public static RingEvaluator perCell(CellEvaluator evaluator) {
+        return (cells, count, results) -> {
+            for (int i = 0; i < count; i++) {
+                BlockPos candidate = evaluator.evaluate(RegionSeedEngine.unpackChunkX(cells[i]), RegionSeedEngine.unpackChunkZ(cells[i]));
+                if (candidate != null) results.accept(candidate);
+            }
+        };
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            BlockPos closest = pending.peek();
+
+            if (nextRadius > maxRadius) return closest != null;
+
+            // Nothing unexpanded can beat the closest pending candidate
+            if (closest != null && distanceSq(closest) <= ringLowerBoundSq(nextRadius)) return true;
+
+            expandRing(nextRadius++);
+        }
+    }
+
+    @Override
+    public BlockPos next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        return pending.poll();
+    }
+
+    /**
+     * Number of cells evaluated so far.
+     */
+    public int getCellsEvaluated() {
+        return cellsEvaluated;
+    }
+
+    private void expandRing(int radius) {
+        int size = RingIterator.ringSize(radius);
+        if (ringCells.length < size) ringCells = new long[Math.max(size, ringCells.length * 2)];
+
+        int count = 0;
+        ring.startRing(radius);
+        while (ring.next()) ringCells[count++] = RegionSeedEngine.packChunk(ring.getX(), ring.getZ());
+
+        cellsEvaluated += count;
+        evaluator.evaluate(ringCells, count, sink);
+    }
+
+    private long distanceSq(BlockPos pos) {
+        // Cast to long to avoid integer overflow for large distances
+        long dx = pos.getX() - originX;
+        long dz = pos.getZ() - originZ;
+
+        return dx * dx + dz * dz;
+    }
+
+    /**
+     * Squared lower bound of the horizontal distance between the origin and any block of the given ring.
+     * Every cell of ring r has either its X or Z index at distance r from the center cell,
+     * so the closest point is at least the gap to the nearest such column or row.
+     */
+    private long ringLowerBoundSq(int radius) {
+        if (radius == 0) return 0;
+
+        long gapX = Math.min(
+            originX - (centerCellX - radius + 1) * cellSize + 1,
+            (centerCellX + radius) * cellSize - originX);
+        long gapZ = Math.min(
+            originZ - (centerCellZ - radius + 1) * cellSize + 1,
+            (centerCellZ + radius) * cellSize - originZ);
+        long gap = Math.max(0, Math.min(gapX, gapZ));
+
+        return gap * gap;
+    }
+}
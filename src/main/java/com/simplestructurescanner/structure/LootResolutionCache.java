@@ -0,0 +1,312 @@
+package com.simplestructurescanner.structure;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.annotation.Nullable;
+
+import com.google.gson.Gson;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.storage.loot.LootTable;
+import net.minecraft.world.storage.loot.LootTableManager;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.event.LootTableLoadEvent;
+import net.minecraftforge.fml.common.Loader;
+import net.minecraftforge.fml.common.ModContainer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+import com.simplestructurescanner.SimpleStructureScanner;
+import com.simplestructurescanner.config.ModConfig;
+import com.simplestructurescanner.structure.LootTableResolver.LootItem;
+
+
+/**
+ * Cache of finished loot simulations, so reopening a loot window doesn't simulate again.
+ *
+ * <p>Results are kept in memory for the current loot table manager, and dropped when a loot table is
+ * (re)loaded ({@link LootTableLoadEvent}, e.g. on /reload) or the manager changes (another world).
+ * They are also saved in the world's save directory, keyed by a fingerprint of the installed mods and of the
+ * table as loaded (serialized back to JSON, so it covers the world's own version of the table and what
+ * {@link LootTableLoadEvent} handlers changed), so they survive restarts until the loot table changes.
+ * Tables that can't be serialized (mod functions without a serializer) are only cached in memory.</p>
+ */
+public final class LootResolutionCache {
+    private static final int FORMAT_VERSION = 3;
+    private static final String FILE_NAME = "loot_cache.dat";
+
+    // Loot table ID -> results, for the current manager
+    private static final Map<ResourceLocation, CachedLoot> MEMORY = new HashMap<>();
+    private static WeakReference<LootTableManager> currentManager = new WeakReference<>(null);
+
+    // Loot table ID -> fingerprint of the table as loaded by the current manager, 0 if it can't be serialized
+    private static final Map<ResourceLocation, Long> FINGERPRINTS = new HashMap<>();
+
+    // Save directory -> results read from its file
+    private static final Map<File, NBTTagCompound> DISK = new HashMap<>();
+
+    private static long modsFingerprint = 0;
+
+    private static Field gsonField;
+    private static boolean gsonFieldLookedUp = false;
+
+    private LootResolutionCache() {
+    }
+
+    /**
+     * Results of an earlier simulation of the table, if they are still valid.
+     */
+    @Nullable
+    static synchronized LootSimulation get(WorldServer world, ResourceLocation lootTableId) {
+        checkManager(world);
+
+        CachedLoot cached = MEMORY.get(lootTableId);
+        if (cached == null && ModConfig.isClientLootDiskCacheEnabled()) {
+            cached = readFromDisk(world, lootTableId);
+            if (cached != null) MEMORY.put(lootTableId, cached);
+        }
+
+        if (cached == null) return null;
+
+        List<LootItem> items = new ArrayList<>(cached.items.size());
+        for (LootItem item : cached.items) items.add(new LootItem(item));
+
+        return LootSimulation.completed(items, cached.rolls);
+    }
+
+    /**
+     * Cache the simulation's results once it finishes, if it wasn't cancelled and all its chunks rolled.
+     * @param table The simulated table, the results are dropped if it was reloaded meanwhile
+     */
+    static void storeWhenDone(WorldServer world, ResourceLocation lootTableId, LootTable table, LootSimulation simulation) {
+        simulation.whenDone(() -> {
+            if (!simulation.isComplete()) return;
+
+            LootSimulation.Snapshot snapshot = simulation.getSnapshot();
+            CachedLoot cached = new CachedLoot(snapshot.items, snapshot.rolls);
+            synchronized (LootResolutionCache.class) {
+                // Drop results simulated from a table that was reloaded since
+                LootTableManager manager = world.getLootTableManager();
+                if (currentManager.get() != manager || manager.getLootTableFromLocation(lootTableId) != table) return;
+
+                MEMORY.put(lootTableId, cached);
+                if (ModConfig.isClientLootDiskCacheEnabled()) writeToDisk(world, lootTableId, cached);
+            }
+        });
+    }
+
+    /**
+     * Drop the in-memory results of a loot table, and its fingerprint: saved results are only used again if the
+     * reloaded table is the same.
+     */
+    public static synchronized void invalidate(ResourceLocation lootTableId) {
+        MEMORY.remove(lootTableId);
+        FINGERPRINTS.remove(lootTableId);
+    }
+
+    public static synchronized void clear() {
+        MEMORY.clear();
+        FINGERPRINTS.clear();
+        DISK.clear();
+        currentManager = new WeakReference<>(null);
+    }
+
+    private static void checkManager(WorldServer world) {
+        LootTableManager manager = world.getLootTableManager();
+        if (currentManager.get() == manager) return;
+
+        MEMORY.clear();
+        FINGERPRINTS.clear();
+        currentManager = new WeakReference<>(manager);
+    }
+
+    // ========== Disk ==========
+
+    private static File getFile(WorldServer world) {
+        File worldDirectory = world.getSaveHandler().getWorldDirectory();
+
+        return new File(worldDirectory, "data/" + SimpleStructureScanner.MODID + "/" + FILE_NAME);
+    }
+
+    private static NBTTagCompound getDiskEntries(File file) {
+        NBTTagCompound entries = DISK.get(file);
+        if (entries != null) return entries;
+
+        entries = new NBTTagCompound();
+        if (file.isFile()) {
+            try {
+                NBTTagCompound root = CompressedStreamTools.read(file);
+                if (root != null && root.getInteger("version") == FORMAT_VERSION) entries = root.getCompoundTag("tables");
+            } catch (IOException e) {
+                SimpleStructureScanner.LOGGER.warn("Failed to read loot cache {}: {}", file, e.getMessage());
+            }
+        }
+
+        DISK.put(file, entries);
+
+        return entries;
+    }
+
+    @Nullable
+    private static CachedLoot readFromDisk(WorldServer world, ResourceLocation lootTableId) {
+        NBTTagCompound entries = getDiskEntries(getFile(world));
+        if (!entries.hasKey(lootTableId.toString(), Constants.NBT.TAG_COMPOUND)) return null;
+
+        long fingerprint = fingerprint(world, lootTableId);
+        if (fingerprint == 0) return null;
+
+        NBTTagCompound entry = entries.getCompoundTag(lootTableId.toString());
+        if (entry.getLong("fingerprint") != fingerprint) return null;
+
+        NBTTagList itemList = entry.getTagList("items", Constants.NBT.TAG_COMPOUND);
+        List<LootItem> items = new ArrayList<>(itemList.tagCount());
+        for (int i = 0; i < itemList.tagCount(); i++) {
+            NBTTagCompound itemTag = itemList.getCompoundTagAt(i);
+            ItemStack stack = new ItemStack(itemTag.getCompoundTag("stack"));
+
+            // An item the mods don't have anymore, the fingerprint should have caught it
+            if (stack.isEmpty()) return null;
+
+            LootItem item = new LootItem(stack, itemTag.getInteger("drops"));
+            item.exactCount = itemTag.getDouble("exact");
+            item.chance = itemTag.getDouble("chance");
+            item.interval = itemTag.getDouble("interval");
+            items.add(item);
+        }
+
+        return new CachedLoot(items, entry.getInteger("rolls"));
+    }
+
+    private static void writeToDisk(WorldServer world, ResourceLocation lootTableId, CachedLoot cached) {
+        long fingerprint = fingerprint(world, lootTableId);
+        if (fingerprint == 0) return;
+
+        File file = getFile(world);
+        NBTTagCompound entries = getDiskEntries(file);
+
+        NBTTagList itemList = new NBTTagList();
+        for (LootItem item : cached.items) {
+            NBTTagCompound itemTag = new NBTTagCompound();
+            itemTag.setTag("stack", item.stack.writeToNBT(new NBTTagCompound()));
+            itemTag.setInteger("drops", item.dropCount);
+            itemTag.setDouble("exact", item.exactCount);
+            itemTag.setDouble("chance", item.chance);
+            itemTag.setDouble("interval", item.interval);
+            itemList.appendTag(itemTag);
+        }
+
+        NBTTagCompound entry = new NBTTagCompound();
+        entry.setLong("fingerprint", fingerprint);
+        entry.setInteger("rolls", cached.rolls);
+        entry.setTag("items", itemList);
+        entries.setTag(lootTableId.toString(), entry);
+
+        NBTTagCompound root = new NBTTagCompound();
+        root.setInteger("version", FORMAT_VERSION);
+        root.setTag("tables", entries);
+
+        try {
+            file.getParentFile().mkdirs();
+            CompressedStreamTools.safeWrite(root, file);
+        } catch (IOException e) {
+            SimpleStructureScanner.LOGGER.warn("Failed to write loot cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Fingerprint of what a loot table's results depend on: the installed mods (their code) and the table as
+     * loaded by the current manager.
+     * @return 0 if the table can't be serialized
+     */
+    private static long fingerprint(WorldServer world, ResourceLocation lootTableId) {
+        Long known = FINGERPRINTS.get(lootTableId);
+        if (known != null) return known;
+
+        long hash = 0;
+        String json = serialize(world.getLootTableManager().getLootTableFromLocation(lootTableId));
+        if (json != null) {
+            hash = fnv1a(getModsFingerprint(), json);
+            if (hash == 0) hash = 1;
+        }
+
+        FINGERPRINTS.put(lootTableId, hash);
+
+        return hash;
+    }
+
+    /**
+     * A loot table as JSON, with the loot table manager's own serializers.
+     * @return Null if a function or condition has no registered serializer
+     */
+    @Nullable
+    private static String serialize(LootTable table) {
+        if (!gsonFieldLookedUp) {
+            gsonField = LootTableAnalyzer.findField(LootTableManager.class, "GSON_INSTANCE", "field_186526_b");
+            gsonFieldLookedUp = true;
+        }
+        if (gsonField == null) return null;
+
+        try {
+            return ((Gson) gsonField.get(null)).toJson(table);
+        } catch (IllegalAccessException | RuntimeException e) {
+            SimpleStructureScanner.LOGGER.debug("Loot table can't be serialized, not saving its rates: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static long getModsFingerprint() {
+        if (modsFingerprint != 0) return modsFingerprint;
+
+        TreeSet<String> mods = new TreeSet<>();
+        for (ModContainer mod : Loader.instance().getActiveModList()) mods.add(mod.getModId() + "@" + mod.getVersion());
+
+        long hash = 0xcbf29ce484222325L;
+        for (String mod : mods) hash = fnv1a(hash, mod + "\n");
+
+        modsFingerprint = hash == 0 ? 1 : hash;
+
+        return modsFingerprint;
+    }
+
+    // FNV-1a, String.hashCode collides too easily for this
+    private static long fnv1a(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static final class CachedLoot {
+        final List<LootItem> items;
+        final int rolls;
+
+        CachedLoot(List<LootItem> items, int rolls) {
+            this.items = items;
+            this.rolls = rolls;
+        }
+    }
+
+    /**
+     * Drops cached results and fingerprints of reloaded loot tables.
+     */
+    public static class Events {
+        @SubscribeEvent
+        public void onLootTableLoad(LootTableLoadEvent event) {
+            invalidate(event.getName());
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.simplestructurescanner.structure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.storage.loot.LootPool;
+import net.minecraft.world.storage.loot.LootTable;
+
+import com.simplestructurescanner.SimpleStructureScanner;
+import com.simplestructurescanner.structure.LootTableResolver.LootItem;
+
+
+/**
+ * A loot table simulation running in the background, whose results can be read while it runs.
+ *
+ * <p>The rolls are split in chunks run by a shared pool of worker threads, each chunk with its own
+ * {@link Random} seeded from an independent stream, and aggregating its drops before merging them into the
+ * simulation's totals. Chunks are merged as they finish, so the drop rates converge while the loot window
+ * is open. Exactly computed rates are known from the start, only the remaining pools are rolled.</p>
+ *
+ * <p>The simulation keeps rolling until it converged: every chunk is a batch whose mean drop counts give
+ * a 95% confidence interval of each item's rate (batch means), and it stops once every interval is within the
+ * tolerance, or at the maximum rolls.</p>
+ *
+ * <p>Rolling runs the table's conditions and functions off the server thread, against the live world. Only
+ * tables made of vanilla parts known not to touch the world are rolled on several threads; the others (mod
+ * functions, exploration maps) are rolled one chunk at a time on a single thread, still next to the server
+ * thread. A mod function that isn't safe even then fails or returns wrong drops: the first failure of a
+ * simulation is logged, and the simulation stops with what it rolled so far.</p>
+ */
+public final class LootSimulation {
+    private static final int ROLLS_PER_CHUNK = 50;
+
+    // Rolls before convergence is checked, so that uncommon items had a chance to show up
+    private static final int MIN_ROLLS = 500;
+
+    // Half-width of the 95% interval, in standard errors
+    private static final double Z_95 = 1.96;
+
+    // Intervals below this are converged whatever the rate (0.1 percentage point)
+    private static final double MIN_INTERVAL = 0.001;
+
+    private static ThreadPoolExecutor workers;
+    private static ThreadPoolExecutor serialWorker;
+
+    private final int maxRolls;
+    private final double tolerance;
+
+    // What the chunks roll, null for finished simulations
+    private final WorldServer world;
+    private final ResourceLocation tableId;
+    private final LootTable table;
+    private final List<LootPool> pools;
+    private final EntityPlayer player;
+    private final boolean concurrent;
+    private final SplittableRandom seeds = new SplittableRandom();
+
+    // Item key -> aggregated drops, guarded by itself
+    private final Map<String, LootItem> items = new HashMap<>();
+
+    // Item key -> sum and sum of squares of the per-roll drop counts of each chunk
+    private final Map<String, double[]> batches = new HashMap<>();
+    private int batchCount = 0;
+    private int rolls = 0;
+    private int submittedRolls = 0;
+    private int pendingChunks = 0;
+    private volatile boolean cancelled = false;
+    private volatile boolean failed = false;
+
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private LootSimulation(int maxRolls, double tolerance, WorldServer world, ResourceLocation tableId, LootTable table,
+            List<LootPool> pools, EntityPlayer player, boolean concurrent) {
+        this.maxRolls = maxRolls;
+        this.tolerance = tolerance;
+        this.world = world;
+        this.tableId = tableId;
+        this.table = table;
+        this.pools = pools;
+        this.player = player;
+        this.concurrent = concurrent;
+    }
+
+    /**
+     * Start simulating a loot table in the background.
+     * @param pools The pools to roll, or null for the whole table
+     * @param concurrent Whether the pools can be rolled on several threads at once, else they are rolled on a
+     *                   single thread shared by all the simulations
+     * @param exactItems Items with exactly computed rates, the simulated drops are added to them
+     * @param maxRolls Rolls after which the simulation stops even if it didn't converge, 0 to not simulate
+     * @param tolerance Relative half-width of the rates' 95% intervals to reach
+     */
+    static LootSimulation start(WorldServer world, ResourceLocation tableId, LootTable table, List<LootPool> pools,
+            boolean concurrent, Collection<LootItem> exactItems, EntityPlayer player, int maxRolls, double tolerance) {
+        // Batch means need batches of the same size
+        int chunks = (maxRolls + ROLLS_PER_CHUNK - 1) / ROLLS_PER_CHUNK;
+        LootSimulation simulation = new LootSimulation(chunks * ROLLS_PER_CHUNK, tolerance, world, tableId, table, pools,
+            player, concurrent);
+        for (LootItem item : exactItems) simulation.items.put(LootTableResolver.getItemKey(item.stack), new LootItem(item));
+
+        if (chunks == 0) {
+            simulation.done.complete(null);
+            return simulation;
+        }
+
+        // Enough chunks to keep the workers busy, but no more than convergence is first checked at: each finished
+        // chunk then submits the next one only while the rates haven't converged
+        int workerCount = concurrent ? getWorkers().getMaximumPoolSize() : 1;
+        int initialChunks = Math.min(MIN_ROLLS / ROLLS_PER_CHUNK, 2 * workerCount);
+        synchronized (simulation.items) {
+            for (int i = 0; i < initialChunks && simulation.submittedRolls < simulation.maxRolls; i++) simulation.submitChunk();
+        }
+
+        return simulation;
+    }
+
+    /**
+     * A simulation whose results are already known (e.g. the reflection fallback).
+     */
+    static LootSimulation completed(List<LootItem> results, int rolls) {
+        LootSimulation simulation = new LootSimulation(rolls, 0, null, null, null, null, null, false);
+        for (LootItem item : results) simulation.items.put(LootTableResolver.getItemKey(item.stack), item);
+        simulation.rolls = rolls;
+        simulation.done.complete(null);
+
+        return simulation;
+    }
+
+    // Called with the items lock held
+    private void submitChunk() {
+        long seed = seeds.nextLong();
+        pendingChunks++;
+        submittedRolls += ROLLS_PER_CHUNK;
+
+        (concurrent ? getWorkers() : getSerialWorker()).execute(() -> runChunk(new Random(seed)));
+    }
+
+    private void runChunk(Random random) {
+        try {
+            if (cancelled) return;
+
+            Map<String, LootItem> chunkItems = new HashMap<>();
+            LootTableResolver.rollLoot(world, table, pools, player, random, ROLLS_PER_CHUNK, chunkItems);
+
+            synchronized (items) {
+                for (Map.Entry<String, LootItem> entry : chunkItems.entrySet()) {
+                    LootItem existing = items.get(entry.getKey());
+                    if (existing != null) {
+                        existing.dropCount += entry.getValue().dropCount;
+                    } else {
+                        items.put(entry.getKey(), entry.getValue());
+                    }
+
+                    double batchMean = (double) entry.getValue().dropCount / ROLLS_PER_CHUNK;
+                    double[] batch = batches.computeIfAbsent(entry.getKey(), k -> new double[2]);
+                    batch[0] += batchMean;
+                    batch[1] += batchMean * batchMean;
+                }
+                batchCount++;
+                rolls += ROLLS_PER_CHUNK;
+            }
+        } catch (RuntimeException e) {
+            // Mod loot functions may not expect to run here, keep what the other chunks rolled
+            boolean first;
+            synchronized (items) {
+                first = !failed;
+                failed = true;
+            }
+            if (first) SimpleStructureScanner.LOGGER.warn("Loot simulation of {} failed, its drop rates are partial", tableId, e);
+        } finally {
+            boolean last;
+            synchronized (items) {
+                pendingChunks--;
+                if (!cancelled && !failed && submittedRolls < maxRolls && !isConverged()) submitChunk();
+                last = pendingChunks == 0;
+            }
+            if (last) done.complete(null);
+        }
+    }
+
+    // Called with the items lock held
+    private boolean isConverged() {
+        if (rolls < MIN_ROLLS || batchCount < 2) return false;
+
+        for (double[] batch : batches.values()) {
+            double mean = batch[0] / batchCount;
+            if (getInterval(batch) > Math.max(tolerance * mean, MIN_INTERVAL)) return false;
+        }
+
+        return true;
+    }
+
+    // Half-width of the 95% interval of an item's rate, from the spread of the chunk means
+    private double getInterval(double[] batch) {
+        double mean = batch[0] / batchCount;
+        double variance = Math.max(0, (batch[1] - batchCount * mean * mean) / (batchCount - 1));
+
+        return Z_95 * Math.sqrt(variance / batchCount);
+    }
+
+    /**
+     * Rolls merged so far, the drop counts are relative to it.
+     */
+    public int getRolls() {
+        synchronized (items) {
+            return rolls;
+        }
+    }
+
+    /**
+     * Rolls the simulation stops at if it doesn't converge before.
+     */
+    public int getMaxRolls() {
+        return maxRolls;
+    }
+
+    public boolean isDone() {
+        return done.isDone();
+    }
+
+    /**
+     * Whether the simulation ended with all its chunks rolled, so its results can be reused.
+     */
+    public boolean isComplete() {
+        return isDone() && !cancelled && !failed;
+    }
+
+    /**
+     * Run an action once the simulation ends, on the thread that ends it (or now if it already ended).
+     */
+    void whenDone(Runnable action) {
+        done.thenRun(action);
+    }
+
+    /**
+     * Stop the chunks that didn't start yet, the results stay as they are.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Snapshot of the items dropped so far, most dropped first, with the intervals of their rates.
+     */
+    public List<LootItem> getItems() {
+        return getSnapshot().items;
+    }
+
+    /**
+     * Snapshot of the items dropped so far with the rolls their drop counts are relative to, read together.
+     */
+    public Snapshot getSnapshot() {
+        List<LootItem> result = new ArrayList<>();
+        int sampled;
+        synchronized (items) {
+            for (Map.Entry<String, LootItem> entry : items.entrySet()) {
+                LootItem item = new LootItem(entry.getValue());
+
+                // Items only from exactly computed pools never dropped in a simulated one
+                if (world != null) {
+                    double[] batch = batches.get(entry.getKey());
+                    if (batch != null && batchCount >= 2) {
+                        item.interval = getInterval(batch);
+                    } else if (batch == null && (batchCount >= 2 || maxRolls == 0)) {
+                        item.interval = 0;
+                    }
+                }
+
+                result.add(item);
+            }
+            sampled = rolls;
+        }
+
+        result.sort((a, b) -> Double.compare(b.getExpectedCount(sampled), a.getExpectedCount(sampled)));
+
+        return new Snapshot(result, sampled);
+    }
+
+    /**
+     * Wait for the simulation to end.
+     * @return The final items, most dropped first
+     */
+    public List<LootItem> join() {
+        done.join();
+
+        return getItems();
+    }
+
+    /**
+     * Items of a simulation, most dropped first, and the rolls their drop counts are relative to.
+     */
+    public static final class Snapshot {
+        public final List<LootItem> items;
+        public final int rolls;
+
+        Snapshot(List<LootItem> items, int rolls) {
+            this.items = items;
+            this.rolls = rolls;
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getWorkers() {
+        if (workers == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            workers = createWorkers("Loot Simulation #", threads);
+        }
+
+        return workers;
+    }
+
+    // Tables that aren't safe to roll concurrently are never rolled by two threads at once
+    private static synchronized ThreadPoolExecutor getSerialWorker() {
+        if (serialWorker == null) serialWorker = createWorkers("Loot Simulation (serial) #", 1);
+
+        return serialWorker;
+    }
+
+    private static ThreadPoolExecutor createWorkers(String name, int threads) {
+        AtomicInteger threadId = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, name + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+}
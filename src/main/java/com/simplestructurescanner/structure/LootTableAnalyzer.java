@@ -0,0 +1,609 @@
+package com.simplestructurescanner.structure;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.storage.loot.LootContext;
+import net.minecraft.world.storage.loot.LootEntry;
+import net.minecraft.world.storage.loot.LootEntryEmpty;
+import net.minecraft.world.storage.loot.LootEntryItem;
+import net.minecraft.world.storage.loot.LootEntryTable;
+import net.minecraft.world.storage.loot.LootPool;
+import net.minecraft.world.storage.loot.LootTable;
+import net.minecraft.world.storage.loot.RandomValueRange;
+import net.minecraft.world.storage.loot.conditions.KilledByPlayer;
+import net.minecraft.world.storage.loot.conditions.LootCondition;
+import net.minecraft.world.storage.loot.conditions.RandomChance;
+import net.minecraft.world.storage.loot.conditions.RandomChanceWithLooting;
+import net.minecraft.world.storage.loot.functions.EnchantRandomly;
+import net.minecraft.world.storage.loot.functions.EnchantWithLevels;
+import net.minecraft.world.storage.loot.functions.LootFunction;
+import net.minecraft.world.storage.loot.functions.LootingEnchantBonus;
+import net.minecraft.world.storage.loot.functions.SetAttributes;
+import net.minecraft.world.storage.loot.functions.SetCount;
+import net.minecraft.world.storage.loot.functions.SetDamage;
+import net.minecraft.world.storage.loot.functions.SetMetadata;
+import net.minecraft.world.storage.loot.functions.SetNBT;
+import net.minecraft.world.storage.loot.functions.Smelt;
+
+import com.simplestructurescanner.SimpleStructureScanner;
+import com.simplestructurescanner.structure.LootTableResolver.LootItem;
+
+
+/**
+ * Computes exact drop rates of loot pools from their rolls, entry weights, conditions and functions.
+ *
+ * <p>With the context the simulation uses (luck 0, no killer), the random parts of most vanilla pools are
+ * uniform integer ranges (pool rolls, set_count, set_data) and random_chance conditions, whose expected counts
+ * and probabilities follow from the weights directly. Functions that only change NBT or durability
+ * (enchantments, attributes, set_nbt) don't change how items are grouped, they're applied once to get the
+ * displayed stack.</p>
+ *
+ * <p>Pools using anything else (mod entries, conditions or functions) are left to the simulation. Pools are
+ * independent of each other, so the expected counts of analysed and simulated pools just add up.</p>
+ */
+final class LootTableAnalyzer {
+    // Bounds of what is enumerated, beyond them the pool is simulated
+    private static final int MAX_RANDOM_ENTRIES = 10;
+    private static final int MAX_RANGE_VALUES = 4096;
+    private static final int MAX_VARIANTS = 64;
+    private static final int MAX_TABLE_DEPTH = 8;
+
+    // Vanilla conditions and functions that only read their own fields, the stack and the random in this context,
+    // matched by exact class so that mod subclasses aren't trusted
+    private static final Set<Class<?>> THREAD_SAFE_CONDITIONS = new HashSet<>(Arrays.asList(
+        RandomChance.class, RandomChanceWithLooting.class, KilledByPlayer.class));
+    private static final Set<Class<?>> THREAD_SAFE_FUNCTIONS = new HashSet<>(Arrays.asList(
+        SetCount.class, SetMetadata.class, SetDamage.class, SetNBT.class, SetAttributes.class, EnchantRandomly.class,
+        EnchantWithLevels.class, LootingEnchantBonus.class, Smelt.class));
+
+    private static Field poolConditionsField;
+    private static Field entryConditionsField;
+    private static Field entryFunctionsField;
+    private static Field entryTableField;
+    private static Field randomChanceField;
+    private static Field randomChanceWithLootingField;
+    private static Field killedByPlayerInverseField;
+    private static Field setCountRangeField;
+    private static Field setMetadataRangeField;
+    private static boolean reflectionInitialized = false;
+
+    private final WorldServer world;
+    private final LootContext context;
+    private final boolean hasPlayer;
+    private final Set<ResourceLocation> visiting = new HashSet<>();
+
+    /**
+     * Drop rates of a loot table's analysed pools, and the pools left to simulate.
+     */
+    static final class Analysis {
+        // Item key -> expected count per roll of the table, with the chance to drop if every pool was analysed
+        final Map<String, LootItem> items;
+        final List<LootPool> simulatedPools;
+
+        Analysis(Map<String, LootItem> items, List<LootPool> simulatedPools) {
+            this.items = items;
+            this.simulatedPools = simulatedPools;
+        }
+    }
+
+    private LootTableAnalyzer(WorldServer world, EntityPlayer player) {
+        this.world = world;
+        this.hasPlayer = player != null;
+
+        LootContext.Builder builder = new LootContext.Builder(world);
+        if (player != null) builder.withPlayer(player);
+        builder.withLuck(0);
+        this.context = builder.build();
+    }
+
+    /**
+     * Analyse a loot table, with the same context as the simulation.
+     * @return The analysis, or null if the loot tables can't be read (everything must then be simulated)
+     */
+    @Nullable
+    static Analysis analyze(WorldServer world, LootTable table, EntityPlayer player) {
+        LootTableResolver.initReflection();
+        initReflection();
+        if (!LootTableResolver.isAvailable()) return null;
+
+        return new LootTableAnalyzer(world, player).analyzeRoot(table);
+    }
+
+    private Analysis analyzeRoot(LootTable table) {
+        Map<String, Odds> odds = new LinkedHashMap<>();
+        List<LootPool> simulatedPools = new ArrayList<>();
+
+        for (LootPool pool : LootTableResolver.getPools(table)) {
+            Map<String, Odds> poolOdds = analyzePool(pool);
+            if (poolOdds == null) {
+                simulatedPools.add(pool);
+                continue;
+            }
+
+            merge(odds, poolOdds);
+        }
+
+        Map<String, LootItem> items = new LinkedHashMap<>();
+        for (Map.Entry<String, Odds> entry : odds.entrySet()) {
+            Odds itemOdds = entry.getValue();
+            if (itemOdds.expected <= 0) continue;
+
+            LootItem item = new LootItem(itemOdds.stack, 0);
+            item.exactCount = itemOdds.expected;
+
+            // Simulated pools may drop it too
+            if (simulatedPools.isEmpty()) item.chance = 1 - itemOdds.none;
+
+            items.put(entry.getKey(), item);
+        }
+
+        return new Analysis(items, simulatedPools);
+    }
+
+    /**
+     * Expected counts and chances of not dropping of every pool of a table.
+     * @return Null if a pool can't be analysed
+     */
+    @Nullable
+    private Map<String, Odds> analyzeTable(LootTable table) {
+        Map<String, Odds> odds = new LinkedHashMap<>();
+
+        for (LootPool pool : LootTableResolver.getPools(table)) {
+            Map<String, Odds> poolOdds = analyzePool(pool);
+            if (poolOdds == null) return null;
+
+            merge(odds, poolOdds);
+        }
+
+        return odds;
+    }
+
+    /**
+     * Pools are independent: expected counts add up, chances of not dropping multiply.
+     */
+    private static void merge(Map<String, Odds> into, Map<String, Odds> odds) {
+        for (Map.Entry<String, Odds> entry : odds.entrySet()) {
+            Odds existing = into.get(entry.getKey());
+            if (existing == null) {
+                into.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+
+            existing.expected += entry.getValue().expected;
+            existing.none *= entry.getValue().none;
+        }
+    }
+
+    @Nullable
+    private Map<String, Odds> analyzePool(LootPool pool) {
+        LootCondition[] poolConditions = getPoolConditions(pool);
+        if (poolConditions == null) return null;
+
+        double poolChance = conditionsChance(poolConditions);
+        if (Double.isNaN(poolChance)) return null;
+
+        // Bonus rolls are scaled by luck, which is 0
+        RandomValueRange rolls = pool.getRolls();
+        int minRolls = MathHelper.floor(rolls.getMin());
+        int maxRolls = Math.max(minRolls, MathHelper.floor(rolls.getMax()));
+        if ((long) maxRolls - minRolls >= MAX_RANGE_VALUES) return null;
+
+        // Entries always eligible, and entries eligible by chance
+        List<LootEntry> certain = new ArrayList<>();
+        List<LootEntry> random = new ArrayList<>();
+        List<Double> randomChances = new ArrayList<>();
+        Map<LootEntry, Map<String, Odds>> outcomes = new LinkedHashMap<>();
+
+        for (LootEntry entry : LootTableResolver.getEntries(pool)) {
+            LootCondition[] conditions = getEntryConditions(entry);
+            if (conditions == null) return null;
+
+            double chance = conditionsChance(conditions);
+            if (Double.isNaN(chance)) return null;
+            if (chance <= 0 || entry.getEffectiveWeight(0) <= 0) continue;
+
+            Map<String, Odds> outcome = analyzeEntry(entry);
+            if (outcome == null) return null;
+            outcomes.put(entry, outcome);
+
+            if (chance >= 1) {
+                certain.add(entry);
+            } else {
+                random.add(entry);
+                randomChances.add(chance);
+            }
+        }
+
+        if (random.size() > MAX_RANDOM_ENTRIES) return null;
+
+        // Odds of a single roll, over every combination of the entries eligible by chance
+        Map<String, Odds> roll = new LinkedHashMap<>();
+        int certainWeight = 0;
+        for (LootEntry entry : certain) certainWeight += entry.getEffectiveWeight(0);
+
+        for (int mask = 0; mask < 1 << random.size(); mask++) {
+            double maskChance = 1;
+            int totalWeight = certainWeight;
+            for (int i = 0; i < random.size(); i++) {
+                boolean eligible = (mask & 1 << i) != 0;
+                maskChance *= eligible ? randomChances.get(i) : 1 - randomChances.get(i);
+                if (eligible) totalWeight += random.get(i).getEffectiveWeight(0);
+            }
+
+            if (maskChance <= 0 || totalWeight == 0) continue;
+
+            for (LootEntry entry : certain) addPick(roll, outcomes.get(entry), maskChance * entry.getEffectiveWeight(0) / totalWeight);
+            for (int i = 0; i < random.size(); i++) {
+                if ((mask & 1 << i) == 0) continue;
+
+                LootEntry entry = random.get(i);
+                addPick(roll, outcomes.get(entry), maskChance * entry.getEffectiveWeight(0) / totalWeight);
+            }
+        }
+
+        // Rolls are independent, their count is uniform over the range
+        int rollValues = maxRolls - minRolls + 1;
+        double meanRolls = 0;
+        for (int n = minRolls; n <= maxRolls; n++) meanRolls += Math.max(n, 0);
+        meanRolls /= rollValues;
+
+        Map<String, Odds> odds = new LinkedHashMap<>();
+        for (Map.Entry<String, Odds> entry : roll.entrySet()) {
+            Odds rollOdds = entry.getValue();
+
+            double noneInRolls = 0;
+            for (int n = minRolls; n <= maxRolls; n++) noneInRolls += Math.pow(1 - rollOdds.chance, Math.max(n, 0));
+            noneInRolls /= rollValues;
+
+            Odds poolOdds = new Odds(rollOdds.stack);
+            poolOdds.expected = poolChance * meanRolls * rollOdds.expected;
+            poolOdds.none = 1 - poolChance + poolChance * noneInRolls;
+            odds.put(entry.getKey(), poolOdds);
+        }
+
+        return odds;
+    }
+
+    private static void addPick(Map<String, Odds> roll, Map<String, Odds> outcome, double pickChance) {
+        for (Map.Entry<String, Odds> entry : outcome.entrySet()) {
+            Odds odds = roll.computeIfAbsent(entry.getKey(), k -> new Odds(entry.getValue().stack));
+            odds.expected += pickChance * entry.getValue().expected;
+            odds.chance += pickChance * entry.getValue().chance;
+        }
+    }
+
+    /**
+     * Odds of the items an entry drops when it's picked.
+     * @return Null if the entry can't be analysed
+     */
+    @Nullable
+    private Map<String, Odds> analyzeEntry(LootEntry entry) {
+        if (entry instanceof LootEntryEmpty) return new LinkedHashMap<>();
+        if (entry instanceof LootEntryItem) return analyzeItem((LootEntryItem) entry);
+        if (!(entry instanceof LootEntryTable)) return null;
+
+        ResourceLocation tableId = getTable((LootEntryTable) entry);
+        if (tableId == null || visiting.size() >= MAX_TABLE_DEPTH || !visiting.add(tableId)) return null;
+
+        try {
+            LootTable table = world.getLootTableManager().getLootTableFromLocation(tableId);
+            Map<String, Odds> tableOdds = table == null ? new LinkedHashMap<>() : analyzeTable(table);
+            if (tableOdds == null) return null;
+
+            for (Odds odds : tableOdds.values()) odds.chance = 1 - odds.none;
+
+            return tableOdds;
+        } finally {
+            visiting.remove(tableId);
+        }
+    }
+
+    @Nullable
+    private Map<String, Odds> analyzeItem(LootEntryItem entry) {
+        Item item = LootTableResolver.getItem(entry);
+        LootFunction[] functions = getEntryFunctions(entry);
+        if (item == null || functions == null) return null;
+
+        // Possible stacks, by metadata, and their probabilities
+        List<ItemStack> variants = new ArrayList<>();
+        List<Double> variantChances = new ArrayList<>();
+        variants.add(new ItemStack(item));
+        variantChances.add(1.0);
+
+        int minCount = 1;
+        int maxCount = 1;
+
+        // Functions only change NBT here, a fixed seed gives a stable displayed stack
+        Random random = new Random(0);
+
+        for (LootFunction function : functions) {
+            double chance = conditionsChance(function.getConditions());
+            if (Double.isNaN(chance) || (chance > 0 && chance < 1)) return null;
+            if (chance <= 0) continue;
+
+            if (function instanceof SetCount) {
+                RandomValueRange range = getRange(setCountRangeField, function);
+                if (range == null) return null;
+
+                minCount = MathHelper.floor(range.getMin());
+                maxCount = Math.max(minCount, MathHelper.floor(range.getMax()));
+                if ((long) maxCount - minCount >= MAX_RANGE_VALUES) return null;
+            } else if (function instanceof SetMetadata) {
+                RandomValueRange range = getRange(setMetadataRangeField, function);
+                if (range == null) return null;
+
+                int minMeta = MathHelper.floor(range.getMin());
+                int maxMeta = Math.max(minMeta, MathHelper.floor(range.getMax()));
+                if ((long) (maxMeta - minMeta + 1) * variants.size() > MAX_VARIANTS) return null;
+
+                List<ItemStack> expanded = new ArrayList<>();
+                List<Double> expandedChances = new ArrayList<>();
+                for (int i = 0; i < variants.size(); i++) {
+                    for (int meta = minMeta; meta <= maxMeta; meta++) {
+                        ItemStack stack = variants.get(i).copy();
+                        stack.setItemDamage(meta);
+                        expanded.add(stack);
+                        expandedChances.add(variantChances.get(i) / (maxMeta - minMeta + 1));
+                    }
+                }
+
+                variants = expanded;
+                variantChances = expandedChances;
+            } else if (isNbtFunction(function)) {
+                for (int i = 0; i < variants.size(); i++) variants.set(i, function.apply(variants.get(i), random, context));
+            } else {
+                return null;
+            }
+        }
+
+        // Stacks with no items are not dropped
+        double countChance = 0;
+        double expectedCount = 0;
+        for (int count = minCount; count <= maxCount; count++) {
+            if (count <= 0) continue;
+
+            countChance++;
+            expectedCount += count;
+        }
+        countChance /= maxCount - minCount + 1;
+        expectedCount /= maxCount - minCount + 1;
+
+        Map<String, Odds> odds = new LinkedHashMap<>();
+        for (int i = 0; i < variants.size(); i++) {
+            ItemStack stack = variants.get(i);
+            if (stack.isEmpty()) continue;
+
+            Odds variantOdds = odds.computeIfAbsent(LootTableResolver.getItemKey(stack), k -> new Odds(stack));
+            variantOdds.expected += variantChances.get(i) * expectedCount;
+            variantOdds.chance += variantChances.get(i) * countChance;
+        }
+
+        return odds;
+    }
+
+    /**
+     * Functions that don't change the item, its metadata or its count in this context (no killer, so no looting).
+     * Enchanting a book does turn it into an enchanted book, whatever the enchantments.
+     */
+    private static boolean isNbtFunction(LootFunction function) {
+        return function instanceof SetNBT || function instanceof SetDamage || function instanceof SetAttributes
+            || function instanceof EnchantRandomly || function instanceof EnchantWithLevels
+            || function instanceof LootingEnchantBonus;
+    }
+
+    /**
+     * Probability that all the conditions pass.
+     * @return NaN if a condition can't be analysed
+     */
+    private double conditionsChance(LootCondition[] conditions) {
+        double chance = 1;
+
+        for (LootCondition condition : conditions) {
+            if (condition instanceof RandomChance) {
+                chance *= clamp(getFloat(randomChanceField, condition));
+            } else if (condition instanceof RandomChanceWithLooting) {
+                // No killer, so no looting bonus
+                chance *= clamp(getFloat(randomChanceWithLootingField, condition));
+            } else if (condition instanceof KilledByPlayer) {
+                Boolean inverse = getBoolean(killedByPlayerInverseField, condition);
+                if (inverse == null) return Double.NaN;
+
+                if (hasPlayer == inverse) return 0;
+            } else {
+                return Double.NaN;
+            }
+        }
+
+        return chance;
+    }
+
+    private static double clamp(float chance) {
+        return Float.isNaN(chance) ? Double.NaN : MathHelper.clamp(chance, 0.0, 1.0);
+    }
+
+    /**
+     * Aggregated odds of an item: expected count, chance to drop for a single pick or roll, chance of not
+     * dropping for a pool or table.
+     */
+    private static final class Odds {
+        final ItemStack stack;
+        double expected = 0;
+        double chance = 0;
+        double none = 1;
+
+        Odds(ItemStack stack) {
+            this.stack = stack;
+        }
+    }
+
+    // ========== Thread safety ==========
+
+    /**
+     * Whether pools only use vanilla entries, conditions and functions that don't touch the world, so several
+     * threads can roll them next to the server thread. Anything else (mod classes, exploration maps searching
+     * the world for a structure) must be rolled on a single thread.
+     * Nested tables are loaded here, so that the rolls don't load them from the workers.
+     */
+    static boolean canRollConcurrently(WorldServer world, List<LootPool> pools) {
+        LootTableResolver.initReflection();
+        initReflection();
+        if (!LootTableResolver.isAvailable()) return false;
+
+        return arePoolsThreadSafe(world, pools, new HashSet<>());
+    }
+
+    private static boolean arePoolsThreadSafe(WorldServer world, List<LootPool> pools, Set<ResourceLocation> visited) {
+        for (LootPool pool : pools) {
+            if (!areThreadSafe(getPoolConditions(pool))) return false;
+
+            for (LootEntry entry : LootTableResolver.getEntries(pool)) {
+                if (!areThreadSafe(getEntryConditions(entry))) return false;
+
+                if (entry.getClass() == LootEntryItem.class) {
+                    LootFunction[] functions = getEntryFunctions((LootEntryItem) entry);
+                    if (functions == null) return false;
+
+                    for (LootFunction function : functions) {
+                        if (!THREAD_SAFE_FUNCTIONS.contains(function.getClass())) return false;
+                        if (!areThreadSafe(function.getConditions())) return false;
+                    }
+                } else if (entry.getClass() == LootEntryTable.class) {
+                    ResourceLocation tableId = getTable((LootEntryTable) entry);
+                    if (tableId == null) return false;
+
+                    // Already checked, or a cycle the rolls never get out of anyway
+                    if (!visited.add(tableId)) continue;
+
+                    LootTable table = world.getLootTableManager().getLootTableFromLocation(tableId);
+                    if (table != null && !arePoolsThreadSafe(world, LootTableResolver.getPools(table), visited)) return false;
+                } else if (entry.getClass() != LootEntryEmpty.class) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean areThreadSafe(@Nullable LootCondition[] conditions) {
+        if (conditions == null) return false;
+
+        for (LootCondition condition : conditions) {
+            if (!THREAD_SAFE_CONDITIONS.contains(condition.getClass())) return false;
+        }
+
+        return true;
+    }
+
+    // ========== Reflection ==========
+
+    private static synchronized void initReflection() {
+        if (reflectionInitialized) return;
+        reflectionInitialized = true;
+
+        poolConditionsField = findField(LootPool.class, "poolConditions", "field_186454_b");
+        entryConditionsField = findField(LootEntry.class, "conditions", "field_186366_e");
+        entryFunctionsField = findField(LootEntryItem.class, "functions", "field_186370_b");
+        entryTableField = findField(LootEntryTable.class, "table", "field_186371_a");
+        randomChanceField = findField(RandomChance.class, "randomChance", "field_186630_a");
+        randomChanceWithLootingField = findField(RandomChanceWithLooting.class, "chance", "field_186627_a");
+        killedByPlayerInverseField = findField(KilledByPlayer.class, "inverse", "field_186620_a");
+        setCountRangeField = findField(SetCount.class, "countRange", "field_186568_a");
+        setMetadataRangeField = findField(SetMetadata.class, "metaRange", "field_186573_b");
+    }
+
+    @Nullable
+    static Field findField(Class<?> owner, String name, String srgName) {
+        try {
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            try {
+                Field field = owner.getDeclaredField(srgName);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e2) {
+                // What uses it is simulated instead
+                SimpleStructureScanner.LOGGER.debug("Loot analysis can't access {}.{}", owner.getSimpleName(), name);
+                return null;
+            }
+        }
+    }
+
+    @Nullable
+    private static Object get(Field field, Object owner) {
+        if (field == null) return null;
+
+        try {
+            return field.get(owner);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static LootCondition[] getPoolConditions(LootPool pool) {
+        Object conditions = get(poolConditionsField, pool);
+        if (conditions instanceof List) return ((List<?>) conditions).toArray(new LootCondition[0]);
+
+        return conditions instanceof LootCondition[] ? (LootCondition[]) conditions : null;
+    }
+
+    @Nullable
+    private static LootCondition[] getEntryConditions(LootEntry entry) {
+        Object conditions = get(entryConditionsField, entry);
+
+        return conditions instanceof LootCondition[] ? (LootCondition[]) conditions : null;
+    }
+
+    @Nullable
+    private static LootFunction[] getEntryFunctions(LootEntryItem entry) {
+        Object functions = get(entryFunctionsField, entry);
+
+        return functions instanceof LootFunction[] ? (LootFunction[]) functions : null;
+    }
+
+    @Nullable
+    private static ResourceLocation getTable(LootEntryTable entry) {
+        Object table = get(entryTableField, entry);
+
+        return table instanceof ResourceLocation ? (ResourceLocation) table : null;
+    }
+
+    @Nullable
+    private static RandomValueRange getRange(Field field, LootFunction function) {
+        Object range = get(field, function);
+
+        return range instanceof RandomValueRange ? (RandomValueRange) range : null;
+    }
+
+    private static float getFloat(Field field, Object owner) {
+        Object value = get(field, owner);
+
+        return value instanceof Float ? (Float) value : Float.NaN;
+    }
+
+    @Nullable
+    private static Boolean getBoolean(Field field, Object owner) {
+        Object value = get(field, owner);
+
+        return value instanceof Boolean ? (Boolean) value : null;
+    }
+}
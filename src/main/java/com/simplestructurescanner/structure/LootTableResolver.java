@@ -23,15 +23,17 @@ import net.minecraft.world.storage.loot.LootTable;
 import net.minecraft.world.storage.loot.LootTableManager;
 
 import com.simplestructurescanner.SimpleStructureScanner;
+import com.simplestructurescanner.config.ModConfig;
 
 
 /**
  * Utility class to resolve loot table contents.
- * Simulates loot generation to get accurate item drops with mod support.
+ * Computes exact drop rates where the pools allow it (see {@link LootTableAnalyzer}), and simulates loot generation
+ * for the rest to get accurate item drops with mod support, in the background (see {@link LootSimulation}).
  */
 public class LootTableResolver {
+    // Nominal rolls of the drop counts given without a simulation
     private static final int SIMULATION_COUNT = 1000;
-    private static final Random RANDOM = new Random();
 
     private static Field lootTablePoolsField;
     private static Field lootPoolEntriesField;
@@ -84,7 +86,7 @@ public class LootTableResolver {
         "enderio.darksteel.upgrade.",   // EIO upgrade
     };
 
-    private static void initReflection() {
+    static void initReflection() {
         if (reflectionInitialized) return;
         reflectionInitialized = true;
 
@@ -121,50 +123,171 @@ public class LootTableResolver {
         public final ItemStack stack;
         public int dropCount;
 
+        // Expected count per roll from the analysed pools, on top of the simulated drops
+        double exactCount = 0;
+
+        // Chance to drop at least one, NaN unless every pool was analysed
+        double chance = Double.NaN;
+
+        // Half-width of the 95% interval of the expected count, NaN if unknown
+        double interval = Double.NaN;
+
         public LootItem(ItemStack stack, int dropCount) {
             // Store a normalized copy for cleaner display
             this.stack = normalizeForDisplay(stack);
             this.dropCount = dropCount;
         }
 
+        LootItem(LootItem other) {
+            this.stack = other.stack;
+            this.dropCount = other.dropCount;
+            this.exactCount = other.exactCount;
+            this.chance = other.chance;
+            this.interval = other.interval;
+        }
+
+        /**
+         * Expected count per roll of the loot table.
+         * @param simulationCount Rolls the drop count was simulated over
+         */
+        public double getExpectedCount(int simulationCount) {
+            if (simulationCount <= 0) return exactCount;
+
+            return exactCount + (double) dropCount / simulationCount;
+        }
+
+        /**
+         * @return Whether the drop rate was computed exactly, without simulation
+         */
+        public boolean isExact() {
+            return !Double.isNaN(chance);
+        }
+
+        /**
+         * Exact chance to drop at least one, NaN if it was simulated.
+         */
+        public double getChance() {
+            return chance;
+        }
+
+        /**
+         * Half-width of the 95% confidence interval of the expected count, NaN if not known yet.
+         */
+        public double getInterval() {
+            return interval;
+        }
+
         public String formatDropRate(int simulationCount) {
-            double rate = (double) dropCount / simulationCount;
+            double rate = getExpectedCount(simulationCount);
 
             if (rate >= 1.0) return String.format("%.1f", rate);
 
+            return formatPercent(rate);
+        }
+
+        /**
+         * The expected count with its interval, e.g. "12% ±1.5%".
+         */
+        public String formatDropRateWithInterval(int simulationCount) {
+            String rate = formatDropRate(simulationCount);
+            if (Double.isNaN(interval) || interval == 0) return rate;
+
+            if (getExpectedCount(simulationCount) >= 1.0) return rate + String.format(" ±%.2f", interval);
+
+            return rate + " ±" + formatPercent(interval);
+        }
+
+        public static String formatPercent(double rate) {
+            // Rare items keep a digit instead of showing 0%
+            if (rate < 0.01) return String.format("%.1f%%", rate * 100);
+
             return String.format("%.0f%%", rate * 100);
         }
     }
 
     /**
-     * Resolve loot table items by simulating loot generation.
+     * Start simulating loot generation in the background.
      * This properly fires events for mod compatibility.
      *
-     * @param world The world (must be WorldServer for proper simulation)
+     * @param world The world (must be WorldServer for proper simulation, otherwise the items are read by reflection)
      * @param lootTableId The loot table to resolve
      * @param player Optional player for context (can be null)
-     * @return List of aggregated loot items with drop counts
+     * @return The running simulation, with drop counts relative to its rolls
      */
-    public static List<LootItem> resolveLootTableWithSimulation(World world, ResourceLocation lootTableId, EntityPlayer player) {
-        Map<String, LootItem> itemMap = new HashMap<>();
-
-        if (world == null || !(world instanceof WorldServer)) return resolveLootTableFallback(world, lootTableId);
+    public static LootSimulation simulateLootTable(World world, ResourceLocation lootTableId, EntityPlayer player) {
+        if (world == null || !(world instanceof WorldServer)) {
+            return LootSimulation.completed(resolveLootTableFallback(world, lootTableId), SIMULATION_COUNT);
+        }
 
         WorldServer worldServer = (WorldServer) world;
         LootTableManager manager = worldServer.getLootTableManager();
         LootTable table = manager.getLootTableFromLocation(lootTableId);
 
-        if (table == null || table == LootTable.EMPTY_LOOT_TABLE) return new ArrayList<>();
+        if (table == null || table == LootTable.EMPTY_LOOT_TABLE) return LootSimulation.completed(new ArrayList<>(), SIMULATION_COUNT);
+
+        // Looked up after the table, loading it drops outdated results
+        LootSimulation cached = LootResolutionCache.get(worldServer, lootTableId);
+        if (cached != null) return cached;
+
+        // Workers only read the mod item classes
+        initModItemChecks();
+
+        // Only the pools that can't be computed exactly are simulated
+        LootTableAnalyzer.Analysis analysis = LootTableAnalyzer.analyze(worldServer, table, player);
+        int maxRolls = ModConfig.getClientLootSimulationMaxRolls();
+        double tolerance = ModConfig.getClientLootSimulationTolerance() / 100.0;
+        LootSimulation simulation;
+        if (analysis == null) {
+            simulation = LootSimulation.start(worldServer, lootTableId, table, null, false, new ArrayList<>(), player,
+                maxRolls, tolerance);
+        } else {
+            if (analysis.simulatedPools.isEmpty()) maxRolls = 0;
+            boolean concurrent = LootTableAnalyzer.canRollConcurrently(worldServer, analysis.simulatedPools);
+            simulation = LootSimulation.start(worldServer, lootTableId, table, analysis.simulatedPools, concurrent,
+                analysis.items.values(), player, maxRolls, tolerance);
+        }
+        LootResolutionCache.storeWhenDone(worldServer, lootTableId, table, simulation);
+
+        return simulation;
+    }
+
+    /**
+     * Resolve loot table items by simulating loot generation, waiting for the simulation to end.
+     *
+     * @param world The world (must be WorldServer for proper simulation)
+     * @param lootTableId The loot table to resolve
+     * @param player Optional player for context (can be null)
+     * @return List of aggregated loot items with drop counts
+     */
+    public static List<LootItem> resolveLootTableWithSimulation(World world, ResourceLocation lootTableId, EntityPlayer player) {
+        return simulateLootTable(world, lootTableId, player).join();
+    }
 
-        for (int i = 0; i < SIMULATION_COUNT; i++) {
-            LootContext.Builder builder = new LootContext.Builder(worldServer);
+    /**
+     * Roll a loot table, adding the drops to the given aggregates.
+     * @param pools The pools to roll, or null for the whole table
+     */
+    static void rollLoot(WorldServer world, LootTable table, List<LootPool> pools, EntityPlayer player, Random random,
+            int rolls, Map<String, LootItem> itemMap) {
+        for (int i = 0; i < rolls; i++) {
+            LootContext.Builder builder = new LootContext.Builder(world);
 
             if (player != null) builder.withPlayer(player);
 
             builder.withLuck(0);
             LootContext context = builder.build();
 
-            List<ItemStack> drops = table.generateLootForPools(RANDOM, context);
+            List<ItemStack> drops;
+            if (pools == null) {
+                drops = table.generateLootForPools(random, context);
+            } else {
+                // Same as the table does, with its guard against tables including themselves
+                drops = new ArrayList<>();
+                if (context.addLootTable(table)) {
+                    for (LootPool pool : pools) pool.generateLoot(drops, random, context);
+                    context.removeLootTable(table);
+                }
+            }
 
             for (ItemStack stack : drops) {
                 if (stack.isEmpty()) continue;
@@ -179,11 +302,6 @@ public class LootTableResolver {
                 }
             }
         }
-
-        List<LootItem> result = new ArrayList<>(itemMap.values());
-        result.sort((a, b) -> Integer.compare(b.dropCount, a.dropCount));
-
-        return result;
     }
 
     /**
@@ -234,7 +352,7 @@ public class LootTableResolver {
      * Get a normalized item key for aggregation purposes.
      * This unifies items by removing enchantments, damage values (for tools), and spell book specifics.
      */
-    private static String getItemKey(ItemStack stack) {
+    static String getItemKey(ItemStack stack) {
         Item item = stack.getItem();
         int meta = stack.getMetadata();
 
@@ -250,6 +368,13 @@ public class LootTableResolver {
         return item.getRegistryName() + "@" + meta;
     }
 
+    /**
+     * Look up the mod item classes now, so simulation workers only read them.
+     */
+    private static synchronized void initModItemChecks() {
+        isMetadataStrippedItem(Items.AIR);
+    }
+
     /**
      * Check if an item should have its metadata stripped for grouping.
      * This includes Wizardry spell books/scrolls and Tombstone scroll_buff.
@@ -348,7 +473,7 @@ public class LootTableResolver {
     }
 
     @SuppressWarnings("unchecked")
-    private static List<LootPool> getPools(LootTable table) {
+    static List<LootPool> getPools(LootTable table) {
         try {
             return (List<LootPool>) lootTablePoolsField.get(table);
         } catch (Exception e) {
@@ -357,7 +482,7 @@ public class LootTableResolver {
     }
 
     @SuppressWarnings("unchecked")
-    private static List<LootEntry> getEntries(LootPool pool) {
+    static List<LootEntry> getEntries(LootPool pool) {
         try {
             return (List<LootEntry>) lootPoolEntriesField.get(pool);
         } catch (Exception e) {
@@ -365,7 +490,7 @@ public class LootTableResolver {
         }
     }
 
-    private static Item getItem(LootEntryItem entry) {
+    static Item getItem(LootEntryItem entry) {
         try {
             return (Item) lootEntryItemField.get(entry);
         } catch (Exception e) {
@@ -381,7 +506,7 @@ public class LootTableResolver {
     }
 
     /**
-     * Get the simulation count used for drop rate calculation.
+     * Get the simulation count used for drop rates of pools that can't be computed exactly.
      */
     public static int getSimulationCount() {
         return SIMULATION_COUNT;
@@ -0,0 +1,94 @@
+package com.simplestructurescanner.structure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+
+/**
+ * Reads the structures of a type around a position nearest first, a few at a time.
+ *
+ * <p>Providers with ordered iteration are walked lazily with
+ * {@link StructureProviderRegistry#iterateByDistance(World, ResourceLocation, BlockPos)}: each read only evaluates
+ * the rings its results need, and the regions evaluated by other searches come from the position cache. Other
+ * providers with batch search are read through {@link ServerSearchCache}, whose results are nearest to the
+ * search tile's center first, so that every read continues where the previous one stopped.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+public final class NearestStructureCursor {
+    private final World world;
+    private final ResourceLocation structureId;
+    private final BlockPos origin;
+
+    // Null for providers without ordered iteration
+    @Nullable
+    private final Iterator<BlockPos> iterator;
+
+    private int read = 0;
+    private boolean exhausted = false;
+
+    public NearestStructureCursor(World world, ResourceLocation structureId, BlockPos origin) {
+        this.world = world;
+        this.structureId = structureId;
+        this.origin = origin;
+        this.iterator = StructureProviderRegistry.iterateByDistance(world, structureId, origin);
+    }
+
+    /**
+     * Read the next structures.
+     * @param count Maximum number of positions to read
+     * @return The positions, nearest to the origin first, or null if the provider doesn't support batch search
+     */
+    @Nullable
+    public List<BlockPos> next(int count) {
+        List<BlockPos> positions = new ArrayList<>(Math.min(count, 256));
+        if (exhausted || count <= 0) return positions;
+
+        if (iterator != null) {
+            while (positions.size() < count && iterator.hasNext()) positions.add(iterator.next());
+        } else {
+            List<BlockPos> found = ServerSearchCache.findAllNearby(world, structureId, origin, read + count);
+            if (found == null) return null;
+
+            if (found.size() > read) positions.addAll(found.subList(read, found.size()));
+            positions.sort(Comparator.comparingDouble(pos -> pos.distanceSq(origin)));
+        }
+
+        read += positions.size();
+        exhausted = positions.size() < count;
+
+        return positions;
+    }
+
+    /**
+     * Skip structures without keeping them (they are still searched).
+     * @return The number of positions skipped, fewer than asked if there are no more
+     */
+    public int skip(int count) {
+        List<BlockPos> skipped = next(count);
+
+        return skipped == null ? 0 : skipped.size();
+    }
+
+    /**
+     * Number of positions read or skipped so far.
+     */
+    public int getRead() {
+        return read;
+    }
+
+    /**
+     * Whether a read returned fewer positions than asked, so that there are no more.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+}
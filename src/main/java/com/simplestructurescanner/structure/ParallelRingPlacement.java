@@ -0,0 +1,177 @@
+package com.simplestructurescanner.structure;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.simplestructurescanner.SimpleStructureScanner;
+import com.simplestructurescanner.config.ModConfig;
+
+
+/**
+ * Seed-only placement of a search ring's cells (structure chunk per region, or per-chunk rolls),
+ * split over a shared ForkJoin pool when the ring is large enough.
+ *
+ * <p>Each cell's placement only depends on the seed and the cell, and every result is written at its cell's index,
+ * so the output is the same as the sequential loop whatever the thread count. Each task uses its own
+ * {@link RegionSeedEngine}.</p>
+ *
+ * <p>Only placement runs on the pool. Biome checks stay on the calling thread: GenLayers share the global
+ * IntCache, so running them on several threads corrupts results even with one BiomeProvider per thread.</p>
+ *
+ * <p>One instance per search, not thread-safe. The shared pool is only replaced (thread count changed in the
+ * config) or shut down (server stopped) once the searches using it finished their ring.</p>
+ */
+public final class ParallelRingPlacement {
+    /**
+     * Placement result for cells without a structure. Chunk Z = Integer.MIN_VALUE is far outside any world.
+     */
+    public static final long NO_CHUNK = Long.MIN_VALUE;
+
+    // Below this, forking costs more than it saves
+    private static final int MIN_PARALLEL_CELLS = 64;
+    private static final int CELLS_PER_TASK = 32;
+
+    // Guarded by the class
+    private static Workers workers;
+
+    /**
+     * Places the structure of a single cell.
+     */
+    @FunctionalInterface
+    public interface CellPlacer {
+        /**
+         * @param engine Engine owned by the calling task, to be reseeded for this cell
+         * @return Packed chunk of the structure in this cell (see {@link RegionSeedEngine#packChunk}), or {@link #NO_CHUNK}
+         */
+        long place(RegionSeedEngine engine, int cellX, int cellZ);
+    }
+
+    private final CellPlacer placer;
+    private final RegionSeedEngine localEngine = new RegionSeedEngine();
+    private long[] chunkBuffer = new long[8];
+
+    public ParallelRingPlacement(CellPlacer placer) {
+        this.placer = placer;
+    }
+
+    /**
+     * Place every cell of a ring.
+     * @param cells Packed cell coordinates, as passed to a {@link DistanceOrderedSearch.RingEvaluator}
+     * @return Reused array holding the placement of cells[i] at index i, for the first count entries
+     */
+    public long[] place(long[] cells, int count) {
+        if (chunkBuffer.length < count) chunkBuffer = new long[Math.max(count, chunkBuffer.length * 2)];
+
+        Workers ringWorkers = count >= MIN_PARALLEL_CELLS ? acquireWorkers() : null;
+        if (ringWorkers == null) {
+            placeRange(localEngine, cells, chunkBuffer, 0, count);
+        } else {
+            try {
+                ringWorkers.pool.invoke(new PlaceTask(cells, chunkBuffer, 0, count));
+            } finally {
+                releaseWorkers(ringWorkers);
+            }
+        }
+
+        return chunkBuffer;
+    }
+
+    /**
+     * Move the chunks that are not {@link #NO_CHUNK} to the start of the array, keeping their order.
+     * @return Number of chunks kept
+     */
+    public static int compact(long[] chunks, int count) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (chunks[i] != NO_CHUNK) chunks[kept++] = chunks[i];
+        }
+
+        return kept;
+    }
+
+    private void placeRange(RegionSeedEngine engine, long[] cells, long[] out, int start, int end) {
+        for (int i = start; i < end; i++) {
+            out[i] = placer.place(engine, RegionSeedEngine.unpackChunkX(cells[i]), RegionSeedEngine.unpackChunkZ(cells[i]));
+        }
+    }
+
+    private class PlaceTask extends RecursiveAction {
+        private final long[] cells;
+        private final long[] out;
+        private final int start;
+        private final int end;
+
+        PlaceTask(long[] cells, long[] out, int start, int end) {
+            this.cells = cells;
+            this.out = out;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= CELLS_PER_TASK) {
+                placeRange(new RegionSeedEngine(), cells, out, start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new PlaceTask(cells, out, start, mid), new PlaceTask(cells, out, mid, end));
+        }
+    }
+
+    /**
+     * Shared pool sized from the config, or null when parallel placement is disabled.
+     * Must be released once the ring is placed.
+     */
+    private static synchronized Workers acquireWorkers() {
+        int threads = ModConfig.serverSearchThreads > 0
+            ? ModConfig.serverSearchThreads
+            : Runtime.getRuntime().availableProcessors() - 1;
+
+        if (threads <= 1) return null;
+
+        if (workers == null || workers.threads != threads) {
+            if (workers != null) workers.retire();
+
+            workers = new Workers(threads);
+            SimpleStructureScanner.LOGGER.debug("Using {} threads for structure search placement", threads);
+        }
+        workers.users++;
+
+        return workers;
+    }
+
+    private static synchronized void releaseWorkers(Workers used) {
+        used.users--;
+        if (used.retired && used.users == 0) used.pool.shutdown();
+    }
+
+    /**
+     * Shut the shared pool down (e.g. when the server stops), once the searches using it are done.
+     */
+    public static synchronized void shutdown() {
+        if (workers == null) return;
+
+        workers.retire();
+        workers = null;
+    }
+
+    private static final class Workers {
+        final ForkJoinPool pool;
+        final int threads;
+        int users = 0;
+        boolean retired = false;
+
+        Workers(int threads) {
+            this.pool = new ForkJoinPool(threads);
+            this.threads = threads;
+        }
+
+        // Called with the class lock held: the pool is shut down by its last user, or now if it has none
+        void retire() {
+            retired = true;
+            if (users == 0) pool.shutdown();
+        }
+    }
+}
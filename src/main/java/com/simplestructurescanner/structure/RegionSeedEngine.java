@@ -0,0 +1,168 @@
+package com.simplestructurescanner.structure;
+
+
+/**
+ * Allocation-free replacement for the {@code new Random()} + {@code setSeed} pattern used by seed-based searches.
+ * Reproduces {@link java.util.Random}'s 48-bit LCG bit for bit, so every value drawn here is identical
+ * to the one MC's world generation draws from a {@code Random} seeded the same way.
+ *
+ * <p>One engine is meant to be reused for a whole search (it is NOT thread-safe). Positions are returned as
+ * packed chunk coordinates (same layout as {@code ChunkPos.asLong}), so candidates rejected by later
+ * checks never allocate a {@code BlockPos}.</p>
+ */
+public final class RegionSeedEngine {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // Region seed multipliers from MapGenBase/World.setRandomSeed
+    private static final long REGION_X_MULTIPLIER = 341873128712L;
+    private static final long REGION_Z_MULTIPLIER = 132897987541L;
+
+    private long state;
+
+    // Per-chunk seed multipliers (StructureStart/MapGenBase), derived once per world seed
+    private boolean chunkSeedReady = false;
+    private long chunkSeedWorld;
+    private long chunkSeedX;
+    private long chunkSeedZ;
+
+    public RegionSeedEngine() {
+    }
+
+    // ========== java.util.Random equivalents ==========
+
+    /**
+     * Same as {@link java.util.Random#setSeed(long)}.
+     */
+    public void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * Same as {@link java.util.Random#nextInt(int)}.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive");
+
+        // Power of two: take the high bits directly
+        if ((bound & -bound) == bound) return (int) ((bound * (long) next(31)) >> 31);
+
+        int bits;
+        int value;
+        do {
+            bits = next(31);
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+
+        return value;
+    }
+
+    /**
+     * Same as {@link java.util.Random#nextLong()}.
+     */
+    public long nextLong() {
+        return ((long) next(32) << 32) + next(32);
+    }
+
+    /**
+     * Same as {@link java.util.Random#nextDouble()}.
+     */
+    public double nextDouble() {
+        return (((long) next(26) << 27) + next(27)) * 0x1.0p-53;
+    }
+
+    /**
+     * Same as {@link java.util.Random#nextFloat()}.
+     */
+    public float nextFloat() {
+        return next(24) / ((float) (1 << 24));
+    }
+
+    // ========== MC seeding schemes ==========
+
+    /**
+     * Seed the engine for a structure region, as World.setRandomSeed does for MapGenStructure grids.
+     */
+    public void setRegionSeed(long worldSeed, int regionX, int regionZ, long salt) {
+        setSeed((long) regionX * REGION_X_MULTIPLIER + (long) regionZ * REGION_Z_MULTIPLIER + worldSeed + salt);
+    }
+
+    /**
+     * Seed the engine for a single chunk, as MapGenBase.generate/StructureStart do:
+     * {@code setSeed(chunkX * a ^ chunkZ * b ^ worldSeed)} where a and b are the first two longs of the world seed.
+     * The two multipliers are computed once and reused while the world seed stays the same.
+     */
+    public void setChunkSeed(long worldSeed, int chunkX, int chunkZ) {
+        if (!chunkSeedReady || chunkSeedWorld != worldSeed) {
+            setSeed(worldSeed);
+            chunkSeedX = nextLong();
+            chunkSeedZ = nextLong();
+            chunkSeedWorld = worldSeed;
+            chunkSeedReady = true;
+        }
+
+        setSeed((long) chunkX * chunkSeedX ^ (long) chunkZ * chunkSeedZ ^ worldSeed);
+    }
+
+    // ========== Region placement ==========
+
+    /**
+     * Chunk of the structure in a region with a uniform offset (villages, temples).
+     * @return Packed chunk coordinates, see {@link #packChunk}
+     */
+    public long getUniformRegionChunk(long worldSeed, int spacing, int separation, int salt, int regionX, int regionZ) {
+        setRegionSeed(worldSeed, regionX, regionZ, salt);
+
+        int range = spacing - separation;
+        int offsetX = nextInt(range);
+        int offsetZ = nextInt(range);
+
+        return packChunk(regionX * spacing + offsetX, regionZ * spacing + offsetZ);
+    }
+
+    /**
+     * Chunk of the structure in a region with an averaged (triangular) offset (monuments, mansions, end cities).
+     * MC formula: regionX * spacing + (rand(range) + rand(range)) / 2
+     * @return Packed chunk coordinates, see {@link #packChunk}
+     */
+    public long getTriangularRegionChunk(long worldSeed, int spacing, int separation, int salt, int regionX, int regionZ) {
+        setRegionSeed(worldSeed, regionX, regionZ, salt);
+
+        int range = spacing - separation;
+        int offsetX = (nextInt(range) + nextInt(range)) / 2;
+        int offsetZ = (nextInt(range) + nextInt(range)) / 2;
+
+        return packChunk(regionX * spacing + offsetX, regionZ * spacing + offsetZ);
+    }
+
+    // ========== Packed chunk coordinates ==========
+
+    /**
+     * Pack chunk coordinates into a long, using the same layout as {@code ChunkPos.asLong}.
+     */
+    public static long packChunk(int chunkX, int chunkZ) {
+        return (chunkX & 0xFFFFFFFFL) | (chunkZ & 0xFFFFFFFFL) << 32;
+    }
+
+    public static int unpackChunkX(long packed) {
+        return (int) packed;
+    }
+
+    public static int unpackChunkZ(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    /**
+     * Block coordinate of the center of a chunk, where structures are reported.
+     */
+    public static int chunkCenter(int chunk) {
+        return chunk * 16 + 8;
+    }
+}
@@ -0,0 +1,108 @@
+package com.simplestructurescanner.structure;
+
+
+/**
+ * Walks the perimeter of expanding square rings around a center cell (regions or chunks).
+ * Only the 8 * radius cells of each ring are visited, so a full spiral of radius r costs O(r^2)
+ * with no "already checked" bookkeeping.
+ *
+ * <p>Cells are visited column by column (x from -radius to radius, z ascending within a column),
+ * which is the same order as the nested square loops it replaces. Usage:</p>
+ * <pre>
+ * RingIterator ring = new RingIterator(centerX, centerZ);
+ * for (int radius = 0; radius &lt;= maxRadius; radius++) {
+ *     ring.startRing(radius);
+ *     while (ring.next()) check(ring.getX(), ring.getZ());
+ * }
+ * </pre>
+ */
+public final class RingIterator {
+    private final int centerX;
+    private final int centerZ;
+
+    private int radius = 0;
+    private int dx;
+    private int dz;
+    private boolean started = false;
+    private boolean finished = true;
+
+    public RingIterator(int centerX, int centerZ) {
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+    }
+
+    /**
+     * Restart iteration on the ring at the given distance from the center.
+     */
+    public void startRing(int radius) {
+        if (radius < 0) throw new IllegalArgumentException("radius must be >= 0");
+
+        this.radius = radius;
+        this.started = false;
+        this.finished = false;
+    }
+
+    /**
+     * Advance to the next cell of the current ring.
+     * @return false once every cell of the ring has been visited
+     */
+    public boolean next() {
+        if (finished) return false;
+
+        if (!started) {
+            started = true;
+            dx = -radius;
+            dz = -radius;
+
+            return true;
+        }
+
+        if (radius == 0) return stop();
+
+        if (dx == -radius || dx == radius) {
+            // Edge columns are walked fully
+            if (dz < radius) {
+                dz++;
+
+                return true;
+            }
+        } else if (dz == -radius) {
+            // Inner columns only have their two end cells on the perimeter
+            dz = radius;
+
+            return true;
+        }
+
+        if (dx == radius) return stop();
+
+        dx++;
+        dz = -radius;
+
+        return true;
+    }
+
+    private boolean stop() {
+        finished = true;
+
+        return false;
+    }
+
+    public int getX() {
+        return centerX + dx;
+    }
+
+    public int getZ() {
+        return centerZ + dz;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Number of cells on the ring at the given distance.
+     */
+    public static int ringSize(int radius) {
+        return radius == 0 ? 1 : 8 * radius;
+    }
+}
@@ -0,0 +1,215 @@
+package com.simplestructurescanner.structure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+
+/**
+ * Server-side cache of batch search results, shared by every player searching the same area.
+ *
+ * <p>Results are keyed by (dimension, structure ID, tile) with tiles of 512x512 blocks, and are computed from
+ * the tile center: players in the same tile share one search. Callers sort the positions by their own distance
+ * anyway, and as the tile center is at most ~360 blocks away, only the farthest results can differ from a search
+ * from the player's own position.</p>
+ *
+ * <p>A tile keeps only its largest search: asking for fewer results returns the nearest ones to the tile center,
+ * asking for more searches again and replaces the entry.</p>
+ *
+ * <p>Searches requested while one at least as large is already running wait for it instead of starting their own
+ * (single-flight). Entries are evicted least recently used first. Thread-safe.</p>
+ */
+public final class ServerSearchCache {
+    private static final int TILE_SHIFT = 9;
+    private static final int MAX_ENTRIES = 2048;
+
+    private static final Map<SearchKey, Entry> RESULTS = new LinkedHashMap<SearchKey, Entry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SearchKey, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong JOINED = new AtomicLong();
+
+    private ServerSearchCache() {
+    }
+
+    /**
+     * Cached equivalent of {@link StructureProviderRegistry#findAllNearby}.
+     * @return A new list of positions (unsorted), or null if the provider doesn't support batch search
+     */
+    @Nullable
+    public static List<BlockPos> findAllNearby(World world, ResourceLocation structureId, BlockPos pos, int maxResults) {
+        SearchKey key = keyFor(world, structureId, pos);
+
+        Entry entry;
+        boolean owner = false;
+
+        synchronized (RESULTS) {
+            entry = RESULTS.get(key);
+            if (entry == null || !entry.covers(maxResults)) {
+                entry = new Entry(maxResults);
+                RESULTS.put(key, entry);
+                owner = true;
+            }
+        }
+
+        CompletableFuture<Optional<List<BlockPos>>> future = entry.future;
+        if (owner) {
+            MISSES.incrementAndGet();
+
+            int half = 1 << (TILE_SHIFT - 1);
+            int tileX = pos.getX() >> TILE_SHIFT;
+            int tileZ = pos.getZ() >> TILE_SHIFT;
+            BlockPos center = new BlockPos((tileX << TILE_SHIFT) + half, pos.getY(), (tileZ << TILE_SHIFT) + half);
+
+            try {
+                List<BlockPos> positions = StructureProviderRegistry.findAllNearby(world, structureId, center, maxResults);
+
+                // Nearest to the tile center first, so smaller searches are a prefix
+                if (positions != null) {
+                    positions = new ArrayList<>(positions);
+                    positions.sort(Comparator.comparingDouble(p -> p.distanceSq(center)));
+                }
+                future.complete(Optional.ofNullable(positions));
+            } catch (Throwable e) {
+                // Don't cache failures, the next request retries. Errors too (e.g. a mod provider's missing class),
+                // else the searches waiting for this one would block forever
+                synchronized (RESULTS) {
+                    RESULTS.remove(key, entry);
+                }
+                future.completeExceptionally(e);
+                throw e;
+            }
+        } else if (future.isDone()) {
+            HITS.incrementAndGet();
+        } else {
+            JOINED.incrementAndGet();
+        }
+
+        Optional<List<BlockPos>> result;
+        try {
+            result = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+
+        // Callers filter and sort their copy
+        return result.map(positions -> new ArrayList<>(positions.subList(0, Math.min(maxResults, positions.size()))))
+            .orElse(null);
+    }
+
+    private static SearchKey keyFor(World world, ResourceLocation structureId, BlockPos pos) {
+        return new SearchKey(world.provider.getDimension(), structureId, pos.getX() >> TILE_SHIFT, pos.getZ() >> TILE_SHIFT);
+    }
+
+    /**
+     * Drop every cached result (e.g. when the server stops).
+     */
+    public static void clear() {
+        synchronized (RESULTS) {
+            RESULTS.clear();
+        }
+    }
+
+    /**
+     * Searches answered from a completed cache entry.
+     */
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    /**
+     * Searches that had to be computed.
+     */
+    public static long getMisses() {
+        return MISSES.get();
+    }
+
+    /**
+     * Searches that waited for an identical search already in progress.
+     */
+    public static long getJoined() {
+        return JOINED.get();
+    }
+
+    public static int getEntryCount() {
+        synchronized (RESULTS) {
+            return RESULTS.size();
+        }
+    }
+
+    /**
+     * The largest search of a tile, running or done.
+     */
+    private static final class Entry {
+        final int maxResults;
+        final CompletableFuture<Optional<List<BlockPos>>> future = new CompletableFuture<>();
+
+        Entry(int maxResults) {
+            this.maxResults = maxResults;
+        }
+
+        // Whether a search for this many results can be answered from this one
+        boolean covers(int results) {
+            if (results <= maxResults) return true;
+
+            // A search that found fewer results than it asked for found them all
+            Optional<List<BlockPos>> result = future.getNow(null);
+
+            return result != null && (!result.isPresent() || result.get().size() < maxResults);
+        }
+    }
+
+    private static final class SearchKey {
+        private final int dimension;
+        private final ResourceLocation structureId;
+        private final int tileX;
+        private final int tileZ;
+
+        SearchKey(int dimension, ResourceLocation structureId, int tileX, int tileZ) {
+            this.dimension = dimension;
+            this.structureId = structureId;
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SearchKey)) return false;
+
+            SearchKey other = (SearchKey) o;
+
+            return dimension == other.dimension && tileX == other.tileX && tileZ == other.tileZ
+                && structureId.equals(other.structureId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = dimension;
+            result = 31 * result + structureId.hashCode();
+            result = 31 * result + tileX;
+            result = 31 * result + tileZ;
+
+            return result;
+        }
+    }
+}
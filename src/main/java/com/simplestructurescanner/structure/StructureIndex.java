@@ -0,0 +1,429 @@
+package com.simplestructurescanner.structure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import com.simplestructurescanner.SimpleStructureScanner;
+
+
+/**
+ * Persistent structure position index stored in a world's save directory, so positions computed once
+ * are served after restarts without any RNG or biome work.
+ *
+ * <p>Grid search results are stored in memory-mapped region files, one per structure type and 32x32 tiles,
+ * with a fixed-size slot per tile of {@link StructurePositionCache} (tile-addressed, read lazily by the OS).
+ * Each slot holds which cells were evaluated, which hold a structure, and the structure position relative to its cell.
+ * Providers that compute a fixed list of positions (e.g. one per seed) can store it as a list record.</p>
+ *
+ * <p>Every file header records the seed and the provider's algorithm version; a file written for another seed or
+ * algorithm version is reset on open. Only server worlds have an index.</p>
+ *
+ * <p>Layout of a region file: header, then 1024 slots of [long evaluated mask][long present mask]
+ * [64 x (short dx, short y, short dz)]. Thread-safe: a file is mapped by a single region at a time, only unused
+ * regions are evicted, and they are flushed and unmapped when they are.</p>
+ */
+public final class StructureIndex {
+    private static final int MAGIC = 0x53535349;  // "SSSI"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private static final int CELLS_PER_TILE = 64;
+    private static final int CELL_ENTRY_SIZE = 6;
+    private static final int SLOT_SIZE = 16 + CELLS_PER_TILE * CELL_ENTRY_SIZE;
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int SLOTS_PER_REGION = 1 << (REGION_SHIFT * 2);
+
+    private static final int MAX_OPEN_REGIONS = 64;
+
+    private static final Map<File, StructureIndex> INDEXES = new HashMap<>();
+
+    private final File directory;
+    // Guarded by itself, like the regions' users
+    private final Map<String, Region> regions = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean closed = false;
+
+    private StructureIndex(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Index of a world's dimension, or null if the world has no save directory (client worlds).
+     */
+    @Nullable
+    public static StructureIndex forWorld(World world) {
+        if (world == null || world.isRemote) return null;
+
+        File worldDirectory = world.getSaveHandler().getWorldDirectory();
+        if (worldDirectory == null) return null;
+
+        String dimensionFolder = world.provider.getSaveFolder();
+        File root = dimensionFolder != null ? new File(worldDirectory, dimensionFolder) : worldDirectory;
+        File directory = new File(root, "data/" + SimpleStructureScanner.MODID);
+
+        synchronized (INDEXES) {
+            return INDEXES.computeIfAbsent(directory, StructureIndex::new);
+        }
+    }
+
+    /**
+     * Release every open index (e.g. when the server stops), flushing and unmapping its files so the world can be
+     * deleted. Regions still in use are unmapped once their last reader or writer is done.
+     */
+    public static void closeAll() {
+        synchronized (INDEXES) {
+            for (StructureIndex index : INDEXES.values()) index.close();
+            INDEXES.clear();
+        }
+    }
+
+    // ========== Tile records ==========
+
+    /**
+     * Load a tile of a grid search.
+     * @param positions Receives the stored positions, indexed like the tile's cells (null for empty cells)
+     * @return Mask of the evaluated cells of the tile, 0 if the tile was never stored
+     */
+    public long readTile(TileScope scope, int tileX, int tileZ, BlockPos[] positions) {
+        Region region = acquireRegion(scope, tileX, tileZ);
+        if (region == null) return 0;
+
+        try {
+            synchronized (region) {
+                int slot = slotOffset(tileX, tileZ);
+                long evaluated = region.buffer.getLong(slot);
+                long present = region.buffer.getLong(slot + 8);
+
+                int cellBaseX = tileX * StructurePositionCache.TILE_SIZE;
+                int cellBaseZ = tileZ * StructurePositionCache.TILE_SIZE;
+
+                for (int index = 0; index < CELLS_PER_TILE; index++) {
+                    if ((present & (1L << index)) == 0) continue;
+
+                    int entry = slot + 16 + index * CELL_ENTRY_SIZE;
+                    int cellX = cellBaseX + (index & StructurePositionCache.TILE_MASK);
+                    int cellZ = cellBaseZ + (index >> StructurePositionCache.TILE_SHIFT);
+
+                    positions[index] = new BlockPos(
+                        cellX * scope.cellSize + (region.buffer.getShort(entry) & 0xFFFF),
+                        region.buffer.getShort(entry + 2),
+                        cellZ * scope.cellSize + (region.buffer.getShort(entry + 4) & 0xFFFF));
+                }
+
+                return evaluated;
+            }
+        } finally {
+            releaseRegion(region);
+        }
+    }
+
+    /**
+     * Store the result of one evaluated cell.
+     * @param index Cell index in its tile
+     * @param pos Structure position in the cell, or null if the cell has none
+     */
+    public void writeCell(TileScope scope, int tileX, int tileZ, int index, @Nullable BlockPos pos) {
+        Region region = acquireRegion(scope, tileX, tileZ);
+        if (region == null) return;
+
+        try {
+            synchronized (region) {
+                int slot = slotOffset(tileX, tileZ);
+
+                if (pos != null) {
+                    int cellX = tileX * StructurePositionCache.TILE_SIZE + (index & StructurePositionCache.TILE_MASK);
+                    int cellZ = tileZ * StructurePositionCache.TILE_SIZE + (index >> StructurePositionCache.TILE_SHIFT);
+                    int entry = slot + 16 + index * CELL_ENTRY_SIZE;
+
+                    region.buffer.putShort(entry, (short) (pos.getX() - cellX * scope.cellSize));
+                    region.buffer.putShort(entry + 2, (short) pos.getY());
+                    region.buffer.putShort(entry + 4, (short) (pos.getZ() - cellZ * scope.cellSize));
+                    region.buffer.putLong(slot + 8, region.buffer.getLong(slot + 8) | 1L << index);
+                }
+
+                // Marked evaluated last, so a partial write never reads back as an empty cell
+                region.buffer.putLong(slot, region.buffer.getLong(slot) | 1L << index);
+            }
+        } finally {
+            releaseRegion(region);
+        }
+    }
+
+    private static int slotOffset(int tileX, int tileZ) {
+        return HEADER_SIZE + ((tileX & REGION_MASK) | (tileZ & REGION_MASK) << REGION_SHIFT) * SLOT_SIZE;
+    }
+
+    /**
+     * The region of a tile, mapped if needed. It stays mapped until {@link #releaseRegion} is called.
+     * @return Null if the file can't be opened, or can't be reset for this scope while another search uses it
+     */
+    @Nullable
+    private Region acquireRegion(TileScope scope, int tileX, int tileZ) {
+        int regionX = tileX >> REGION_SHIFT;
+        int regionZ = tileZ >> REGION_SHIFT;
+        String name = fileName(scope.structureType) + "/r." + regionX + "." + regionZ + ".idx";
+
+        synchronized (regions) {
+            if (closed) return null;
+
+            Region region = regions.get(name);
+            if (region != null && !region.matches(scope)) {
+                // Resetting truncates the file, which must not be mapped anymore
+                if (region.users > 0) return null;
+
+                regions.remove(name);
+                region.unmap();
+                region = null;
+            }
+
+            if (region == null) {
+                region = openRegion(new File(directory, name), scope);
+                if (region == null) return null;
+
+                regions.put(name, region);
+                evictUnused();
+            }
+
+            region.users++;
+
+            return region;
+        }
+    }
+
+    private void releaseRegion(Region region) {
+        synchronized (regions) {
+            region.users--;
+
+            // Evicted or closed while in use
+            if (region.users == 0 && region.removed) region.unmap();
+        }
+    }
+
+    // Drop the least recently used mappings nobody uses, called with the regions lock held
+    private void evictUnused() {
+        Iterator<Region> eldest = regions.values().iterator();
+        while (regions.size() > MAX_OPEN_REGIONS && eldest.hasNext()) {
+            Region region = eldest.next();
+            if (region.users > 0) continue;
+
+            eldest.remove();
+            region.unmap();
+        }
+    }
+
+    @Nullable
+    private Region openRegion(File file, TileScope scope) {
+        long size = HEADER_SIZE + (long) SLOTS_PER_REGION * SLOT_SIZE;
+
+        try {
+            file.getParentFile().mkdirs();
+
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                boolean valid = raf.length() == size && readHeaderMatches(raf, scope);
+
+                if (!valid) {
+                    // New file, or written for another seed/algorithm: start over (zero-filled)
+                    raf.setLength(0);
+                    raf.setLength(size);
+                    raf.seek(0);
+                    raf.writeInt(MAGIC);
+                    raf.writeInt(FORMAT_VERSION);
+                    raf.writeInt(scope.algorithmVersion);
+                    raf.writeInt(scope.cellSize);
+                    raf.writeLong(scope.seed);
+                }
+
+                // The mapping stays valid after the channel is closed
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+                return new Region(scope, buffer);
+            }
+        } catch (IOException e) {
+            SimpleStructureScanner.LOGGER.warn("Could not open structure index {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean readHeaderMatches(RandomAccessFile raf, TileScope scope) throws IOException {
+        raf.seek(0);
+
+        return raf.readInt() == MAGIC
+            && raf.readInt() == FORMAT_VERSION
+            && raf.readInt() == scope.algorithmVersion
+            && raf.readInt() == scope.cellSize
+            && raf.readLong() == scope.seed;
+    }
+
+    // ========== List records ==========
+
+    /**
+     * Load a stored position list, or null if none was stored for this seed and algorithm version.
+     */
+    @Nullable
+    public List<BlockPos> readPositions(String structureType, int algorithmVersion, long seed) {
+        File file = new File(directory, fileName(structureType) + ".list");
+        if (!file.isFile()) return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            // Read once in full, a mapping would stay open until collected and block rewriting or deleting the file
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE) return null;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            FileChannel channel = raf.getChannel();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+
+            if (buffer.remaining() < 24
+                || buffer.getInt() != MAGIC
+                || buffer.getInt() != FORMAT_VERSION
+                || buffer.getInt() != algorithmVersion
+                || buffer.getLong() != seed) {
+                return null;
+            }
+
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() < count * 12L) return null;
+
+            List<BlockPos> positions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) positions.add(new BlockPos(buffer.getInt(), buffer.getInt(), buffer.getInt()));
+
+            return positions;
+        } catch (IOException e) {
+            SimpleStructureScanner.LOGGER.warn("Could not read structure index {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store a position list, replacing any previous one.
+     */
+    public void writePositions(String structureType, int algorithmVersion, long seed, List<BlockPos> positions) {
+        File file = new File(directory, fileName(structureType) + ".list");
+
+        try {
+            file.getParentFile().mkdirs();
+
+            ByteBuffer buffer = ByteBuffer.allocate(24 + positions.size() * 12);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(algorithmVersion).putLong(seed).putInt(positions.size());
+            for (BlockPos pos : positions) buffer.putInt(pos.getX()).putInt(pos.getY()).putInt(pos.getZ());
+            buffer.flip();
+
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(0);
+                raf.getChannel().write(buffer);
+            }
+        } catch (IOException e) {
+            SimpleStructureScanner.LOGGER.warn("Could not write structure index {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String fileName(String structureType) {
+        return structureType.replaceAll("[^a-zA-Z0-9_.-]", "_");
+    }
+
+    private void close() {
+        synchronized (regions) {
+            for (Region region : regions.values()) {
+                region.removed = true;
+                if (region.users == 0) {
+                    region.unmap();
+                } else {
+                    region.buffer.force();
+                }
+            }
+            regions.clear();
+            closed = true;
+        }
+    }
+
+    /**
+     * What a grid search's tiles are stored under.
+     */
+    public static final class TileScope {
+        final String structureType;
+        final int algorithmVersion;
+        final long seed;
+        final int cellSize;
+
+        /**
+         * @param structureType Structure type, unique across providers (e.g. the structure ID)
+         * @param algorithmVersion Provider algorithm version; bump it when results change, to reset stored files
+         * @param seed World seed
+         * @param cellSize Grid cell size in blocks (at most 32767)
+         */
+        public TileScope(String structureType, int algorithmVersion, long seed, int cellSize) {
+            this.structureType = structureType;
+            this.algorithmVersion = algorithmVersion;
+            this.seed = seed;
+            this.cellSize = cellSize;
+        }
+    }
+
+    private static final class Region {
+        final TileScope scope;
+        final MappedByteBuffer buffer;
+
+        // Reads and writes in progress, and whether the region left the index, guarded by the regions lock
+        int users = 0;
+        boolean removed = false;
+
+        Region(TileScope scope, MappedByteBuffer buffer) {
+            this.scope = scope;
+            this.buffer = buffer;
+        }
+
+        boolean matches(TileScope other) {
+            return scope.seed == other.seed
+                && scope.algorithmVersion == other.algorithmVersion
+                && scope.cellSize == other.cellSize;
+        }
+
+        /**
+         * Flush and unmap the file. The buffer must not be used anymore.
+         */
+        void unmap() {
+            removed = true;
+            buffer.force();
+
+            // No public API unmaps before the buffer is garbage collected, until then Windows can't delete the file
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                try {
+                    // Java 9+
+                    Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                    Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                    theUnsafe.setAccessible(true);
+                    invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                } catch (NoSuchMethodException e) {
+                    // Java 8
+                    Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                SimpleStructureScanner.LOGGER.debug("Could not unmap structure index region: {}", e.toString());
+            }
+        }
+    }
+}
@@ -35,7 +35,8 @@ public class StructureLocation {
     }
 
     /**
-     * Total number of structures found in the search.
+     * Number of results the search knows of up to this one: index + 1, plus one if there is a next result.
+     * Searches stop one result after the requested one, so this is not the number of structures in the world.
      */
     public int getTotalFound() {
         return totalFound;
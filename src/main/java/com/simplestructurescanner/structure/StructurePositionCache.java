@@ -0,0 +1,287 @@
+package com.simplestructurescanner.structure;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.math.BlockPos;
+
+
+/**
+ * Shared cache of grid search results, so searches from any origin reuse the cells other searches already evaluated.
+ *
+ * <p>Results are stored per grid cell (structure region, or chunk for per-chunk structures) in tiles of
+ * 8x8 cells, keyed by (seed, structure type, tile). A tile is created when a search first reaches it, and only
+ * remembers the cells that were actually evaluated, so no work is done beyond what the search needed.
+ * Tiles are evicted least recently used first, under a fixed memory budget.</p>
+ *
+ * <p>Wrap a search's {@link DistanceOrderedSearch.RingEvaluator} with {@link #cached}: cached cells are answered
+ * directly, and only the others are passed to the wrapped evaluator. With a {@link StructureIndex}, tiles missing
+ * from memory are loaded from the world's index first, and newly evaluated cells are written to it. Thread-safe.</p>
+ */
+public final class StructurePositionCache {
+    static final int TILE_SHIFT = 3;
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+    static final int TILE_MASK = TILE_SIZE - 1;
+
+    // Rough heap cost of a tile and of each position it holds
+    private static final long TILE_BYTES = 400;
+    private static final long POSITION_BYTES = 40;
+    private static final long MEMORY_BUDGET = 16L * 1024 * 1024;
+
+    private static final Map<TileKey, Tile> TILES = new LinkedHashMap<>(1024, 0.75f, true);
+    private static long usedBytes = 0;
+
+    private static final AtomicLong CELL_HITS = new AtomicLong();
+    private static final AtomicLong CELL_MISSES = new AtomicLong();
+
+    private StructurePositionCache() {
+    }
+
+    /**
+     * Wrap a ring evaluator with the shared cache.
+     * @param seed World seed
+     * @param structureType Structure type, unique across providers (e.g. the structure ID)
+     * @param cellSize Cell size in blocks, the same as given to the search
+     * @param evaluator Evaluator computing the cells missing from the cache. Every position it reports
+     *                  must lie in one of the cells it was given, at most one per cell.
+     */
+    public static DistanceOrderedSearch.RingEvaluator cached(long seed, String structureType, int cellSize,
+            DistanceOrderedSearch.RingEvaluator evaluator) {
+        return new CachedEvaluator(null, new StructureIndex.TileScope(structureType, 0, seed, cellSize), evaluator);
+    }
+
+    /**
+     * Wrap a ring evaluator with the shared cache, backed by a persistent index.
+     * @param index World index, or null to only cache in memory
+     * @param algorithmVersion Provider algorithm version, see {@link StructureIndex.TileScope}
+     */
+    public static DistanceOrderedSearch.RingEvaluator cached(@Nullable StructureIndex index, int algorithmVersion,
+            long seed, String structureType, int cellSize, DistanceOrderedSearch.RingEvaluator evaluator) {
+        return new CachedEvaluator(index, new StructureIndex.TileScope(structureType, algorithmVersion, seed, cellSize), evaluator);
+    }
+
+    /**
+     * Drop every cached tile (e.g. when the server stops, as another world may reuse the same seed).
+     */
+    public static void clear() {
+        synchronized (TILES) {
+            TILES.clear();
+            usedBytes = 0;
+        }
+    }
+
+    public static long getCellHits() {
+        return CELL_HITS.get();
+    }
+
+    public static long getCellMisses() {
+        return CELL_MISSES.get();
+    }
+
+    public static int getCachedTileCount() {
+        synchronized (TILES) {
+            return TILES.size();
+        }
+    }
+
+    private static Tile getTile(TileKey key, @Nullable StructureIndex index, StructureIndex.TileScope scope) {
+        synchronized (TILES) {
+            Tile tile = TILES.get(key);
+            if (tile != null) return tile;
+        }
+
+        // Load outside the lock, the index may have to page in its file
+        Tile loaded = new Tile();
+        if (index != null) loaded.load(index, scope, key.tileX, key.tileZ);
+
+        synchronized (TILES) {
+            Tile tile = TILES.get(key);
+            if (tile != null) return tile;
+
+            TILES.put(key, loaded);
+            usedBytes += TILE_BYTES + loaded.positionCount * POSITION_BYTES;
+            evictOverBudget();
+
+            return loaded;
+        }
+    }
+
+    private static void onPositionStored(Tile tile) {
+        synchronized (TILES) {
+            // The tile may have been evicted while its search was still filling it
+            if (tile.evicted) return;
+
+            usedBytes += POSITION_BYTES;
+            evictOverBudget();
+        }
+    }
+
+    private static void evictOverBudget() {
+        Iterator<Tile> eldest = TILES.values().iterator();
+        while (usedBytes > MEMORY_BUDGET && eldest.hasNext()) {
+            Tile tile = eldest.next();
+            usedBytes -= TILE_BYTES + tile.positionCount * POSITION_BYTES;
+            tile.evicted = true;
+            eldest.remove();
+        }
+    }
+
+    private static final class CachedEvaluator implements DistanceOrderedSearch.RingEvaluator {
+        private final StructureIndex index;
+        private final StructureIndex.TileScope scope;
+        private final DistanceOrderedSearch.RingEvaluator evaluator;
+
+        private long[] missingCells = new long[8];
+        private final Map<Long, BlockPos> computedPositions = new HashMap<>();
+
+        // Consecutive ring cells mostly share a tile
+        private Tile lastTile;
+        private int lastTileX;
+        private int lastTileZ;
+
+        CachedEvaluator(@Nullable StructureIndex index, StructureIndex.TileScope scope,
+                DistanceOrderedSearch.RingEvaluator evaluator) {
+            this.index = index;
+            this.scope = scope;
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public void evaluate(long[] cells, int count, Consumer<BlockPos> results) {
+            if (missingCells.length < count) missingCells = new long[Math.max(count, missingCells.length * 2)];
+
+            int missing = 0;
+            for (int i = 0; i < count; i++) {
+                int cellX = RegionSeedEngine.unpackChunkX(cells[i]);
+                int cellZ = RegionSeedEngine.unpackChunkZ(cells[i]);
+                Tile tile = tileFor(cellX, cellZ);
+                int cellIndex = (cellX & TILE_MASK) | (cellZ & TILE_MASK) << TILE_SHIFT;
+
+                synchronized (tile) {
+                    if (tile.isComputed(cellIndex)) {
+                        BlockPos cached = tile.positions[cellIndex];
+                        if (cached != null) results.accept(cached);
+                        continue;
+                    }
+                }
+
+                missingCells[missing++] = cells[i];
+            }
+
+            CELL_HITS.addAndGet(count - missing);
+            if (missing == 0) return;
+
+            CELL_MISSES.addAndGet(missing);
+
+            computedPositions.clear();
+            evaluator.evaluate(missingCells, missing, pos -> {
+                long cell = RegionSeedEngine.packChunk(
+                    Math.floorDiv(pos.getX(), scope.cellSize), Math.floorDiv(pos.getZ(), scope.cellSize));
+                computedPositions.put(cell, pos);
+                results.accept(pos);
+            });
+
+            // Store each cell's result and mark it computed at once, so an eviction in between can't
+            // leave a cell marked as empty. Cells without a structure are cached too.
+            for (int i = 0; i < missing; i++) {
+                int cellX = RegionSeedEngine.unpackChunkX(missingCells[i]);
+                int cellZ = RegionSeedEngine.unpackChunkZ(missingCells[i]);
+                BlockPos pos = computedPositions.isEmpty() ? null : computedPositions.get(missingCells[i]);
+                Tile tile = tileFor(cellX, cellZ);
+                int cellIndex = (cellX & TILE_MASK) | (cellZ & TILE_MASK) << TILE_SHIFT;
+
+                synchronized (tile) {
+                    if (pos != null) tile.setPosition(cellIndex, pos);
+                    tile.markComputed(cellIndex);
+                }
+
+                if (pos != null) onPositionStored(tile);
+                if (index != null) index.writeCell(scope, cellX >> TILE_SHIFT, cellZ >> TILE_SHIFT, cellIndex, pos);
+            }
+        }
+
+        private Tile tileFor(int cellX, int cellZ) {
+            int tileX = cellX >> TILE_SHIFT;
+            int tileZ = cellZ >> TILE_SHIFT;
+            if (lastTile != null && !lastTile.evicted && tileX == lastTileX && tileZ == lastTileZ) return lastTile;
+
+            lastTile = getTile(new TileKey(scope.seed, scope.structureType, tileX, tileZ), index, scope);
+            lastTileX = tileX;
+            lastTileZ = tileZ;
+
+            return lastTile;
+        }
+    }
+
+    /**
+     * Cell results of a tile. Cell state is guarded by the tile's monitor, eviction state by the tile map's.
+     */
+    private static final class Tile {
+        final BlockPos[] positions = new BlockPos[TILE_SIZE * TILE_SIZE];
+        private long computed = 0;
+
+        volatile int positionCount = 0;
+        volatile boolean evicted = false;
+
+        boolean isComputed(int index) {
+            return (computed & (1L << index)) != 0;
+        }
+
+        void markComputed(int index) {
+            computed |= 1L << index;
+        }
+
+        void load(StructureIndex index, StructureIndex.TileScope scope, int tileX, int tileZ) {
+            computed = index.readTile(scope, tileX, tileZ, positions);
+            for (BlockPos pos : positions) {
+                if (pos != null) positionCount++;
+            }
+        }
+
+        void setPosition(int index, BlockPos pos) {
+            if (positions[index] == null) positionCount++;
+            positions[index] = pos;
+        }
+    }
+
+    private static final class TileKey {
+        private final long seed;
+        private final String structureType;
+        private final int tileX;
+        private final int tileZ;
+
+        TileKey(long seed, String structureType, int tileX, int tileZ) {
+            this.seed = seed;
+            this.structureType = structureType;
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TileKey)) return false;
+
+            TileKey other = (TileKey) o;
+
+            return seed == other.seed && tileX == other.tileX && tileZ == other.tileZ
+                && structureType.equals(other.structureType);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Long.hashCode(seed);
+            result = 31 * result + structureType.hashCode();
+            result = 31 * result + tileX;
+            result = 31 * result + tileZ;
+
+            return result;
+        }
+    }
+}
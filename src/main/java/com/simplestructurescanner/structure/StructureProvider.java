@@ -1,5 +1,6 @@
 package com.simplestructurescanner.structure;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.Predicate;
 
@@ -54,6 +55,15 @@ public interface StructureProvider {
      */
     boolean canBeSearched(ResourceLocation structureId);
 
+    /**
+     * Check if searching a structure only depends on the world seed, so it can run outside the server thread.
+     * Searches that read biomes (GenLayers share a global cache), chunks or other world state must return false.
+     * @param structureId The structure ID
+     */
+    default boolean isSeedOnlySearch(ResourceLocation structureId) {
+        return false;
+    }
+
     /**
      * Get information about a specific structure.
      * @param structureId The structure ID
@@ -102,4 +112,30 @@ public interface StructureProvider {
     default List<BlockPos> findAllNearby(World world, ResourceLocation structureId, BlockPos pos, int maxResults) {
         return null;  // null = batch search not supported, use findNearest instead
     }
+
+    /**
+     * Iterate over structures of the given type in exact horizontal distance order. This code runs on the server side.
+     * Results are computed lazily, so callers only pay for the positions they actually consume,
+     * and there is no cap on how many results can be paged through within {@code maxDistance}.
+     * See {@link DistanceOrderedSearch} for a grid-based implementation.
+     * @param world The world to search in
+     * @param structureId The structure ID to find
+     * @param pos The position to search from
+     * @param maxDistance Horizontal search limit in blocks. The iterator may scan up to this distance
+     *                    before reporting that there are no more results, so keep it reasonable.
+     * @return Iterator over structure positions (nearest first), or null if not supported
+     */
+    @Nullable
+    default Iterator<BlockPos> iterateByDistance(World world, ResourceLocation structureId, BlockPos pos, int maxDistance) {
+        return null;  // null = ordered iteration not supported, use findAllNearby or findNearest instead
+    }
+
+    /**
+     * Distance searches around a player walk {@link #iterateByDistance} to, in blocks.
+     * Override it for structures that are rarer (search further) or that have a small fixed set of positions.
+     * @param structureId The structure ID to find
+     */
+    default int getSearchDistance(ResourceLocation structureId) {
+        return 20 * 32 * 16;  // 20 regions of 32 chunks, as vanilla villages and temples
+    }
 }
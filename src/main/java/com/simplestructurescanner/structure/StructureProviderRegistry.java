@@ -3,6 +3,7 @@ package com.simplestructurescanner.structure;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -150,6 +151,16 @@ public class StructureProviderRegistry {
         return provider.canBeSearched(structureId);
     }
 
+    /**
+     * Check if a structure's search only depends on the world seed (see {@link StructureProvider#isSeedOnlySearch}).
+     */
+    public static boolean isSeedOnlySearch(ResourceLocation structureId) {
+        StructureProvider provider = getProviderForStructure(structureId);
+        if (provider == null) return false;
+
+        return provider.isSeedOnlySearch(structureId);
+    }
+
     /**
      * Find the nearest structure of a given type.
      */
@@ -184,6 +195,30 @@ public class StructureProviderRegistry {
         return provider.findAllNearby(world, structureId, pos, maxResults);
     }
 
+    /**
+     * Iterate over structures of a given type, nearest first.
+     * @return Lazy iterator over positions, or null if the provider doesn't support ordered iteration
+     */
+    @Nullable
+    public static Iterator<BlockPos> iterateByDistance(World world, ResourceLocation structureId, BlockPos pos, int maxDistance) {
+        StructureProvider provider = getProviderForStructure(structureId);
+        if (provider == null) return null;
+
+        return provider.iterateByDistance(world, structureId, pos, maxDistance);
+    }
+
+    /**
+     * Iterate over structures of a given type nearest first, up to the provider's search distance.
+     * @return Lazy iterator over positions, or null if the provider doesn't support ordered iteration
+     */
+    @Nullable
+    public static Iterator<BlockPos> iterateByDistance(World world, ResourceLocation structureId, BlockPos pos) {
+        StructureProvider provider = getProviderForStructure(structureId);
+        if (provider == null) return null;
+
+        return provider.iterateByDistance(world, structureId, pos, provider.getSearchDistance(structureId));
+    }
+
     /**
      * Clear all providers and structure mappings.
      * Primarily for testing.
@@ -2,9 +2,7 @@ package com.simplestructurescanner.structure;
 
 import java.util.Random;
 
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.biome.Biome;
-import net.minecraft.world.biome.BiomeProvider;
 import net.minecraft.world.gen.NoiseGeneratorOctaves;
 
 /**
@@ -16,13 +14,13 @@ import net.minecraft.world.gen.NoiseGeneratorOctaves;
 public class TerrainHeightCalculator {
 
     private final NoiseGeneratorOctaves depthNoise;
-    private final BiomeProvider biomeProvider;
+    private final BiomeLookupCache biomes;
 
     // MC terrain generation constants
     private static final int SEA_LEVEL = 63;
 
-    public TerrainHeightCalculator(long seed, BiomeProvider biomeProvider) {
-        this.biomeProvider = biomeProvider;
+    public TerrainHeightCalculator(long seed, BiomeLookupCache biomes) {
+        this.biomes = biomes;
 
         // Initialize noise generator with world seed (same as ChunkGeneratorOverworld)
         Random random = new Random(seed);
@@ -45,7 +43,7 @@ public class TerrainHeightCalculator {
      */
     public int getTerrainHeight(int blockX, int blockZ) {
         // Get biome at this position
-        Biome biome = biomeProvider.getBiome(new BlockPos(blockX, 0, blockZ));
+        Biome biome = biomes.getBiome(blockX, blockZ);
 
         // Get biome base height and variation
         float baseHeight = biome.getBaseHeight();
@@ -86,7 +84,7 @@ public class TerrainHeightCalculator {
      * Faster but less accurate.
      */
     public int getSimpleTerrainHeight(int blockX, int blockZ) {
-        Biome biome = biomeProvider.getBiome(new BlockPos(blockX, 0, blockZ));
+        Biome biome = biomes.getBiome(blockX, blockZ);
         float baseHeight = biome.getBaseHeight();
 
         // Simple conversion: baseHeight of 0.1 = sea level, higher = hills, negative = ocean
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -17,12 +18,13 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.translation.I18n;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
-import net.minecraft.world.biome.BiomeProvider;
 import net.minecraftforge.common.BiomeDictionary;
 import net.minecraftforge.fml.common.Loader;
 
 import com.simplestructurescanner.SimpleStructureScanner;
+import com.simplestructurescanner.structure.BiomeLookupCache;
 import com.simplestructurescanner.structure.DimensionInfo;
+import com.simplestructurescanner.structure.StructureIndex;
 import com.simplestructurescanner.structure.StructureInfo;
 import com.simplestructurescanner.structure.StructureInfo.EntityEntry;
 import com.simplestructurescanner.structure.StructureInfo.LootEntry;
@@ -46,6 +48,9 @@ public class AbyssalCraftStructureProvider implements StructureProvider {
     // Cache: seed -> list of AbyStronghold positions
     private static final Map<Long, List<BlockPos>> abyStrongholdCache = new HashMap<>();
 
+    // Bump when the stronghold algorithm changes its results, to reset the persisted structure indexes
+    private static final int ALGORITHM_VERSION = 1;
+
     // AbyssalCraft dimension IDs (fetched at runtime)
     private int abyssalWastelandId = -1;
     private int dreadlandsId = -1;
@@ -329,7 +334,7 @@ public class AbyssalCraftStructureProvider implements StructureProvider {
         candidates = new ArrayList<>(candidates);
         sortByDistance(candidates, pos);
 
-        // Apply filter and skip to find the target
+        // Apply filter and skip to find the target, then look one result ahead so "next" stays available
         int validIndex = 0;
         int totalValid = 0;
         BlockPos targetPos = null;
@@ -337,10 +342,17 @@ public class AbyssalCraftStructureProvider implements StructureProvider {
         for (BlockPos candidate : candidates) {
             if (locationFilter != null && !locationFilter.test(candidate)) continue;
 
-            if (validIndex == skipCount && targetPos == null) targetPos = candidate;
+            if (targetPos != null) {
+                totalValid++;
+                break;
+            }
+
+            if (validIndex == skipCount) {
+                targetPos = candidate;
+                totalValid = skipCount + 1;
+            }
 
             validIndex++;
-            totalValid++;
         }
 
         if (targetPos == null) return null;
@@ -351,11 +363,21 @@ public class AbyssalCraftStructureProvider implements StructureProvider {
     }
 
     /**
-     * Get cached AbyStronghold positions or calculate and cache them.
+     * Get cached AbyStronghold positions, or load them from the world's index, or calculate them.
      */
     private List<BlockPos> getCachedAbyStrongholds(World world, long seed) {
         if (!abyStrongholdCache.containsKey(seed)) {
-            abyStrongholdCache.put(seed, calculateAbyStrongholdPositions(world, seed));
+            String indexKey = PROVIDER_ID + ":aby_stronghold";
+            StructureIndex index = StructureIndex.forWorld(world);
+            List<BlockPos> positions = index != null ? index.readPositions(indexKey, ALGORITHM_VERSION, seed) : null;
+
+            if (positions == null) {
+                // The biome checks make this the expensive part
+                positions = calculateAbyStrongholdPositions(world, seed);
+                if (index != null) index.writePositions(indexKey, ALGORITHM_VERSION, seed, positions);
+            }
+
+            abyStrongholdCache.put(seed, positions);
         }
 
         return abyStrongholdCache.get(seed);
@@ -388,6 +410,30 @@ public class AbyssalCraftStructureProvider implements StructureProvider {
         }
     }
 
+    @Override
+    public int getSearchDistance(ResourceLocation structureId) {
+        // Small fixed sets of positions, all of them are sorted anyway
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Iterator<BlockPos> iterateByDistance(World world, ResourceLocation structureId, BlockPos pos, int maxDistance) {
+        // Both searchable structures have a small fixed set of positions, so sorting all of them is cheap
+        List<BlockPos> results = findAllNearby(world, structureId, pos, Integer.MAX_VALUE);
+        if (results == null || results.isEmpty()) return Collections.emptyIterator();
+
+        long maxDistanceSq = (long) maxDistance * maxDistance;
+        List<BlockPos> inRange = new ArrayList<>(results.size());
+
+        for (BlockPos candidate : results) {
+            long dx = candidate.getX() - pos.getX();
+            long dz = candidate.getZ() - pos.getZ();
+            if (dx * dx + dz * dz <= maxDistanceSq) inRange.add(candidate);
+        }
+
+        return inRange.iterator();
+    }
+
     // ========== AbyStronghold Algorithm ==========
     // Based on MapGenAbyStronghold.checkBiomes()
 
@@ -402,7 +448,7 @@ public class AbyssalCraftStructureProvider implements StructureProvider {
      */
     private List<BlockPos> calculateAbyStrongholdPositions(World world, long seed) {
         List<BlockPos> positions = new ArrayList<>();
-        BiomeProvider biomeProvider = world.getBiomeProvider();
+        BiomeLookupCache biomes = BiomeLookupCache.forWorld(world);
 
         Random random = new Random();
         random.setSeed(seed);
@@ -424,7 +470,7 @@ public class AbyssalCraftStructureProvider implements StructureProvider {
             int chunkZ = (int) Math.round(Math.sin(angle) * d0);
 
             // Try to find valid biome position (within 112 blocks)
-            BlockPos biomePos = biomeProvider.findBiomePosition(
+            BlockPos biomePos = biomes.findBiomePosition(
                 (chunkX << 4) + 8, (chunkZ << 4) + 8, 112,
                 Collections.singletonList(abyssalWastelandsBiome), random);
 
@@ -4,14 +4,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
 import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
 
+import com.google.common.collect.Iterators;
+
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
@@ -20,10 +24,14 @@ import net.minecraftforge.fml.common.Loader;
 
 import com.simplestructurescanner.SimpleStructureScanner;
 import com.simplestructurescanner.structure.DimensionInfo;
+import com.simplestructurescanner.structure.DistanceOrderedSearch;
+import com.simplestructurescanner.structure.RingIterator;
+import com.simplestructurescanner.structure.StructureIndex;
 import com.simplestructurescanner.structure.StructureInfo;
 import com.simplestructurescanner.structure.StructureInfo.EntityEntry;
 import com.simplestructurescanner.structure.StructureInfo.LootEntry;
 import com.simplestructurescanner.structure.StructureLocation;
+import com.simplestructurescanner.structure.StructurePositionCache;
 import com.simplestructurescanner.structure.StructureProvider;
 
 
@@ -43,6 +51,10 @@ public class AetherStructureProvider implements StructureProvider {
     private static final Map<Long, List<BlockPos>> silverDungeonCache = new HashMap<>();
     private static final Map<Long, List<BlockPos>> goldDungeonCache = new HashMap<>();
 
+    // Version of the dungeon placement algorithm stored in the persisted structure indexes.
+    // Bump when the algorithm changes its results, so the indexes are reset.
+    private static final int ALGORITHM_VERSION = 1;
+
     // Default config values from AetherConfig (we don't hardcode dependency on config class)
     private static final int SILVER_GRID_SIZE = 6;
     private static final int GOLD_GRID_SIZE = 10;
@@ -254,6 +266,11 @@ public class AetherStructureProvider implements StructureProvider {
         return !structureId.getPath().equals("bronze_dungeon");
     }
 
+    @Override
+    public boolean isSeedOnlySearch(ResourceLocation structureId) {
+        return true;
+    }
+
     @Override
     @Nullable
     public StructureInfo getStructureInfo(ResourceLocation structureId) {
@@ -274,14 +291,14 @@ public class AetherStructureProvider implements StructureProvider {
         }
 
         String path = structureId.getPath();
-        List<BlockPos> candidates = getCachedDungeons(path, pos, seed);
+        List<BlockPos> candidates = getCachedDungeons(StructureIndex.forWorld(world), path, seed);
         if (candidates.isEmpty()) return null;
 
         // Make a copy for sorting
         candidates = new ArrayList<>(candidates);
         sortByDistance(candidates, pos);
 
-        // Apply filter and skip to find the target
+        // Apply filter and skip to find the target, then look one result ahead so "next" stays available
         int validIndex = 0;
         int totalValid = 0;
         BlockPos targetPos = null;
@@ -289,10 +306,17 @@ public class AetherStructureProvider implements StructureProvider {
         for (BlockPos candidate : candidates) {
             if (locationFilter != null && !locationFilter.test(candidate)) continue;
 
-            if (validIndex == skipCount && targetPos == null) targetPos = candidate;
+            if (targetPos != null) {
+                totalValid++;
+                break;
+            }
+
+            if (validIndex == skipCount) {
+                targetPos = candidate;
+                totalValid = skipCount + 1;
+            }
 
             validIndex++;
-            totalValid++;
         }
 
         if (targetPos == null) return null;
@@ -317,27 +341,85 @@ public class AetherStructureProvider implements StructureProvider {
         if (seed == null) return Collections.emptyList();
 
         String path = structureId.getPath();
-        List<BlockPos> results = new ArrayList<>(getCachedDungeons(path, pos, seed));
+        List<BlockPos> results = new ArrayList<>(getCachedDungeons(StructureIndex.forWorld(world), path, seed));
         sortByDistance(results, pos);
         results = results.subList(0, Math.min(maxResults, results.size()));
 
         // Add Y coordinates to the results
         List<BlockPos> resultsWithY = new ArrayList<>(results.size());
-        for (BlockPos structurePos : results) {
-            int chunkX = structurePos.getX() >> 4;
-            int chunkZ = structurePos.getZ() >> 4;
-            int yOffset = calculateStructureYOffset(path, seed, chunkX, chunkZ);
-
-            if (yOffset >= 0) {
-                resultsWithY.add(new BlockPos(structurePos.getX(), yOffset, structurePos.getZ()));
-            } else {
-                resultsWithY.add(structurePos);
-            }
-        }
+        for (BlockPos structurePos : results) resultsWithY.add(withStructureY(path, seed, structurePos));
 
         return resultsWithY;
     }
 
+    @Override
+    public int getSearchDistance(ResourceLocation structureId) {
+        // The area findAllNearby covers, a dungeon type made impossible by the config doesn't search forever
+        return 200 * 16;
+    }
+
+    @Override
+    public Iterator<BlockPos> iterateByDistance(World world, ResourceLocation structureId, BlockPos pos, int maxDistance) {
+        if (world == null || !canBeSearched(structureId)) return Collections.emptyIterator();
+        if (world.provider.getDimension() != aetherDimensionId) return Collections.emptyIterator();
+
+        Long seed = getWorldSeed(world);
+        if (seed == null) return Collections.emptyIterator();
+
+        String path = structureId.getPath();
+        int gridSize;
+        int primaryChance;
+        int secondaryChance;
+        int offsetX;
+        int offsetZ;
+
+        switch (path) {
+            case "silver_dungeon":
+                gridSize = SILVER_GRID_SIZE;
+                primaryChance = silverPrimaryChance;
+                secondaryChance = silverSecondaryChance;
+                offsetX = SILVER_OFFSET_X;
+                offsetZ = SILVER_OFFSET_Z;
+                break;
+
+            case "gold_dungeon":
+                gridSize = GOLD_GRID_SIZE;
+                primaryChance = goldPrimaryChance;
+                secondaryChance = goldSecondaryChance;
+                offsetX = GOLD_OFFSET_X;
+                offsetZ = GOLD_OFFSET_Z;
+                break;
+
+            default:
+                return Collections.emptyIterator();
+        }
+
+        // One cell per grid-aligned chunk; the dungeon offset always stays inside its cell
+        DistanceOrderedSearch.CellEvaluator evaluator = (cellX, cellZ) -> {
+            int chunkX = cellX * gridSize;
+            int chunkZ = cellZ * gridSize;
+            if (!canSpawnStructureAtCoords(seed, chunkX, chunkZ, gridSize, primaryChance, secondaryChance)) return null;
+
+            return new BlockPos((chunkX << 4) + offsetX, 0, (chunkZ << 4) + offsetZ);
+        };
+
+        DistanceOrderedSearch search = new DistanceOrderedSearch(pos, gridSize * 16, maxDistance,
+            StructurePositionCache.cached(StructureIndex.forWorld(world), getIndexVersion(primaryChance, secondaryChance),
+                seed, PROVIDER_ID + ":" + path, gridSize * 16, DistanceOrderedSearch.perCell(evaluator)));
+
+        return Iterators.transform(search, structurePos -> withStructureY(path, seed, structurePos));
+    }
+
+    /**
+     * Replace Y with the deterministic structure Y, when it can be calculated.
+     */
+    private BlockPos withStructureY(String structureType, long seed, BlockPos structurePos) {
+        int yOffset = calculateStructureYOffset(structureType, seed, structurePos.getX() >> 4, structurePos.getZ() >> 4);
+        if (yOffset < 0) return structurePos;
+
+        return new BlockPos(structurePos.getX(), yOffset, structurePos.getZ());
+    }
+
     private void sortByDistance(List<BlockPos> positions, BlockPos from) {
         final int px = from.getX();
         final int pz = from.getZ();
@@ -369,20 +451,20 @@ public class AetherStructureProvider implements StructureProvider {
     private static final int GOLD_OFFSET_Z = 2 + 60;    // 62
 
     /**
-     * Get cached dungeon positions or calculate and cache them.
+     * Get cached dungeon positions, or load them from the world's index, or calculate them.
      */
-    private List<BlockPos> getCachedDungeons(String structureType, BlockPos pos, long seed) {
+    private synchronized List<BlockPos> getCachedDungeons(@Nullable StructureIndex index, String structureType, long seed) {
         switch (structureType) {
             case "silver_dungeon":
                 if (!silverDungeonCache.containsKey(seed)) {
-                    silverDungeonCache.put(seed, calculateAllDungeons(seed, SILVER_GRID_SIZE,
+                    silverDungeonCache.put(seed, loadOrCalculateDungeons(index, structureType, seed, SILVER_GRID_SIZE,
                         silverPrimaryChance, silverSecondaryChance, SILVER_OFFSET_X, SILVER_OFFSET_Z));
                 }
                 return silverDungeonCache.get(seed);
 
             case "gold_dungeon":
                 if (!goldDungeonCache.containsKey(seed)) {
-                    goldDungeonCache.put(seed, calculateAllDungeons(seed, GOLD_GRID_SIZE,
+                    goldDungeonCache.put(seed, loadOrCalculateDungeons(index, structureType, seed, GOLD_GRID_SIZE,
                         goldPrimaryChance, goldSecondaryChance, GOLD_OFFSET_X, GOLD_OFFSET_Z));
                 }
                 return goldDungeonCache.get(seed);
@@ -392,6 +474,29 @@ public class AetherStructureProvider implements StructureProvider {
         }
     }
 
+    private List<BlockPos> loadOrCalculateDungeons(@Nullable StructureIndex index, String structureType, long seed,
+            int gridSize, int primaryChance, int secondaryChance, int offsetX, int offsetZ) {
+        String indexKey = PROVIDER_ID + ":" + structureType;
+        int indexVersion = getIndexVersion(primaryChance, secondaryChance);
+
+        if (index != null) {
+            List<BlockPos> stored = index.readPositions(indexKey, indexVersion, seed);
+            if (stored != null) return stored;
+        }
+
+        List<BlockPos> dungeons = calculateAllDungeons(seed, gridSize, primaryChance, secondaryChance, offsetX, offsetZ);
+        if (index != null) index.writePositions(indexKey, indexVersion, seed, dungeons);
+
+        return dungeons;
+    }
+
+    /**
+     * Index version for a dungeon type. The spawn chances come from the Aether config, so they are part of it.
+     */
+    private int getIndexVersion(int primaryChance, int secondaryChance) {
+        return Objects.hash(ALGORITHM_VERSION, primaryChance, secondaryChance);
+    }
+
     /**
      * Calculate all dungeon positions for a given seed and cache them.
      * Uses the same algorithm as Aether's MapGenSilverDungeon/MapGenGoldenDungeon.
@@ -406,8 +511,18 @@ public class AetherStructureProvider implements StructureProvider {
         // Search a large area (200 chunks in each direction from origin)
         int searchRadius = 200;
 
-        for (int chunkX = -searchRadius; chunkX <= searchRadius; chunkX++) {
-            for (int chunkZ = -searchRadius; chunkZ <= searchRadius; chunkZ++) {
+        // Only grid-aligned chunks can pass canSpawnStructureAtCoords, so walk the grid cells
+        // (spiralling out from origin) instead of every chunk in the area
+        int gridRadius = searchRadius / gridSize;
+        RingIterator ring = new RingIterator(0, 0);
+
+        for (int radius = 0; radius <= gridRadius; radius++) {
+            ring.startRing(radius);
+
+            while (ring.next()) {
+                int chunkX = ring.getX() * gridSize;
+                int chunkZ = ring.getZ() * gridSize;
+
                 if (canSpawnStructureAtCoords(seed, chunkX, chunkZ, gridSize, primaryChance, secondaryChance)) {
                     BlockPos structurePos = new BlockPos((chunkX << 4) + offsetX, 0, (chunkZ << 4) + offsetZ);
                     results.add(structurePos);
@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -15,6 +16,8 @@ import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
+import com.google.common.collect.Iterators;
+
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Biomes;
@@ -26,11 +29,16 @@ import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
-import net.minecraft.world.biome.BiomeProvider;
 import net.minecraft.util.text.translation.I18n;
 
 import com.simplestructurescanner.SimpleStructureScanner;
+import com.simplestructurescanner.structure.BatchedBiomeCheck;
+import com.simplestructurescanner.structure.BiomeLookupCache;
 import com.simplestructurescanner.structure.DimensionInfo;
+import com.simplestructurescanner.structure.DistanceOrderedSearch;
+import com.simplestructurescanner.structure.ParallelRingPlacement;
+import com.simplestructurescanner.structure.RegionSeedEngine;
+import com.simplestructurescanner.structure.StructureIndex;
 import com.simplestructurescanner.structure.StructureInfo;
 import com.simplestructurescanner.structure.StructureInfo.BlockEntry;
 import com.simplestructurescanner.structure.StructureInfo.LootEntry;
@@ -38,6 +46,7 @@ import com.simplestructurescanner.structure.StructureInfo.EntityEntry;
 import com.simplestructurescanner.structure.StructureInfo.StructureLayer;
 import com.simplestructurescanner.structure.StructureLocation;
 import com.simplestructurescanner.structure.StructureNBTParser;
+import com.simplestructurescanner.structure.StructurePositionCache;
 import com.simplestructurescanner.structure.StructureProvider;
 import com.simplestructurescanner.structure.TerrainHeightCalculator;
 
@@ -54,10 +63,19 @@ public class VanillaStructureProvider implements StructureProvider {
     private List<ResourceLocation> knownStructures;
     private Map<ResourceLocation, StructureInfo> structureInfos = new HashMap<>();
 
-    // Cache: seed -> (structureType -> list of positions)
-    // Positions are sorted by distance to search origin when cached
-    private static final Map<Long, Map<String, List<BlockPos>>> positionCache = new HashMap<>();
-    private static final int MAX_CACHED_POSITIONS = 200;
+    // Ocean monuments sit on the sea floor, typically Y=39 (center), but surface is ~Y=63
+    private static final int MONUMENT_Y = 63;
+    private static final int FORTRESS_Y = 64;
+    private static final int FORTRESS_SALT = 30084232;
+
+    // Bump when a search algorithm changes its results, to reset the persisted structure indexes
+    private static final int ALGORITHM_VERSION = 1;
+
+    // Area biome rules from StructureOceanMonument and WoodlandMansion
+    private static final List<Biome> MONUMENT_SPAWN_BIOMES = Arrays.asList(Biomes.DEEP_OCEAN);
+    private static final List<Biome> MONUMENT_WATER_BIOMES = Arrays.asList(
+        Biomes.OCEAN, Biomes.DEEP_OCEAN, Biomes.RIVER, Biomes.FROZEN_OCEAN, Biomes.FROZEN_RIVER);
+    private static final List<Biome> MANSION_BIOMES = Arrays.asList(Biomes.ROOFED_FOREST, Biomes.MUTATED_ROOFED_FOREST);
 
     public VanillaStructureProvider() {
     }
@@ -774,6 +792,19 @@ public class VanillaStructureProvider implements StructureProvider {
         return knownStructures.contains(structureId) && !structureId.getPath().equals("dungeon");
     }
 
+    @Override
+    public boolean isSeedOnlySearch(ResourceLocation structureId) {
+        // The others check biomes, or estimate terrain heights from them
+        switch (structureId.getPath()) {
+            case "stronghold":
+            case "fortress":
+            case "mineshaft":
+                return true;
+            default:
+                return false;
+        }
+    }
+
     @Override
     @Nullable
     public StructureInfo getStructureInfo(ResourceLocation structureId) {
@@ -794,34 +825,43 @@ public class VanillaStructureProvider implements StructureProvider {
             return null;
         }
 
-        // Get cached or generate positions
-        List<BlockPos> candidates = getCachedPositions(world, path, pos, seed);
-        if (candidates.isEmpty()) return null;
-
-        // Sort by distance (Y-agnostic - only use X and Z)
-        sortByDistance(candidates, pos);
-
-        // Apply filter and skip to find the target
+        // Positions come nearest first, so only walk as far as the requested result
+        BiomeLookupCache biomes = BiomeLookupCache.forWorld(world);
+        BatchedBiomeCheck biomeCheck = new BatchedBiomeCheck(biomes);
+        Iterator<BlockPos> search = createSearch(world, path, pos, seed, getDefaultSearchDistance(path), biomeCheck);
         int validIndex = 0;
-        int totalValid = 0;
         BlockPos targetPos = null;
 
-        for (BlockPos candidate : candidates) {
+        while (search.hasNext()) {
+            BlockPos candidate = search.next();
             if (locationFilter != null && !locationFilter.test(candidate)) continue;
 
-            if (validIndex == skipCount && targetPos == null) targetPos = candidate;
+            if (validIndex == skipCount) {
+                targetPos = candidate;
+                break;
+            }
 
             validIndex++;
-            totalValid++;
         }
 
         if (targetPos == null) return null;
 
+        // Look one result ahead so "next" stays available, without computing every remaining position
+        int totalValid = skipCount + 1;
+        while (search.hasNext()) {
+            BlockPos candidate = search.next();
+            if (locationFilter != null && !locationFilter.test(candidate)) continue;
+
+            totalValid++;
+            break;
+        }
+
+        logBiomeChecks(path, biomeCheck);
+
         // Calculate terrain height for surface structures with Y=0
         if (targetPos.getY() == 0 && isSurfaceStructure(path)) {
-            TerrainHeightCalculator heightCalc = new TerrainHeightCalculator(seed, world.getBiomeProvider());
-            int terrainY = heightCalc.getTerrainHeight(targetPos.getX(), targetPos.getZ());
-            targetPos = new BlockPos(targetPos.getX(), terrainY, targetPos.getZ());
+            TerrainHeightCalculator heightCalc = new TerrainHeightCalculator(seed, biomes);
+            targetPos = withTerrainHeight(targetPos, heightCalc);
         }
 
         boolean yAgnostic = targetPos.getY() == 0;
@@ -829,20 +869,6 @@ public class VanillaStructureProvider implements StructureProvider {
         return new StructureLocation(targetPos, skipCount, totalValid, yAgnostic);
     }
 
-    /**
-     * Get cached positions or generate and cache them.
-     */
-    private List<BlockPos> getCachedPositions(World world, String structureType, BlockPos searchPos, long seed) {
-        Map<String, List<BlockPos>> seedCache = positionCache.computeIfAbsent(seed, k -> new HashMap<>());
-
-        if (!seedCache.containsKey(structureType)) {
-            List<BlockPos> positions = findStructuresByType(world, structureType, searchPos, seed, MAX_CACHED_POSITIONS);
-            seedCache.put(structureType, positions);
-        }
-
-        return new ArrayList<>(seedCache.get(structureType));
-    }
-
     @Override
     public List<BlockPos> findAllNearby(World world, ResourceLocation structureId, BlockPos pos, int maxResults) {
         if (world == null) return Collections.emptyList();
@@ -856,21 +882,20 @@ public class VanillaStructureProvider implements StructureProvider {
             return Collections.emptyList();
         }
 
-        List<BlockPos> candidates = findStructuresByType(world, path, pos, seed, maxResults);
+        BiomeLookupCache biomes = BiomeLookupCache.forWorld(world);
+        BatchedBiomeCheck biomeCheck = new BatchedBiomeCheck(biomes);
+        Iterator<BlockPos> search = createSearch(world, path, pos, seed, getDefaultSearchDistance(path), biomeCheck);
+        List<BlockPos> candidates = new ArrayList<>();
+        while (candidates.size() < maxResults && search.hasNext()) candidates.add(search.next());
+
+        logBiomeChecks(path, biomeCheck);
 
         // Calculate terrain heights for surface structures
         if (isSurfaceStructure(path) && !candidates.isEmpty()) {
-            TerrainHeightCalculator heightCalc = new TerrainHeightCalculator(seed, world.getBiomeProvider());
+            TerrainHeightCalculator heightCalc = new TerrainHeightCalculator(seed, biomes);
             List<BlockPos> withHeights = new ArrayList<>(candidates.size());
 
-            for (BlockPos candidate : candidates) {
-                if (candidate.getY() == 0) {
-                    int terrainY = heightCalc.getTerrainHeight(candidate.getX(), candidate.getZ());
-                    withHeights.add(new BlockPos(candidate.getX(), terrainY, candidate.getZ()));
-                } else {
-                    withHeights.add(candidate);
-                }
-            }
+            for (BlockPos candidate : candidates) withHeights.add(withTerrainHeight(candidate, heightCalc));
 
             return withHeights;
         }
@@ -878,23 +903,52 @@ public class VanillaStructureProvider implements StructureProvider {
         return candidates;
     }
 
+    @Override
+    public int getSearchDistance(ResourceLocation structureId) {
+        return getDefaultSearchDistance(structureId.getPath());
+    }
+
+    @Override
+    public Iterator<BlockPos> iterateByDistance(World world, ResourceLocation structureId, BlockPos pos, int maxDistance) {
+        if (world == null || !canBeSearched(structureId)) return Collections.emptyIterator();
+
+        String path = structureId.getPath();
+        Long seed = getWorldSeed(world);
+
+        if (seed == null) {
+            SimpleStructureScanner.LOGGER.warn("Could not get world seed for structure search");
+            return Collections.emptyIterator();
+        }
+
+        BiomeLookupCache biomes = BiomeLookupCache.forWorld(world);
+        BatchedBiomeCheck biomeCheck = new BatchedBiomeCheck(biomes);
+        Iterator<BlockPos> search = createSearch(world, path, pos, seed, maxDistance, biomeCheck);
+        if (!isSurfaceStructure(path)) return search;
+
+        TerrainHeightCalculator heightCalc = new TerrainHeightCalculator(seed, biomes);
+
+        return Iterators.transform(search, candidate -> withTerrainHeight(candidate, heightCalc));
+    }
+
     /**
-     * Sorts positions by horizontal distance from the given position.
+     * Log how much biome generation work a search did.
      */
-    private void sortByDistance(List<BlockPos> positions, BlockPos from) {
-        final int px = from.getX();
-        final int pz = from.getZ();
-
-        positions.sort((a, b) -> {
-            // Cast to long to avoid integer overflow for large distances
-            long dxA = a.getX() - px;
-            long dzA = a.getZ() - pz;
-            long dxB = b.getX() - px;
-            long dzB = b.getZ() - pz;
-            long distA = dxA * dxA + dzA * dzA;
-            long distB = dxB * dxB + dzB * dzB;
-            return Long.compare(distA, distB);
-        });
+    private void logBiomeChecks(String structureType, BatchedBiomeCheck biomeCheck) {
+        if (biomeCheck.getPointChecks() == 0 && biomeCheck.getAreaChecks() == 0) return;
+
+        SimpleStructureScanner.LOGGER.debug("Search for {}: {} point biome checks, {} area biome checks, {} rejected",
+            structureType, biomeCheck.getPointChecks(), biomeCheck.getAreaChecks(), biomeCheck.getRejected());
+    }
+
+    /**
+     * Replace Y=0 with the estimated terrain height (surface structures only).
+     */
+    private BlockPos withTerrainHeight(BlockPos candidate, TerrainHeightCalculator heightCalc) {
+        if (candidate.getY() != 0) return candidate;
+
+        int terrainY = heightCalc.getTerrainHeight(candidate.getX(), candidate.getZ());
+
+        return new BlockPos(candidate.getX(), terrainY, candidate.getZ());
     }
 
     /**
@@ -928,52 +982,102 @@ public class VanillaStructureProvider implements StructureProvider {
     }
 
     /**
-     * Find structures of a given type using seed-based algorithms.
+     * Search distance (in blocks) used by findNearest and findAllNearby.
+     * Matches the ring counts the searches used before, to bound the work for structures that may not exist at all
+     * (e.g. monuments in a world without deep oceans).
+     */
+    private int getDefaultSearchDistance(String structureType) {
+        switch (structureType) {
+            case "village":
+            case "desert_temple":
+            case "jungle_temple":
+            case "witch_hut":
+            case "igloo":
+            case "monument":
+                return 20 * 32 * 16;  // 20 regions of 32 chunks
+
+            case "mansion":
+                return 30 * 80 * 16;  // Mansions are very rare, search further
+
+            case "fortress":
+                return 10 * 16 * 16;
+
+            case "endcity":
+            case "end_ship":
+                return 15 * 20 * 16;
+
+            case "mineshaft":
+                return 150 * 16;
+
+            default:
+                return Integer.MAX_VALUE;  // Strongholds: fixed set of 128
+        }
+    }
+
+    /**
+     * Create a lazy, distance-ordered search for a structure type using seed-based algorithms.
+     * @param biomeCheck Biome validation shared by the search's rings, also records its lookup counts
      */
-    private List<BlockPos> findStructuresByType(World world, String structureType, BlockPos pos, long seed, int maxResults) {
+    private Iterator<BlockPos> createSearch(World world, String structureType, BlockPos pos, long seed, int maxDistance,
+            BatchedBiomeCheck biomeCheck) {
+        StructureIndex index = StructureIndex.forWorld(world);
+
         switch (structureType) {
             case "village":
                 // Village uses spacing=32, separation=8, salt=10387312
-                return findVillages(world, pos, seed, maxResults);
+                return searchVillages(pos, seed, index, maxDistance, biomeCheck);
 
             case "desert_temple":
             case "jungle_temple":
             case "witch_hut":
             case "igloo":
                 // All temples share spacing=32, separation=8, salt=14357617
-                return findTemples(world, pos, seed, structureType, maxResults);
+                return searchTemples(pos, seed, index, structureType, maxDistance, biomeCheck);
 
             case "monument":
-                return findOceanMonuments(world, pos, seed, maxResults);
+                return searchOceanMonuments(pos, seed, index, maxDistance, biomeCheck);
 
             case "mansion":
-                return findWoodlandMansions(world, pos, seed, maxResults);
+                return searchWoodlandMansions(pos, seed, index, maxDistance, biomeCheck);
 
             case "stronghold":
-                return findStrongholds(world, pos, seed, maxResults);
+                return searchStrongholds(pos, seed, maxDistance);
 
             case "fortress":
-                return findNetherFortresses(world, pos, seed, maxResults);
+                return searchNetherFortresses(pos, seed, index, maxDistance);
 
             case "endcity":
             case "end_ship":
-                return findEndCities(world, pos, seed, maxResults);
+                return searchEndCities(pos, seed, index, maxDistance);
 
             case "mineshaft":
-                return findMineshafts(world, pos, seed, maxResults);
+                return searchMineshafts(pos, seed, index, maxDistance);
 
             default:
-                return Collections.emptyList();
+                return Collections.emptyIterator();
         }
     }
 
+    /**
+     * Distance-ordered search over a structure grid, sharing evaluated cells with other searches of the same seed
+     * and with the world's persistent index.
+     */
+    private Iterator<BlockPos> cachedSearch(String structureType, long seed, @Nullable StructureIndex index, BlockPos pos,
+            int cellSize, int maxDistance, DistanceOrderedSearch.RingEvaluator evaluator) {
+        String cacheKey = PROVIDER_ID + ":" + structureType;
+
+        return new DistanceOrderedSearch(pos, cellSize, maxDistance,
+            StructurePositionCache.cached(index, ALGORITHM_VERSION, seed, cacheKey, cellSize, evaluator));
+    }
+
     // ========== Village Algorithm ==========
 
     /**
-     * Find villages using MC 1.12 algorithm.
+     * Search villages using MC 1.12 algorithm.
      * Villages have their own salt (10387312) separate from temples.
      */
-    private List<BlockPos> findVillages(World world, BlockPos pos, long seed, int maxResults) {
+    private Iterator<BlockPos> searchVillages(BlockPos pos, long seed, @Nullable StructureIndex index, int maxDistance,
+            BatchedBiomeCheck biomeCheck) {
         Set<Biome> validBiomes = new HashSet<>();
         validBiomes.add(Biomes.PLAINS);
         validBiomes.add(Biomes.DESERT);
@@ -983,7 +1087,7 @@ public class VanillaStructureProvider implements StructureProvider {
         validBiomes.add(Biomes.MUTATED_PLAINS);
         validBiomes.add(Biomes.SAVANNA_PLATEAU);
 
-        return findScatteredFeature(world, pos, seed, 32, 8, 10387312, maxResults, validBiomes);
+        return searchScatteredFeature("village", pos, seed, index, 32, 8, 10387312, maxDistance, validBiomes, biomeCheck);
     }
 
     /**
@@ -992,74 +1096,39 @@ public class VanillaStructureProvider implements StructureProvider {
      *
      * @param validBiomes If null, skips biome checking (finds all grid positions)
      */
-    private List<BlockPos> findScatteredFeature(World world, BlockPos pos, long seed,
-            int maxDist, int minDist, int salt, int maxResults, @Nullable Set<Biome> validBiomes) {
-
-        List<BlockPos> results = new ArrayList<>();
-        Set<Long> checkedRegions = new HashSet<>();
-        BiomeProvider biomeProvider = world.getBiomeProvider();
-
-        // Player's region coordinates
-        int playerRegionX = Math.floorDiv(pos.getX() >> 4, maxDist);
-        int playerRegionZ = Math.floorDiv(pos.getZ() >> 4, maxDist);
+    private Iterator<BlockPos> searchScatteredFeature(String structureType, BlockPos pos, long seed,
+            @Nullable StructureIndex index, int maxDist, int minDist, int salt, int maxDistance,
+            @Nullable Set<Biome> validBiomes, BatchedBiomeCheck biomeCheck) {
+        ParallelRingPlacement placement = new ParallelRingPlacement((engine, regionX, regionZ) ->
+            engine.getUniformRegionChunk(seed, maxDist, minDist, salt, regionX, regionZ));
 
         // Search outward in regions (not chunks) - much more efficient
-        int searchRadiusRegions = 20;
-
-        for (int dist = 0; dist <= searchRadiusRegions && results.size() < maxResults; dist++) {
-            for (int dx = -dist; dx <= dist; dx++) {
-                for (int dz = -dist; dz <= dist; dz++) {
-                    // Only check the perimeter at this distance (expanding square)
-                    if (dist > 0 && Math.abs(dx) != dist && Math.abs(dz) != dist) continue;
-
-                    int regionX = playerRegionX + dx;
-                    int regionZ = playerRegionZ + dz;
-
-                    // Avoid duplicate region checks
-                    long regionKey = ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
-                    if (checkedRegions.contains(regionKey)) continue;
-                    checkedRegions.add(regionKey);
-
-                    // Get the structure position for this region directly
-                    BlockPos structurePos = getScatteredFeaturePosForRegion(seed, maxDist, minDist, salt, regionX, regionZ);
-
-                    // Check biome using BiomeProvider (fast, doesn't load chunks)
-                    if (validBiomes != null) {
-                        Biome biome = biomeProvider.getBiome(structurePos);
-                        if (!validBiomes.contains(biome)) continue;
-                    }
-
-                    results.add(structurePos);
-                }
-            }
-        }
-
-        return results;
+        return cachedSearch(structureType, seed, index, pos, maxDist * 16, maxDistance, (regions, count, results) -> {
+            // Place the whole ring from the seed first, then check biomes in one pass
+            long[] chunks = placement.place(regions, count);
+            int valid = validBiomes != null ? biomeCheck.filterByPoint(chunks, count, validBiomes) : count;
+            for (int i = 0; i < valid; i++) results.accept(chunkCenterPos(chunks[i], 0));
+        });
     }
 
     /**
-     * Get the structure position for a specific region.
+     * Block position at the center of a packed chunk, at the given Y.
      */
-    private BlockPos getScatteredFeaturePosForRegion(long seed, int maxDist, int minDist, int salt, int regionX, int regionZ) {
-        Random random = new Random();
-        random.setSeed((long) regionX * 341873128712L + (long) regionZ * 132897987541L + seed + (long) salt);
-
-        int offsetX = random.nextInt(maxDist - minDist);
-        int offsetZ = random.nextInt(maxDist - minDist);
-
-        int structChunkX = regionX * maxDist + offsetX;
-        int structChunkZ = regionZ * maxDist + offsetZ;
-
-        return new BlockPos(structChunkX * 16 + 8, 0, structChunkZ * 16 + 8);
+    private static BlockPos chunkCenterPos(long chunk, int y) {
+        return new BlockPos(
+            RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkX(chunk)),
+            y,
+            RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkZ(chunk)));
     }
 
     // ========== Temple Algorithm (Desert Temple, Jungle Temple, Witch Hut, Igloo) ==========
 
     /**
-     * Find temples using MC 1.12 algorithm.
+     * Search temples using MC 1.12 algorithm.
      * All temple types share the same grid (salt=14357617) but filter by biome.
      */
-    private List<BlockPos> findTemples(World world, BlockPos pos, long seed, String templeType, int maxResults) {
+    private Iterator<BlockPos> searchTemples(BlockPos pos, long seed, @Nullable StructureIndex index, String templeType, int maxDistance,
+            BatchedBiomeCheck biomeCheck) {
         Set<Biome> validBiomes = new HashSet<>();
 
         switch (templeType) {
@@ -1087,154 +1156,90 @@ public class VanillaStructureProvider implements StructureProvider {
                 break;
         }
 
-        return findScatteredFeature(world, pos, seed, 32, 8, 14357617, maxResults, validBiomes);
+        return searchScatteredFeature(templeType, pos, seed, index, 32, 8, 14357617, maxDistance, validBiomes, biomeCheck);
     }
 
     // ========== Ocean Monument Algorithm ==========
 
     /**
-     * Find ocean monuments using MC 1.12 algorithm.
+     * Search ocean monuments using MC 1.12 algorithm.
      * Monuments use spacing=32, separation=5, salt=10387313.
      * Iterates over regions for efficiency.
      */
-    private List<BlockPos> findOceanMonuments(World world, BlockPos pos, long seed, int maxResults) {
-        List<BlockPos> results = new ArrayList<>();
-        Set<Long> checkedRegions = new HashSet<>();
-        BiomeProvider biomeProvider = world.getBiomeProvider();
+    private Iterator<BlockPos> searchOceanMonuments(BlockPos pos, long seed, @Nullable StructureIndex index, int maxDistance,
+            BatchedBiomeCheck biomeCheck) {
+        Set<Biome> centerBiomes = new HashSet<>(MONUMENT_SPAWN_BIOMES);
 
         int maxDist = 32;
         int minDist = 5;
         int salt = 10387313;
 
-        int playerRegionX = Math.floorDiv(pos.getX() >> 4, maxDist);
-        int playerRegionZ = Math.floorDiv(pos.getZ() >> 4, maxDist);
-
-        int searchRadiusRegions = 20;
-
-        for (int dist = 0; dist <= searchRadiusRegions && results.size() < maxResults; dist++) {
-            for (int dx = -dist; dx <= dist; dx++) {
-                for (int dz = -dist; dz <= dist; dz++) {
-                    if (dist > 0 && Math.abs(dx) != dist && Math.abs(dz) != dist) continue;
-
-                    int regionX = playerRegionX + dx;
-                    int regionZ = playerRegionZ + dz;
-
-                    long regionKey = ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
-                    if (checkedRegions.contains(regionKey)) continue;
-                    checkedRegions.add(regionKey);
-
-                    BlockPos structurePos = getMonumentPosForRegion(seed, maxDist, minDist, salt, regionX, regionZ);
+        ParallelRingPlacement placement = new ParallelRingPlacement((engine, regionX, regionZ) ->
+            engine.getTriangularRegionChunk(seed, maxDist, minDist, salt, regionX, regionZ));
 
-                    // Check biome using BiomeProvider (fast, doesn't load chunks)
-                    Biome biome = biomeProvider.getBiome(structurePos);
-                    if (biome != Biomes.DEEP_OCEAN) continue;
+        return cachedSearch("monument", seed, index, pos, maxDist * 16, maxDistance, (regions, count, results) -> {
+            long[] chunks = placement.place(regions, count);
 
-                    results.add(structurePos);
-                }
-            }
-        }
+            // Cheap center check first, so the area checks only run on the few deep ocean candidates
+            int valid = biomeCheck.filterByPoint(chunks, count, centerBiomes);
+            valid = biomeCheck.filterByArea(chunks, valid, 16, MONUMENT_SPAWN_BIOMES);
+            valid = biomeCheck.filterByArea(chunks, valid, 29, MONUMENT_WATER_BIOMES);
 
-        return results;
-    }
-
-    private BlockPos getMonumentPosForRegion(long seed, int maxDist, int minDist, int salt, int regionX, int regionZ) {
-        // FIXME: less than 50% chance to find a monument, something is wrong here
-        Random random = new Random();
-        random.setSeed((long) regionX * 341873128712L + (long) regionZ * 132897987541L + seed + (long) salt);
-
-        // Monument uses averaged offset (triangular distribution)
-        // MC formula: regionX * spacing + (rand(range) + rand(range)) / 2
-        int range = maxDist - minDist;
-        int offsetX = (random.nextInt(range) + random.nextInt(range)) / 2;
-        int offsetZ = (random.nextInt(range) + random.nextInt(range)) / 2;
-
-        int structChunkX = regionX * maxDist + offsetX;
-        int structChunkZ = regionZ * maxDist + offsetZ;
-
-        // Ocean monuments sit on the sea floor, typically Y=39 (center), but surface is ~Y=63
-        return new BlockPos(structChunkX * 16 + 8, 63, structChunkZ * 16 + 8);
+            for (int i = 0; i < valid; i++) results.accept(chunkCenterPos(chunks[i], MONUMENT_Y));
+        });
     }
 
     // ========== Woodland Mansion Algorithm ==========
 
     /**
-     * Find woodland mansions using MC 1.12 algorithm.
+     * Search woodland mansions using MC 1.12 algorithm.
      * Mansions use spacing=80, separation=20, salt=10387319.
      * Mansions are VERY rare - roofed forest biomes are uncommon.
      */
-    private List<BlockPos> findWoodlandMansions(World world, BlockPos pos, long seed, int maxResults) {
-        List<BlockPos> results = new ArrayList<>();
-        Set<Long> checkedRegions = new HashSet<>();
-        BiomeProvider biomeProvider = world.getBiomeProvider();
+    private Iterator<BlockPos> searchWoodlandMansions(BlockPos pos, long seed, @Nullable StructureIndex index, int maxDistance,
+            BatchedBiomeCheck biomeCheck) {
+        Set<Biome> centerBiomes = new HashSet<>(MANSION_BIOMES);
 
         int maxDist = 80;
         int minDist = 20;
         int salt = 10387319;
 
-        int playerRegionX = Math.floorDiv(pos.getX() >> 4, maxDist);
-        int playerRegionZ = Math.floorDiv(pos.getZ() >> 4, maxDist);
-
-        // Mansions are very rare, search further
-        int searchRadiusRegions = 30;
-
-        for (int dist = 0; dist <= searchRadiusRegions && results.size() < maxResults; dist++) {
-            for (int dx = -dist; dx <= dist; dx++) {
-                for (int dz = -dist; dz <= dist; dz++) {
-                    if (dist > 0 && Math.abs(dx) != dist && Math.abs(dz) != dist) continue;
-
-                    int regionX = playerRegionX + dx;
-                    int regionZ = playerRegionZ + dz;
-
-                    long regionKey = ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
-                    if (checkedRegions.contains(regionKey)) continue;
-                    checkedRegions.add(regionKey);
-
-                    BlockPos structurePos = getMansionPosForRegion(seed, maxDist, minDist, salt, regionX, regionZ);
-
-                    // Check biome using BiomeProvider
-                    Biome biome = biomeProvider.getBiome(structurePos);
-                    if (biome != Biomes.ROOFED_FOREST && biome != Biomes.MUTATED_ROOFED_FOREST) continue;
-
-                    results.add(structurePos);
-                }
-            }
-        }
-
-        return results;
-    }
-
-    private BlockPos getMansionPosForRegion(long seed, int maxDist, int minDist, int salt, int regionX, int regionZ) {
-        // FIXME: 1/10 chance to find a mansion, something is wrong here
-        Random random = new Random();
-        random.setSeed((long) regionX * 341873128712L + (long) regionZ * 132897987541L + seed + (long) salt);
+        ParallelRingPlacement placement = new ParallelRingPlacement((engine, regionX, regionZ) ->
+            engine.getTriangularRegionChunk(seed, maxDist, minDist, salt, regionX, regionZ));
 
-        // MC formula: regionX * spacing + (rand(range) + rand(range)) / 2
-        int range = maxDist - minDist;
-        int offsetX = (random.nextInt(range) + random.nextInt(range)) / 2;
-        int offsetZ = (random.nextInt(range) + random.nextInt(range)) / 2;
+        return cachedSearch("mansion", seed, index, pos, maxDist * 16, maxDistance, (regions, count, results) -> {
+            long[] chunks = placement.place(regions, count);
 
-        int structChunkX = regionX * maxDist + offsetX;
-        int structChunkZ = regionZ * maxDist + offsetZ;
+            // Cheap center check first, the 32 block area check is the expensive part
+            int valid = biomeCheck.filterByPoint(chunks, count, centerBiomes);
+            valid = biomeCheck.filterByArea(chunks, valid, 32, MANSION_BIOMES);
 
-        return new BlockPos(structChunkX * 16 + 8, 0, structChunkZ * 16 + 8);
+            for (int i = 0; i < valid; i++) results.accept(chunkCenterPos(chunks[i], 0));
+        });
     }
 
     // ========== Stronghold Algorithm ==========
 
     /**
-     * Find strongholds using Minecraft 1.12's ring-based algorithm.
+     * Search strongholds using Minecraft 1.12's ring-based algorithm.
      * In 1.12, there are 128 strongholds total, placed in concentric rings.
      * Ring 1: 3 strongholds at distance 1408-2688 blocks
      * Ring 2: 6 strongholds at distance 4480-5760 blocks
      * etc.
      */
-    private List<BlockPos> findStrongholds(World world, BlockPos pos, long seed, int maxResults) {
+    private Iterator<BlockPos> searchStrongholds(BlockPos pos, long seed, int maxDistance) {
         List<BlockPos> strongholds = calculateStrongholds(seed);
+        long maxDistanceSq = (long) maxDistance * maxDistance;
 
-        // Sort by distance from player
+        // Sort by distance from player, then drop the ones out of range
         strongholds.sort((a, b) -> Double.compare(a.distanceSq(pos), b.distanceSq(pos)));
+        strongholds.removeIf(p -> {
+            long dx = p.getX() - pos.getX();
+            long dz = p.getZ() - pos.getZ();
+            return dx * dx + dz * dz > maxDistanceSq;
+        });
 
-        return strongholds.subList(0, Math.min(maxResults, strongholds.size()));
+        return strongholds.iterator();
     }
 
     /**
@@ -1299,153 +1304,84 @@ public class VanillaStructureProvider implements StructureProvider {
     // ========== Nether Fortress Algorithm ==========
 
     /**
-     * Find nether fortresses using the fortress-specific algorithm.
+     * Search nether fortresses using the fortress-specific algorithm.
      * Fortresses generate one per 16x16 chunk region.
      */
-    private List<BlockPos> findNetherFortresses(World world, BlockPos pos, long seed, int maxResults) {
-        Set<Long> checkedRegions = new HashSet<>();
-        List<BlockPos> results = new ArrayList<>();
-
+    private Iterator<BlockPos> searchNetherFortresses(BlockPos pos, long seed, @Nullable StructureIndex index, int maxDistance) {
+        RegionSeedEngine engine = new RegionSeedEngine();
         int regionSize = 16;
-        int playerRegionX = Math.floorDiv(pos.getX() >> 4, regionSize);
-        int playerRegionZ = Math.floorDiv(pos.getZ() >> 4, regionSize);
-
-        int searchRadius = 10; // regions
 
-        for (int radius = 0; radius <= searchRadius && results.size() < maxResults; radius++) {
-            for (int dx = -radius; dx <= radius; dx++) {
-                for (int dz = -radius; dz <= radius; dz++) {
-                    if (radius > 0 && Math.abs(dx) != radius && Math.abs(dz) != radius) continue;
+        DistanceOrderedSearch.CellEvaluator evaluator = (regionX, regionZ) -> {
+            long chunk = getFortressChunk(engine, seed, regionSize, regionX, regionZ);
+            int blockX = RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkX(chunk));
+            int blockZ = RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkZ(chunk));
 
-                    int regionX = playerRegionX + dx;
-                    int regionZ = playerRegionZ + dz;
-
-                    long regionKey = ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
-                    if (checkedRegions.contains(regionKey)) continue;
-                    checkedRegions.add(regionKey);
-
-                    BlockPos fortressPos = getFortressPos(seed, regionSize, regionX, regionZ);
-                    if (fortressPos != null) results.add(fortressPos);
-                }
-            }
-        }
+            // Nether fortresses typically generate around Y=64 (middle of nether)
+            return new BlockPos(blockX, FORTRESS_Y, blockZ);
+        };
 
-        return results;
+        return cachedSearch("fortress", seed, index, pos, regionSize * 16, maxDistance, DistanceOrderedSearch.perCell(evaluator));
     }
 
     /**
-     * Get the fortress position in a region.
+     * Get the fortress chunk in a region, packed as in {@link RegionSeedEngine#packChunk}.
      */
-    @Nullable
-    private BlockPos getFortressPos(long seed, int regionSize, int regionX, int regionZ) {
+    private long getFortressChunk(RegionSeedEngine engine, long seed, int regionSize, int regionX, int regionZ) {
         // FIXME: broken algo - fortresses are not where they should be
-        Random random = new Random();
-        random.setSeed((long) regionX * 341873128712L + (long) regionZ * 132897987541L + seed + 30084232L);
-
-        int offsetX = random.nextInt(regionSize - 4);
-        int offsetZ = random.nextInt(regionSize - 4);
-
-        int chunkX = regionX * regionSize + offsetX;
-        int chunkZ = regionZ * regionSize + offsetZ;
-
-        // Nether fortresses typically generate around Y=64 (middle of nether)
-        return new BlockPos(chunkX * 16 + 8, 64, chunkZ * 16 + 8);
+        return engine.getUniformRegionChunk(seed, regionSize, 4, FORTRESS_SALT, regionX, regionZ);
     }
 
     // ========== End City Algorithm ==========
 
     /**
-     * Find end cities using the end city algorithm.
+     * Search end cities using the end city algorithm.
      * End cities generate on the outer End islands (beyond 1000 blocks from origin).
      */
-    private List<BlockPos> findEndCities(World world, BlockPos pos, long seed, int maxResults) {
-        Set<Long> checkedRegions = new HashSet<>();
-        List<BlockPos> results = new ArrayList<>();
-
+    private Iterator<BlockPos> searchEndCities(BlockPos pos, long seed, @Nullable StructureIndex index, int maxDistance) {
         int spacing = 20;
         int separation = 11;
         int salt = 10387313;
 
-        int playerRegionX = Math.floorDiv(pos.getX() >> 4, spacing);
-        int playerRegionZ = Math.floorDiv(pos.getZ() >> 4, spacing);
-
-        int searchRadius = 15;
-
-        for (int dist = 0; dist <= searchRadius && results.size() < maxResults; dist++) {
-            for (int dx = -dist; dx <= dist; dx++) {
-                for (int dz = -dist; dz <= dist; dz++) {
-                    if (dist > 0 && Math.abs(dx) != dist && Math.abs(dz) != dist) continue;
-
-                    int regionX = playerRegionX + dx;
-                    int regionZ = playerRegionZ + dz;
-
-                    long regionKey = ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
-                    if (checkedRegions.contains(regionKey)) continue;
-                    checkedRegions.add(regionKey);
-
-                    BlockPos structurePos = getEndCityPosForRegion(seed, spacing, separation, salt, regionX, regionZ);
+        ParallelRingPlacement placement = new ParallelRingPlacement((engine, regionX, regionZ) -> {
+            long chunk = engine.getTriangularRegionChunk(seed, spacing, separation, salt, regionX, regionZ);
+            long blockX = RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkX(chunk));
+            long blockZ = RegionSeedEngine.chunkCenter(RegionSeedEngine.unpackChunkZ(chunk));
 
-                    // End cities only generate beyond 1000 blocks from origin
-                    int blockX = structurePos.getX();
-                    int blockZ = structurePos.getZ();
-                    if ((long) blockX * blockX + (long) blockZ * blockZ < 1000L * 1000L) continue;
+            // End cities only generate beyond 1000 blocks from origin
+            if (blockX * blockX + blockZ * blockZ < 1000L * 1000L) return ParallelRingPlacement.NO_CHUNK;
 
-                    results.add(structurePos);
-                }
-            }
-        }
-
-        return results;
-    }
-
-    private BlockPos getEndCityPosForRegion(long seed, int spacing, int separation, int salt, int regionX, int regionZ) {
-        Random random = new Random();
-        random.setSeed((long) regionX * 341873128712L + (long) regionZ * 132897987541L + seed + salt);
-
-        int offsetX = (random.nextInt(spacing - separation) + random.nextInt(spacing - separation)) / 2;
-        int offsetZ = (random.nextInt(spacing - separation) + random.nextInt(spacing - separation)) / 2;
+            return chunk;
+        });
 
-        int chunkX = regionX * spacing + offsetX;
-        int chunkZ = regionZ * spacing + offsetZ;
+        return cachedSearch("endcity", seed, index, pos, spacing * 16, maxDistance, (regions, count, results) -> {
+            long[] chunks = placement.place(regions, count);
+            int valid = ParallelRingPlacement.compact(chunks, count);
 
-        return new BlockPos(chunkX * 16 + 8, 0, chunkZ * 16 + 8);
+            for (int i = 0; i < valid; i++) results.accept(chunkCenterPos(chunks[i], 0));
+        });
     }
 
     // ========== Mineshaft Algorithm ==========
 
     /**
-     * Find mineshafts using the mineshaft algorithm. Mineshafts are determined per-chunk based on seed.
+     * Search mineshafts using the mineshaft algorithm. Mineshafts are determined per-chunk based on seed.
      * Mineshafts are common (0.4% per chunk) but only far from spawn due to distance check.
      */
-    private List<BlockPos> findMineshafts(World world, BlockPos pos, long seed, int maxResults) {
+    private Iterator<BlockPos> searchMineshafts(BlockPos pos, long seed, @Nullable StructureIndex index, int maxDistance) {
         // FIXME: broken algo - mineshafts are not where they should be
-        List<BlockPos> results = new ArrayList<>();
-        int chunkX = pos.getX() >> 4;
-        int chunkZ = pos.getZ() >> 4;
+        ParallelRingPlacement placement = new ParallelRingPlacement((engine, cx, cz) ->
+            isMineshaftChunk(engine, seed, cx, cz) ? RegionSeedEngine.packChunk(cx, cz) : ParallelRingPlacement.NO_CHUNK);
 
-        // Search in a spiral pattern outward
+        // Search chunk by chunk in a spiral pattern outward
         // Mineshafts require distance from origin, so may need to search far
-        int maxSearchRadius = 150; // chunks
-
-        for (int radius = 0; radius <= maxSearchRadius && results.size() < maxResults; radius++) {
-            for (int dx = -radius; dx <= radius; dx++) {
-                for (int dz = -radius; dz <= radius; dz++) {
-                    // Only check the perimeter at this distance
-                    if (radius > 0 && Math.abs(dx) != radius && Math.abs(dz) != radius) continue;
+        return cachedSearch("mineshaft", seed, index, pos, 16, maxDistance, (cells, count, results) -> {
+            long[] chunks = placement.place(cells, count);
+            int valid = ParallelRingPlacement.compact(chunks, count);
 
-                    int cx = chunkX + dx;
-                    int cz = chunkZ + dz;
-
-                    if (isMineshaftChunk(seed, cx, cz)) {
-                        // Mineshafts generate between Y=10 and Y=60, typically starting around Y=35
-                        // There is no deterministic way to get exact Y without loading chunks, so use Y=0
-                        results.add(new BlockPos(cx * 16 + 8, 0, cz * 16 + 8));
-                    }
-                }
-            }
-        }
-
-        return results;
+            // Mineshafts generate between Y=10 and Y=60, typically starting around Y=35
+            // There is no deterministic way to get exact Y without loading chunks, so use Y=0
+            for (int i = 0; i < valid; i++) results.accept(chunkCenterPos(chunks[i], 0));
+        });
     }
 
     /**
@@ -1455,18 +1391,13 @@ public class VanillaStructureProvider implements StructureProvider {
      * 2. random.nextInt(80) < max(abs(chunkX), abs(chunkZ))
      * The second condition makes mineshafts more common further from spawn.
      */
-    private boolean isMineshaftChunk(long seed, int chunkX, int chunkZ) {
-        Random random = new Random();
-        random.setSeed(seed);
-
-        long a = random.nextLong();
-        long b = random.nextLong();
-        random.setSeed((long) chunkX * a ^ (long) chunkZ * b ^ seed);
+    private boolean isMineshaftChunk(RegionSeedEngine engine, long seed, int chunkX, int chunkZ) {
+        engine.setChunkSeed(seed, chunkX, chunkZ);
 
         // Both conditions must be met
-        if (random.nextDouble() >= 0.004) return false;
+        if (engine.nextDouble() >= 0.004) return false;
 
-        return random.nextInt(80) < Math.max(Math.abs(chunkX), Math.abs(chunkZ));
+        return engine.nextInt(80) < Math.max(Math.abs(chunkX), Math.abs(chunkZ));
     }
 
 }
@@ -0,0 +1,136 @@
+package com.simplestructurescanner.structure;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * Checks that {@link RegionSeedEngine} draws exactly what the previous {@code new Random(seed)} code drew,
+ * for every salt and spacing the vanilla searches use.
+ */
+public class RegionSeedEngineTest {
+    private static final long[] WORLD_SEEDS = {0L, 1L, -1L, 42L, 8675309L, -4172144997902289642L, Long.MAX_VALUE, Long.MIN_VALUE};
+
+    // Around the origin, plus regions near the world border where the seed products get large
+    private static final int[] REGIONS = {0, 1, -1, 2, -2, 7, -13, 100, -100, 1000, -1000, 117187, -117187, 1875000, -1875000};
+
+    @Test
+    public void randomMethodsMatch() {
+        RegionSeedEngine engine = new RegionSeedEngine();
+        int[] bounds = {1, 2, 3, 5, 16, 24, 27, 60, 64, 80, 1 << 30, Integer.MAX_VALUE};
+
+        for (long seed : WORLD_SEEDS) {
+            Random random = new Random(seed);
+            engine.setSeed(seed);
+
+            for (int i = 0; i < 1000; i++) {
+                int bound = bounds[i % bounds.length];
+                assertEquals(random.nextInt(bound), engine.nextInt(bound));
+                assertEquals(random.nextLong(), engine.nextLong());
+                assertEquals(Double.doubleToLongBits(random.nextDouble()), Double.doubleToLongBits(engine.nextDouble()));
+                assertEquals(Float.floatToIntBits(random.nextFloat()), Float.floatToIntBits(engine.nextFloat()));
+            }
+        }
+    }
+
+    @Test
+    public void villagesMatch() {
+        assertUniformRegionsMatch(32, 8, 10387312);
+    }
+
+    @Test
+    public void scatteredFeaturesMatch() {
+        // Desert and jungle temples, witch huts and igloos share this grid
+        assertUniformRegionsMatch(32, 8, 14357617);
+    }
+
+    @Test
+    public void fortressesMatch() {
+        assertUniformRegionsMatch(16, 4, 30084232);
+    }
+
+    @Test
+    public void monumentsMatch() {
+        assertTriangularRegionsMatch(32, 5, 10387313);
+    }
+
+    @Test
+    public void mansionsMatch() {
+        assertTriangularRegionsMatch(80, 20, 10387319);
+    }
+
+    @Test
+    public void endCitiesMatch() {
+        assertTriangularRegionsMatch(20, 11, 10387313);
+    }
+
+    @Test
+    public void mineshaftsMatch() {
+        RegionSeedEngine engine = new RegionSeedEngine();
+
+        for (long seed : WORLD_SEEDS) {
+            for (int chunkX : REGIONS) {
+                for (int chunkZ : REGIONS) {
+                    Random random = new Random();
+                    random.setSeed(seed);
+                    long a = random.nextLong();
+                    long b = random.nextLong();
+                    random.setSeed((long) chunkX * a ^ (long) chunkZ * b ^ seed);
+
+                    engine.setChunkSeed(seed, chunkX, chunkZ);
+
+                    assertEquals(Double.doubleToLongBits(random.nextDouble()), Double.doubleToLongBits(engine.nextDouble()));
+                    assertEquals(random.nextInt(80), engine.nextInt(80));
+                }
+            }
+        }
+    }
+
+    private static void assertUniformRegionsMatch(int spacing, int separation, int salt) {
+        RegionSeedEngine engine = new RegionSeedEngine();
+
+        for (long seed : WORLD_SEEDS) {
+            for (int regionX : REGIONS) {
+                for (int regionZ : REGIONS) {
+                    Random random = regionRandom(seed, regionX, regionZ, salt);
+                    int chunkX = regionX * spacing + random.nextInt(spacing - separation);
+                    int chunkZ = regionZ * spacing + random.nextInt(spacing - separation);
+
+                    long chunk = engine.getUniformRegionChunk(seed, spacing, separation, salt, regionX, regionZ);
+                    assertEquals(chunkX, RegionSeedEngine.unpackChunkX(chunk));
+                    assertEquals(chunkZ, RegionSeedEngine.unpackChunkZ(chunk));
+                }
+            }
+        }
+    }
+
+    private static void assertTriangularRegionsMatch(int spacing, int separation, int salt) {
+        RegionSeedEngine engine = new RegionSeedEngine();
+        int range = spacing - separation;
+
+        for (long seed : WORLD_SEEDS) {
+            for (int regionX : REGIONS) {
+                for (int regionZ : REGIONS) {
+                    Random random = regionRandom(seed, regionX, regionZ, salt);
+                    int chunkX = regionX * spacing + (random.nextInt(range) + random.nextInt(range)) / 2;
+                    int chunkZ = regionZ * spacing + (random.nextInt(range) + random.nextInt(range)) / 2;
+
+                    long chunk = engine.getTriangularRegionChunk(seed, spacing, separation, salt, regionX, regionZ);
+                    assertEquals(chunkX, RegionSeedEngine.unpackChunkX(chunk));
+                    assertEquals(chunkZ, RegionSeedEngine.unpackChunkZ(chunk));
+                }
+            }
+        }
+    }
+
+    // How the searches seeded regions before the engine
+    private static Random regionRandom(long seed, int regionX, int regionZ, long salt) {
+        Random random = new Random();
+        random.setSeed((long) regionX * 341873128712L + (long) regionZ * 132897987541L + seed + salt);
+
+        return random;
+    }
+}